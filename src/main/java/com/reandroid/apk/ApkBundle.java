@@ -15,6 +15,8 @@
   */
 package com.reandroid.apk;
 
+import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.archive.ArchiveFile;
 import com.reandroid.archive.ZipEntryMap;
 import com.reandroid.archive.block.ApkSignatureBlock;
 import com.reandroid.arsc.chunk.TableBlock;
@@ -28,9 +30,11 @@ import java.util.*;
 
 public class ApkBundle implements Closeable {
     private final Map<String, ApkModule> mModulesMap;
+    private final List<ArchiveFile> mBundleArchives;
     private APKLogger apkLogger;
     public ApkBundle(){
         this.mModulesMap=new HashMap<>();
+        this.mBundleArchives = new ArrayList<>();
     }
 
     public ApkModule mergeModules() throws IOException {
@@ -138,6 +142,37 @@ public class ApkBundle implements Closeable {
             addModule(module);
         }
     }
+    /**
+     * Loads all *.apk entries of bundle file (e.g. *.apks, *.xapk) without extracting,
+     * stored apks are read directly from the bundle file. The bundle file is kept open
+     * until this is closed.
+     * */
+    public void loadBundleFile(File bundleFile) throws IOException {
+        ArchiveFile bundle = new ArchiveFile(bundleFile);
+        List<ArchiveEntry> apkList = new ArrayList<>();
+        Iterator<ArchiveEntry> iterator = bundle.getFiles();
+        while (iterator.hasNext()){
+            ArchiveEntry archiveEntry = iterator.next();
+            if(archiveEntry.getName().endsWith(".apk")){
+                apkList.add(archiveEntry);
+            }
+        }
+        if(apkList.size() == 0){
+            bundle.close();
+            throw new FileNotFoundException("No '*.apk' entries in bundle: " + bundleFile);
+        }
+        mBundleArchives.add(bundle);
+        logMessage("Found apk entries: " + apkList.size());
+        for(ArchiveEntry archiveEntry : apkList){
+            String path = archiveEntry.getName();
+            logVerbose("Loading: " + path);
+            String name = ApkUtil.toModuleName(new File(path));
+            ApkModule module = ApkModule.loadApkArchive(
+                    bundle.openNested(archiveEntry, false), name);
+            module.setAPKLogger(apkLogger);
+            addModule(module);
+        }
+    }
     public void addModule(ApkModule apkModule){
         apkModule.setLoadDefaultFramework(false);
         String name = apkModule.getModuleName();
@@ -176,6 +211,10 @@ public class ApkBundle implements Closeable {
             module.close();
         }
         mModulesMap.clear();
+        for(ArchiveFile archiveFile : mBundleArchives) {
+            archiveFile.close();
+        }
+        mBundleArchives.clear();
     }
     public void setAPKLogger(APKLogger logger) {
         this.apkLogger = logger;
@@ -17,6 +17,7 @@ package com.reandroid.apk;
 
 import com.reandroid.archive.*;
 import com.reandroid.archive.block.ApkSignatureBlock;
+import com.reandroid.archive.block.ApkSigner;
 import com.reandroid.archive.io.ArchiveFileEntrySource;
 import com.reandroid.archive.writer.*;
 import com.reandroid.arsc.ApkFile;
@@ -57,6 +58,8 @@ public class ApkModule implements ApkFile, Closeable {
     private APKLogger apkLogger;
     private ApkType mApkType;
     private ApkSignatureBlock apkSignatureBlock;
+    private ApkSigner apkSigner;
+    private WriteMetrics writeMetrics;
     private Integer preferredFramework;
     private Closeable mCloseable;
     private final List<TableBlock> mExternalFrameworks;
@@ -155,6 +158,26 @@ public class ApkModule implements ApkFile, Closeable {
         this.apkSignatureBlock = apkSignatureBlock;
     }
 
+    public ApkSigner getApkSigner() {
+        return apkSigner;
+    }
+    /**
+     * Sets signer to sign v2/v3 on write, default is null thus the current signature
+     * block is written as it is
+     * */
+    public void setApkSigner(ApkSigner apkSigner) {
+        this.apkSigner = apkSigner;
+    }
+    public WriteMetrics getWriteMetrics() {
+        return writeMetrics;
+    }
+    /**
+     * Sets metrics listener applied to writers created by this module, e.g. {@link WriteStatistics}
+     * */
+    public void setWriteMetrics(WriteMetrics writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
     public boolean hasSignatureBlock(){
         return getApkSignatureBlock() != null;
     }
@@ -479,8 +502,12 @@ public class ApkModule implements ApkFile, Closeable {
     }
     public byte[] writeApkBytes() throws IOException {
         ApkByteWriter writer = createApkByteWriter();
-        writer.write();
-        return writer.toByteArray();
+        try{
+            writer.write();
+            return writer.toByteArray();
+        }finally {
+            writer.getBuffer().dispose();
+        }
     }
     public void writeApk(OutputStream outputStream) throws IOException {
         createApkStreamWriter(outputStream).write();
@@ -491,6 +518,29 @@ public class ApkModule implements ApkFile, Closeable {
         applyDefaultApkWriterSetting(writer);
         return writer;
     }
+    /**
+     * Writes changes back to the apk file this module is loaded from, unchanged entries
+     * are kept in place. See {@link ApkUpdateWriter}
+     * */
+    public void updateApkFile() throws IOException {
+        updateApkFile(null);
+    }
+    public void updateApkFile(WriteProgress progress) throws IOException {
+        ApkUpdateWriter writer = createApkUpdateWriter();
+        writer.setWriteProgress(progress);
+        writer.write();
+    }
+    public ApkUpdateWriter createApkUpdateWriter() throws IOException {
+        Closeable closeable = this.mCloseable;
+        if(!(closeable instanceof ArchiveFile)){
+            throw new IOException("Module is not loaded from apk file: " + getModuleName());
+        }
+        updateUncompressedFiles();
+        ApkUpdateWriter writer = new ApkUpdateWriter((ArchiveFile) closeable,
+                getZipEntryMap().toArray(true));
+        applyDefaultApkWriterSetting(writer);
+        return writer;
+    }
     public ApkByteWriter createApkByteWriter() {
         updateUncompressedFiles();
         ApkByteWriter writer = new ApkByteWriter(getZipEntryMap().toArray(true));
@@ -507,6 +557,8 @@ public class ApkModule implements ApkFile, Closeable {
     private void applyDefaultApkWriterSetting(ApkWriter<?, ?> writer) {
         writer.setAPKLogger(getApkLogger());
         writer.setApkSignatureBlock(getApkSignatureBlock());
+        writer.setApkSigner(getApkSigner());
+        writer.setWriteMetrics(getWriteMetrics());
         writer.setArchiveInfo(getZipEntryMap().getArchiveInfo());
         writer.setDataDescriptorFactory(DataDescriptorFactory.NO_ACTION);
     }
@@ -518,6 +570,21 @@ public class ApkModule implements ApkFile, Closeable {
             resFile.getInputSource().setMethod(ZipEntry.STORED);
         }
     }
+    /**
+     * Stores deflated entries whose content does not compress (e.g. png, ogg, nested zip),
+     * decided by content sampling with default {@link CompressionPolicy}. Returns the policy
+     * holding the decisions made.
+     * */
+    public CompressionPolicy uncompressIncompressibleFiles() throws IOException {
+        CompressionPolicy policy = new CompressionPolicy();
+        uncompressIncompressibleFiles(policy);
+        return policy;
+    }
+    public int uncompressIncompressibleFiles(CompressionPolicy policy) throws IOException {
+        int result = policy.apply(getInputSources(), getUncompressedFiles());
+        logVerbose("Compression policy: " + policy);
+        return result;
+    }
     public UncompressedFiles getUncompressedFiles(){
         return mUncompressedFiles;
     }
@@ -1005,7 +1072,7 @@ public class ApkModule implements ApkFile, Closeable {
         }
         if(resXmlDocument == null){
             resXmlDocument = new ResXmlDocument();
-            resXmlDocument.readBytes(inputSource.openStream());
+            resXmlDocument.readBytes(inputSource.openBlockReader());
         }
         resXmlDocument.setApkFile(this);
         if(resXmlDocument.getPackageBlock() == null){
@@ -1082,9 +1149,8 @@ public class ApkModule implements ApkFile, Closeable {
             tableBlock = (TableBlock) ((BlockInputSource<?>) inputSource).getBlock();
         }else {
             setTableOriginalSource(inputSource);
-            InputStream inputStream = inputSource.openStream();
-            tableBlock = TableBlock.load(inputStream);
-            inputStream.close();
+            tableBlock = new TableBlock();
+            tableBlock.readBytes(inputSource.openBlockReader());
         }
         BlockInputSource<TableBlock> blockInputSource = new BlockInputSource<>(
                 inputSource.getName(), tableBlock);
@@ -1299,7 +1365,13 @@ public class ApkModule implements ApkFile, Closeable {
         return loadApkFile(apkFile, ApkUtil.DEF_MODULE_NAME);
     }
     public static ApkModule loadApkFile(File apkFile, String moduleName) throws IOException {
-        ArchiveFile archive = new ArchiveFile(apkFile);
+        return loadApkArchive(new ArchiveFile(apkFile), moduleName);
+    }
+    /**
+     * Loads from already opened archive e.g. nested apk of a bundle, see
+     * {@link ArchiveFile#openNested(String)}. The archive is closed on {@link #close()}
+     * */
+    public static ApkModule loadApkArchive(ArchiveFile archive, String moduleName) {
         ApkModule apkModule = new ApkModule(moduleName, archive.createZipEntryMap());
         apkModule.setApkSignatureBlock(archive.getApkSignatureBlock());
         apkModule.setCloseable(archive);
@@ -0,0 +1,326 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.apk;
+
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.io.CodecPool;
+import com.reandroid.json.JSONArray;
+import com.reandroid.json.JSONConvert;
+import com.reandroid.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Decides between STORED and DEFLATED by looking at content instead of extension.
+ * Only a prefix of each entry is examined: known compressed formats (png, webp, ogg, zip ...)
+ * are detected by magic, low entropy samples are kept deflated, and the rest are judged by
+ * deflating the sample at fastest level. Decisions are recorded (see {@link #toJson()}) and
+ * stored paths are added to {@link UncompressedFiles} so that the result is reproducible
+ * on rebuild without running the analysis again.
+ * */
+public class CompressionPolicy implements JSONConvert<JSONObject> {
+    private final List<Decision> decisionList;
+    private int sampleSize;
+    private int minSize;
+    private double minEntropy;
+    private double maxRatio;
+    private CodecPool codecPool;
+
+    public CompressionPolicy(){
+        this.decisionList = new ArrayList<>();
+        this.sampleSize = DEFAULT_SAMPLE_SIZE;
+        this.minSize = DEFAULT_MIN_SIZE;
+        this.minEntropy = DEFAULT_MIN_ENTROPY;
+        this.maxRatio = DEFAULT_MAX_RATIO;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+    public int getMinSize() {
+        return minSize;
+    }
+    /**
+     * Files smaller than this are left unchanged
+     * */
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+    }
+    public double getMinEntropy() {
+        return minEntropy;
+    }
+    /**
+     * Samples below this entropy (bits per byte) are considered compressible without trial deflate
+     * */
+    public void setMinEntropy(double minEntropy) {
+        this.minEntropy = minEntropy;
+    }
+    public double getMaxRatio() {
+        return maxRatio;
+    }
+    /**
+     * Compressed to original size ratio of sample at or above which the entry is stored
+     * */
+    public void setMaxRatio(double maxRatio) {
+        this.maxRatio = maxRatio;
+    }
+    public CodecPool getCodecPool() {
+        CodecPool codecPool = this.codecPool;
+        if(codecPool == null){
+            codecPool = CodecPool.getDefault();
+        }
+        return codecPool;
+    }
+    public void setCodecPool(CodecPool codecPool) {
+        this.codecPool = codecPool;
+    }
+
+    public List<Decision> getDecisions() {
+        return decisionList;
+    }
+    public int countStored(){
+        int result = 0;
+        for(Decision decision : decisionList){
+            if(decision.isStored()){
+                result ++;
+            }
+        }
+        return result;
+    }
+    public void clear(){
+        decisionList.clear();
+    }
+    /**
+     * Analyzes deflated sources, sets incompressible ones to STORED and adds their paths
+     * to the given uncompressed files (if not null). Returns the number of stored sources.
+     * */
+    public int apply(InputSource[] inputSources, UncompressedFiles uncompressedFiles) throws IOException {
+        int result = 0;
+        for(InputSource inputSource : inputSources){
+            if(inputSource.getMethod() != Archive.DEFLATED){
+                continue;
+            }
+            Decision decision = analyze(inputSource);
+            if(decision == null){
+                continue;
+            }
+            decisionList.add(decision);
+            if(!decision.isStored()){
+                continue;
+            }
+            inputSource.setMethod(Archive.STORED);
+            if(uncompressedFiles != null){
+                uncompressedFiles.addPath(inputSource.getAlias());
+            }
+            result ++;
+        }
+        return result;
+    }
+    /**
+     * Returns decision for the given source, or null if it is too small to be worth analyzing
+     * */
+    public Decision analyze(InputSource inputSource) throws IOException {
+        byte[] sample = readSample(inputSource);
+        if(sample.length < getMinSize()){
+            return null;
+        }
+        String path = inputSource.getAlias();
+        String format = FileMagic.getCompressedFormat(sample);
+        if(format != null){
+            return new Decision(path, true, REASON_MAGIC + format, -1, -1);
+        }
+        double entropy = entropy(sample);
+        if(entropy < getMinEntropy()){
+            return new Decision(path, false, REASON_ENTROPY, entropy, -1);
+        }
+        double ratio = deflateRatio(sample);
+        return new Decision(path, ratio >= getMaxRatio(), REASON_DEFLATE, entropy, ratio);
+    }
+    private byte[] readSample(InputSource inputSource) throws IOException {
+        byte[] buffer = new byte[getSampleSize()];
+        InputStream inputStream = inputSource.openStream();
+        int count = 0;
+        try {
+            int read;
+            while (count < buffer.length
+                    && (read = inputStream.read(buffer, count, buffer.length - count)) > 0){
+                count += read;
+            }
+        }finally {
+            inputSource.close(inputStream);
+        }
+        if(count == buffer.length){
+            return buffer;
+        }
+        byte[] result = new byte[count];
+        System.arraycopy(buffer, 0, result, 0, count);
+        return result;
+    }
+    private double deflateRatio(byte[] sample){
+        CodecPool codecPool = getCodecPool();
+        Deflater deflater = codecPool.acquireDeflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample);
+            deflater.finish();
+            byte[] buffer = new byte[4096];
+            long compressed = 0;
+            while (!deflater.finished()){
+                compressed += deflater.deflate(buffer);
+            }
+            return (double) compressed / sample.length;
+        }finally {
+            codecPool.releaseDeflater(deflater, Deflater.BEST_SPEED);
+        }
+    }
+
+    @Override
+    public JSONObject toJson() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put(NAME_sample_size, getSampleSize());
+        jsonObject.put(NAME_min_size, getMinSize());
+        jsonObject.put(NAME_min_entropy, getMinEntropy());
+        jsonObject.put(NAME_max_ratio, getMaxRatio());
+        JSONArray decisions = new JSONArray();
+        for(Decision decision : decisionList){
+            decisions.put(decision.toJson());
+        }
+        jsonObject.put(NAME_decisions, decisions);
+        return jsonObject;
+    }
+    /**
+     * Restores parameters, decisions are not restored since they are reproduced through
+     * {@link UncompressedFiles}
+     * */
+    @Override
+    public void fromJson(JSONObject json) {
+        setSampleSize(json.optInt(NAME_sample_size, DEFAULT_SAMPLE_SIZE));
+        setMinSize(json.optInt(NAME_min_size, DEFAULT_MIN_SIZE));
+        setMinEntropy(json.optDouble(NAME_min_entropy, DEFAULT_MIN_ENTROPY));
+        setMaxRatio(json.optDouble(NAME_max_ratio, DEFAULT_MAX_RATIO));
+    }
+    @Override
+    public String toString(){
+        return "decisions = " + decisionList.size() + ", stored = " + countStored();
+    }
+
+    /**
+     * Returns Shannon entropy of the given bytes in bits per byte (0 to 8)
+     * */
+    public static double entropy(byte[] bytes){
+        int length = bytes.length;
+        if(length == 0){
+            return 0;
+        }
+        int[] counts = new int[256];
+        for(int i = 0; i < length; i++){
+            counts[bytes[i] & 0xff] ++;
+        }
+        double result = 0;
+        for(int count : counts){
+            if(count == 0){
+                continue;
+            }
+            double p = (double) count / length;
+            result -= p * Math.log(p);
+        }
+        return result / Math.log(2);
+    }
+
+    public static class Decision {
+        private final String path;
+        private final boolean stored;
+        private final String reason;
+        private final double entropy;
+        private final double ratio;
+
+        public Decision(String path, boolean stored, String reason, double entropy, double ratio){
+            this.path = path;
+            this.stored = stored;
+            this.reason = reason;
+            this.entropy = entropy;
+            this.ratio = ratio;
+        }
+        public String getPath() {
+            return path;
+        }
+        public boolean isStored() {
+            return stored;
+        }
+        public String getReason() {
+            return reason;
+        }
+        /**
+         * Returns entropy of sample, or -1 if not computed
+         * */
+        public double getEntropy() {
+            return entropy;
+        }
+        /**
+         * Returns deflate ratio of sample, or -1 if not computed
+         * */
+        public double getRatio() {
+            return ratio;
+        }
+        public JSONObject toJson() {
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put(NAME_path, getPath());
+            jsonObject.put(NAME_method, isStored() ? "stored" : "deflated");
+            jsonObject.put(NAME_reason, getReason());
+            if(entropy >= 0){
+                jsonObject.put(NAME_entropy, round(entropy));
+            }
+            if(ratio >= 0){
+                jsonObject.put(NAME_ratio, round(ratio));
+            }
+            return jsonObject;
+        }
+        @Override
+        public String toString(){
+            return (isStored() ? "STORED " : "DEFLATED ") + getPath() + " (" + getReason() + ")";
+        }
+        private static double round(double value){
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+
+    public static final String REASON_MAGIC = "magic:";
+    public static final String REASON_ENTROPY = "entropy";
+    public static final String REASON_DEFLATE = "deflate";
+
+    public static final int DEFAULT_SAMPLE_SIZE = 64 * 1024;
+    public static final int DEFAULT_MIN_SIZE = 512;
+    public static final double DEFAULT_MIN_ENTROPY = 6.0;
+    public static final double DEFAULT_MAX_RATIO = 0.9;
+
+    private static final String NAME_sample_size = "sample_size";
+    private static final String NAME_min_size = "min_size";
+    private static final String NAME_min_entropy = "min_entropy";
+    private static final String NAME_max_ratio = "max_ratio";
+    private static final String NAME_decisions = "decisions";
+    private static final String NAME_path = "path";
+    private static final String NAME_method = "method";
+    private static final String NAME_reason = "reason";
+    private static final String NAME_entropy = "entropy";
+    private static final String NAME_ratio = "ratio";
+}
@@ -42,6 +42,47 @@ public class FileMagic {
         return null;
     }
 
+    /**
+     * Returns name of already compressed format (e.g. png, ogg, zip) detected from the
+     * leading bytes, or null if unknown. Such files gain nothing from deflate.
+     * */
+    public static String getCompressedFormat(byte[] sample){
+        if(sample==null || sample.length<MAGIC_MAX_LENGTH){
+            return null;
+        }
+        if(isPng(sample)){
+            return "png";
+        }
+        if(isJpeg(sample)){
+            return "jpg";
+        }
+        if(isWebp(sample)){
+            return "webp";
+        }
+        if(compareMagic(MAGIC_OGG, sample)){
+            return "ogg";
+        }
+        if(compareMagic(MAGIC_ZIP, sample)){
+            return "zip";
+        }
+        if(compareMagic(MAGIC_GZIP, sample)){
+            return "gzip";
+        }
+        if(compareMagic(MAGIC_MP3, sample)){
+            return "mp3";
+        }
+        if(compareMagic(MAGIC_MP4, sample)){
+            return "mp4";
+        }
+        if(compareMagic(MAGIC_FLAC, sample)){
+            return "flac";
+        }
+        if(compareMagic(MAGIC_WOFF2, sample)){
+            return "woff2";
+        }
+        return null;
+    }
+
     private static boolean isJpeg(byte[] magic){
         return compareMagic(MAGIC_JPG, magic);
     }
@@ -91,6 +132,13 @@ public class FileMagic {
     private static final byte[] MAGIC_PNG=new byte[]{(byte) 137, 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a};
     private static final byte[] MAGIC_JPG=new byte[]{-0x01, (byte) 0xd8, -0x01, (byte) 224, 0x00, 0x10, 0x4a, 0x46};
     private static final byte[] MAGIC_WEBP=new byte[]{0x52, 0x49, 0x46, 0x46, -0x01, -0x01, -0x01, 0x00, 0x57, 0x45, 0x42, 0x50, 0x56, 0x50, 0x38};
+    private static final byte[] MAGIC_OGG=new byte[]{0x4f, 0x67, 0x67, 0x53};
+    private static final byte[] MAGIC_ZIP=new byte[]{0x50, 0x4b, 0x03, 0x04};
+    private static final byte[] MAGIC_GZIP=new byte[]{0x1f, (byte) 0x8b, 0x08};
+    private static final byte[] MAGIC_MP3=new byte[]{0x49, 0x44, 0x33};
+    private static final byte[] MAGIC_MP4=new byte[]{-0x01, -0x01, -0x01, -0x01, 0x66, 0x74, 0x79, 0x70};
+    private static final byte[] MAGIC_FLAC=new byte[]{0x66, 0x4c, 0x61, 0x43};
+    private static final byte[] MAGIC_WOFF2=new byte[]{0x77, 0x4f, 0x46, 0x32};
     private static final byte[] MAGIC_TTF=new byte[]{0x00, 0x01, 0x00, 0x00, 0x00, -0x01, -0x01, -0x01};
 
 }
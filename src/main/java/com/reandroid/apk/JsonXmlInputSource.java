@@ -44,6 +44,13 @@ public class JsonXmlInputSource extends InputSource {
         ResXmlDocument resXmlDocument = getResXmlBlock();
         return resXmlDocument.countBytes();
     }
+    /**
+     * The json source may change after it is written, thus crc and length recorded by
+     * the writer are not kept
+     * */
+    @Override
+    public void onWritten(long crc, long length){
+    }
     private ResXmlDocument getResXmlBlock() throws IOException{
         logVerbose("From json: "+getAlias());
         ResXmlDocument resXmlDocument =newInstance();
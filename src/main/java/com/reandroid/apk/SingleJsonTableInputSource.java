@@ -21,7 +21,6 @@ import com.reandroid.archive.InputSource;
 import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.json.JSONException;
 import com.reandroid.json.JSONObject;
-import com.reandroid.utils.Crc32OutputStream;
 
 import java.io.*;
 
@@ -52,17 +51,6 @@ public class SingleJsonTableInputSource extends BlockInputSource<TableBlock> {
         TableBlock tableBlock = getTableBlock();
         return new ByteArrayInputStream(tableBlock.getBytes());
     }
-    @Override
-    public long getLength() throws IOException{
-        TableBlock tableBlock = getTableBlock();
-        return tableBlock.countBytes();
-    }
-    @Override
-    public long getCrc() throws IOException {
-        Crc32OutputStream outputStream = new Crc32OutputStream();
-        this.write(outputStream);
-        return outputStream.getValue();
-    }
     public TableBlock getTableBlock() throws IOException{
         if(mCache != null){
             return mCache;
@@ -26,10 +26,16 @@ public class XMLEncodeSource extends ByteInputSource {
     }
     @Override
     public long getLength() throws IOException {
+        if(array == DISPOSED){
+            return super.getLength();
+        }
         return getArray().length;
     }
     @Override
     public long getCrc() throws IOException{
+        if(array == DISPOSED){
+            return super.getCrc();
+        }
         Crc32 crc32 = new Crc32();
         crc32.update(getArray());
         return crc32.getValue();
@@ -43,6 +49,13 @@ public class XMLEncodeSource extends ByteInputSource {
         outputStream.write(bytes, 0, bytes.length);
         return bytes.length;
     }
+    /**
+     * Encoding adds strings and resources to the shared package block
+     * */
+    @Override
+    public boolean isConcurrentWriteSafe() {
+        return false;
+    }
     @Override
     public byte[] getBytes() {
         try {
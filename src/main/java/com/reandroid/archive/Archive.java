@@ -18,6 +18,7 @@ package com.reandroid.archive;
 import com.reandroid.apk.APKLogger;
 import com.reandroid.archive.block.*;
 import com.reandroid.archive.io.*;
+import com.reandroid.archive.model.ArchiveIndex;
 import com.reandroid.archive.model.CentralFileDirectory;
 import com.reandroid.archive.model.LocalFileDirectory;
 import com.reandroid.utils.ObjectsUtil;
@@ -30,27 +31,83 @@ import com.reandroid.utils.io.IOUtil;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
-import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
 
+/**
+ * Thread safety: once constructed, the entry list of an archive is not modified, and
+ * reading entries through {@link #openInputStream(ArchiveEntry)}, {@link #openRawInputStream(ArchiveEntry)}
+ * or the {@link InputSource}s created by this archive is safe from multiple threads,
+ * provided the underlying {@link ZipInput} supports concurrent streams
+ * (e.g. {@link ZipFileInput}, {@link ZipMappedInput} and {@link ZipByteInput}).
+ * Each returned stream must be used by one thread at a time.
+ * Methods that modify entries (e.g. {@link ArchiveEntry#setMethod(int)}) and {@link #close()}
+ * require external synchronization.
+ * */
 public abstract class Archive<T extends ZipInput> implements Closeable {
 
     private final T zipInput;
     private final ArchiveEntry[] entryList;
     private final EndRecord endRecord;
     private final ApkSignatureBlock apkSignatureBlock;
+    private volatile ArchiveEntryIndex entryIndex;
 
     public Archive(T zipInput) throws IOException {
+        this(zipInput, false);
+    }
+    /**
+     * @param centralDirectoryOnly if true, entries are built from central directory alone
+     *                             and each local header is read on first data access. This
+     *                             avoids reading all local headers on open, thus listing and
+     *                             metadata queries are fast on large archives and slow disks.
+     * */
+    public Archive(T zipInput, boolean centralDirectoryOnly) throws IOException {
         this.zipInput = zipInput;
         CentralFileDirectory cfd = new CentralFileDirectory();
         cfd.visit(zipInput);
         this.endRecord = cfd.getEndRecord();
         LocalFileDirectory lfd = new LocalFileDirectory(cfd);
-        lfd.visit(zipInput);
-        this.entryList  = lfd.buildArchiveEntryList();
+        if(centralDirectoryOnly){
+            lfd.visitCentralOnly(zipInput);
+            this.entryList = lfd.buildLazyArchiveEntryList(zipInput);
+        }else {
+            lfd.visit(zipInput);
+            this.entryList = lfd.buildArchiveEntryList();
+        }
+        this.apkSignatureBlock = lfd.getApkSigBlock();
+    }
+    /**
+     * Opens archive using the given central directory index, if the index matches this archive
+     * entries are built from it without parsing central directory nor local headers. Otherwise
+     * the archive is parsed fully and the index is (re)written, failure to write index is ignored.
+     * @see ArchiveIndex
+     * */
+    public Archive(T zipInput, ArchiveIndex archiveIndex) throws IOException {
+        this.zipInput = zipInput;
+        CentralFileDirectory cfd = new CentralFileDirectory();
+        boolean indexed = cfd.visit(zipInput, archiveIndex);
+        this.endRecord = cfd.getEndRecord();
+        LocalFileDirectory lfd = new LocalFileDirectory(cfd);
+        if(indexed){
+            lfd.visitCentralOnly(zipInput);
+            this.entryList = lfd.buildLazyArchiveEntryList(zipInput);
+        }else {
+            lfd.visit(zipInput);
+            this.entryList = lfd.buildArchiveEntryList();
+            writeIndex(archiveIndex, cfd);
+        }
         this.apkSignatureBlock = lfd.getApkSigBlock();
     }
+    private void writeIndex(ArchiveIndex archiveIndex, CentralFileDirectory cfd){
+        if(archiveIndex == null){
+            return;
+        }
+        try {
+            archiveIndex.write(getZipInput(), cfd);
+        } catch (IOException ignored) {
+            // index is optional, e.g. read-only directory
+        }
+    }
 
     public ZipEntryMap createZipEntryMap(){
         return new ZipEntryMap(mapEntrySource());
@@ -93,21 +150,42 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
 
     abstract InputSource createInputSource(ArchiveEntry entry);
     public InputSource getEntrySource(String path){
-        if(path == null){
+        ArchiveEntry entry = getEntry(path);
+        if(entry == null){
             return null;
         }
-        ArchiveEntry[] entryList = this.entryList;
-        int length = entryList.length;
-        for(int i = 0; i < length; i++){
-            ArchiveEntry entry = entryList[i];
-            if(entry.isDirectory()){
-                continue;
-            }
-            if(path.equals(entry.getName())){
-                return createInputSource(entry);
+        return createInputSource(entry);
+    }
+    /**
+     * Returns input sources of the given paths in the same order, missing paths are skipped
+     * */
+    public List<InputSource> getEntrySources(Collection<String> paths){
+        List<InputSource> results = new ArrayList<>(paths.size());
+        for(String path : paths){
+            InputSource inputSource = getEntrySource(path);
+            if(inputSource != null){
+                results.add(inputSource);
             }
         }
-        return null;
+        return results;
+    }
+    /**
+     * Returns file (non-directory) entry of the given name, lookup is by hash index
+     * which is built on first call and rebuilt after entries are renamed
+     * */
+    public ArchiveEntry getEntry(String path){
+        if(path == null){
+            return null;
+        }
+        return getEntryIndex().get(path);
+    }
+    private ArchiveEntryIndex getEntryIndex(){
+        ArchiveEntryIndex entryIndex = this.entryIndex;
+        if(entryIndex == null || entryIndex.isStale()){
+            entryIndex = new ArchiveEntryIndex(this.entryList);
+            this.entryIndex = entryIndex;
+        }
+        return entryIndex;
     }
     public InputStream openRawInputStream(ArchiveEntry archiveEntry) throws IOException {
         return zipInput.getInputStream(archiveEntry.getFileOffset(), archiveEntry.getDataSize());
@@ -117,8 +195,7 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
         if(!archiveEntry.isCompressed()){
             return rawInputStream;
         }
-        return new InflaterInputStream(rawInputStream,
-                new Inflater(true), 1024*1000);
+        return new PooledInflaterInputStream(rawInputStream, 1024*1000);
     }
     public Iterator<ArchiveEntry> getFiles() {
         return iterator(ArchiveEntry::isFile);
@@ -158,6 +235,18 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
         }
         return result;
     }
+    /**
+     * Extracts entries concurrently on the given executor, directories are created
+     * up front in a single pass. Stored entries are copied by channel transfer where supported
+     * */
+    public int extractAll(File dir, Predicate<ArchiveEntry> filter, APKLogger logger,
+                          ExecutorService executorService) throws IOException {
+        if(executorService == null){
+            return extractAll(dir, filter, logger);
+        }
+        ArchiveExtractor extractor = new ArchiveExtractor(this, executorService, logger);
+        return extractor.extractAll(dir, filter);
+    }
     public void extract(File file, ArchiveEntry archiveEntry) throws IOException{
         extract(file, archiveEntry, null);
     }
@@ -167,6 +256,15 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
             return;
         }
         FileUtil.ensureParentDirectory(file);
+        logLargeFileExtract(archiveEntry, logger);
+        if(archiveEntry.getMethod() != Archive.STORED){
+            extractCompressed(file, archiveEntry);
+        }else {
+            extractStored(file, archiveEntry);
+        }
+        applyAttributes(archiveEntry, file);
+    }
+    void logLargeFileExtract(ArchiveEntry archiveEntry, APKLogger logger){
         if(logger != null){
             long size = archiveEntry.getDataSize();
             if(size > LOG_LARGE_FILE_SIZE){
@@ -174,15 +272,9 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
                         + FileUtil.toReadableFileSize(size) + "] "+ archiveEntry.getName());
             }
         }
-        if(archiveEntry.getMethod() != Archive.STORED){
-            extractCompressed(file, archiveEntry);
-        }else {
-            extractStored(file, archiveEntry);
-        }
-        applyAttributes(archiveEntry, file);
     }
     @SuppressWarnings("ResultOfMethodCallIgnored")
-    private void applyAttributes(ArchiveEntry archiveEntry, File file) {
+    void applyAttributes(ArchiveEntry archiveEntry, File file) {
         FilePermissions permissions = archiveEntry.getFilePermissions();
         if(permissions.get() != 0) {
             permissions.apply(file);
@@ -195,7 +287,7 @@ public abstract class Archive<T extends ZipInput> implements Closeable {
         FileOutputStream outputStream = new FileOutputStream(file);
         IOUtil.writeAll(openInputStream(archiveEntry), outputStream);
     }
-    private File toFile(File dir, ArchiveEntry archiveEntry){
+    File toFile(File dir, ArchiveEntry archiveEntry){
         String name = archiveEntry.getName().replace('/', File.separatorChar);
         return new File(dir, name);
     }
@@ -16,14 +16,38 @@
 package com.reandroid.archive;
 
 import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.CommonHeader;
 import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ZipInput;
+import com.reandroid.archive.model.LocalFileDirectory;
 import com.reandroid.utils.HexUtil;
 import com.reandroid.utils.io.FilePermissions;
 
+import java.io.IOException;
+
 public class ArchiveEntry {
-    private final LocalFileHeader localFileHeader;
+    private volatile LocalFileHeader localFileHeader;
+    private final CentralEntryHeader centralEntryHeader;
+    private final ZipInput zipInput;
+    private final int index;
+    private volatile ArchiveEntryIndex entryIndex;
+
     public ArchiveEntry(LocalFileHeader lfh){
         this.localFileHeader = lfh;
+        this.centralEntryHeader = null;
+        this.zipInput = null;
+        this.index = lfh.getIndex();
+    }
+    /**
+     * Creates entry from central directory record only, the local header is read from
+     * the given input on first call of {@link #getLocalFileHeader()}, which is also
+     * required for data offset and modifications. Metadata is served from central directory.
+     * */
+    public ArchiveEntry(CentralEntryHeader ceh, ZipInput zipInput, int index){
+        this.localFileHeader = null;
+        this.centralEntryHeader = ceh;
+        this.zipInput = zipInput;
+        this.index = index;
     }
     public long getDataSize(){
         if(getMethod() != Archive.DEFLATED){
@@ -36,49 +60,61 @@ public class ArchiveEntry {
         return getMethod() == Archive.DEFLATED;
     }
     public int getMethod(){
-        return localFileHeader.getMethod();
+        return getHeader().getMethod();
     }
     public void setMethod(int method){
-        localFileHeader.setMethod(method);
+        getLocalFileHeader().setMethod(method);
         getCentralEntryHeader().setMethod(method);
     }
     public long getSize() {
-        return localFileHeader.getSize();
+        return getHeader().getSize();
     }
     public void setSize(long size) {
-        localFileHeader.setSize(size);
+        getLocalFileHeader().setSize(size);
         getCentralEntryHeader().setSize(size);
     }
     public long getCrc() {
-        return localFileHeader.getCrc();
+        return getHeader().getCrc();
     }
     public void setCrc(long crc) {
-        localFileHeader.setCrc(crc);
+        getLocalFileHeader().setCrc(crc);
         getCentralEntryHeader().setCrc(crc);
     }
     public long getCompressedSize() {
-        return localFileHeader.getCompressedSize();
+        return getHeader().getCompressedSize();
     }
     public void setCompressedSize(long csize) {
-        localFileHeader.setCompressedSize(csize);
+        getLocalFileHeader().setCompressedSize(csize);
         getCentralEntryHeader().setCompressedSize(csize);
     }
     public long getFileOffset() {
-        return localFileHeader.getFileOffset();
+        CentralEntryHeader ceh = this.centralEntryHeader;
+        if(ceh != null && this.localFileHeader == null && ceh.getFileOffset() != 0){
+            // resolved by archive index
+            return ceh.getFileOffset();
+        }
+        return getLocalFileHeader().getFileOffset();
     }
     public String getName(){
-        return localFileHeader.getFileName();
+        return getHeader().getFileName();
     }
     public String getSanitizedName(){
-        String name = ArchiveUtil.sanitizePath(localFileHeader.getFileName());
+        String name = ArchiveUtil.sanitizePath(getName());
         if(name == null){
-            name = ".error_file_path_" + localFileHeader.getIndex();
+            name = ".error_file_path_" + index;
         }
         return name;
     }
     public void setName(String name){
-        localFileHeader.setFileName(name);
+        getLocalFileHeader().setFileName(name);
         getCentralEntryHeader().setFileName(name);
+        ArchiveEntryIndex entryIndex = this.entryIndex;
+        if(entryIndex != null){
+            entryIndex.setStale();
+        }
+    }
+    void setEntryIndex(ArchiveEntryIndex entryIndex){
+        this.entryIndex = entryIndex;
     }
     public String getComment(){
         return getCentralEntryHeader().getComment();
@@ -96,15 +132,52 @@ public class ArchiveEntry {
         return getCentralEntryHeader().getFilePermissions();
     }
     public CentralEntryHeader getCentralEntryHeader(){
-        CentralEntryHeader ceh = localFileHeader.getCentralEntryHeader();
+        CentralEntryHeader ceh = this.centralEntryHeader;
+        if(ceh != null){
+            return ceh;
+        }
+        LocalFileHeader lfh = this.localFileHeader;
+        ceh = lfh.getCentralEntryHeader();
         if(ceh == null){
-            ceh = CentralEntryHeader.fromLocalFileHeader(localFileHeader);
-            localFileHeader.setCentralEntryHeader(ceh);
+            ceh = CentralEntryHeader.fromLocalFileHeader(lfh);
+            lfh.setCentralEntryHeader(ceh);
         }
         return ceh;
     }
     public LocalFileHeader getLocalFileHeader() {
-        return localFileHeader;
+        LocalFileHeader lfh = this.localFileHeader;
+        if(lfh != null){
+            return lfh;
+        }
+        synchronized (this){
+            lfh = this.localFileHeader;
+            if(lfh == null){
+                lfh = readLocalFileHeader();
+                this.localFileHeader = lfh;
+            }
+            return lfh;
+        }
+    }
+    /**
+     * Returns true if local header is loaded, always true unless the archive is
+     * opened from central directory only
+     * */
+    public boolean isLocalHeaderLoaded(){
+        return localFileHeader != null;
+    }
+    private LocalFileHeader readLocalFileHeader(){
+        try {
+            return LocalFileDirectory.readLocalFileHeader(zipInput, centralEntryHeader, index);
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+    private CommonHeader getHeader(){
+        LocalFileHeader lfh = this.localFileHeader;
+        if(lfh != null){
+            return lfh;
+        }
+        return centralEntryHeader;
     }
     public long getDosTime(){
         return getCentralEntryHeader().getDosTime();
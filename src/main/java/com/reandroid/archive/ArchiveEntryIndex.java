@@ -0,0 +1,111 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+/**
+ * Open-addressed (linear probing) name index of archive file entries. Slots hold
+ * entry array index + 1, thus no per-entry objects are allocated.
+ * For duplicate names the first entry wins, same as sequential scan.
+ * Renaming any of the entries marks the index stale.
+ * */
+class ArchiveEntryIndex {
+    private final ArchiveEntry[] entryList;
+    private final String[] names;
+    private final int[] hashes;
+    private final int[] slots;
+    private final int mask;
+    private volatile boolean mStale;
+
+    ArchiveEntryIndex(ArchiveEntry[] entryList){
+        this.entryList = entryList;
+        int length = entryList.length;
+        int capacity = tableSize(length);
+        this.names = new String[length];
+        this.hashes = new int[length];
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        for(int i = 0; i < length; i++){
+            ArchiveEntry entry = entryList[i];
+            if(entry == null){
+                continue;
+            }
+            entry.setEntryIndex(this);
+            if(entry.isDirectory()){
+                continue;
+            }
+            String name = entry.getName();
+            int hash = spread(name.hashCode());
+            names[i] = name;
+            hashes[i] = hash;
+            put(name, hash, i);
+        }
+    }
+
+    boolean isStale(){
+        return mStale;
+    }
+    void setStale(){
+        this.mStale = true;
+    }
+    ArchiveEntry get(String name){
+        int index = indexOf(name);
+        if(index < 0){
+            return null;
+        }
+        return entryList[index];
+    }
+    private int indexOf(String name){
+        int hash = spread(name.hashCode());
+        int[] slots = this.slots;
+        int mask = this.mask;
+        int position = hash & mask;
+        int slot;
+        while ((slot = slots[position]) != 0){
+            int index = slot - 1;
+            if(hashes[index] == hash && name.equals(names[index])){
+                return index;
+            }
+            position = (position + 1) & mask;
+        }
+        return -1;
+    }
+    private void put(String name, int hash, int index){
+        int[] slots = this.slots;
+        int mask = this.mask;
+        int position = hash & mask;
+        int slot;
+        while ((slot = slots[position]) != 0){
+            int i = slot - 1;
+            if(hashes[i] == hash && name.equals(names[i])){
+                return;
+            }
+            position = (position + 1) & mask;
+        }
+        slots[position] = index + 1;
+    }
+
+    private static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+    private static int tableSize(int count){
+        int size = 16;
+        int min = count * 2;
+        while (size < min){
+            size = size << 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+import com.reandroid.apk.APKLogger;
+import com.reandroid.archive.io.CodecPool;
+import com.reandroid.utils.FutureUtil;
+import com.reandroid.utils.io.FileUtil;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Extracts archive entries concurrently on the given executor. Directories are created
+ * in one pass before extracting, and inflaters and copy buffers are reused across
+ * entries (at most one per worker thread) and released at the end.
+ * */
+class ArchiveExtractor {
+    private final Archive<?> archive;
+    private final ExecutorService executorService;
+    private final APKLogger logger;
+    private final ConcurrentLinkedQueue<Worker> workerPool;
+
+    ArchiveExtractor(Archive<?> archive, ExecutorService executorService, APKLogger logger){
+        this.archive = archive;
+        this.executorService = executorService;
+        this.logger = logger;
+        this.workerPool = new ConcurrentLinkedQueue<>();
+    }
+
+    int extractAll(File dir, Predicate<? super ArchiveEntry> filter) throws IOException {
+        long start = System.currentTimeMillis();
+        List<ArchiveEntry> entryList = new ArrayList<>(archive.size());
+        Iterator<ArchiveEntry> iterator = archive.iterator(filter);
+        int result = 0;
+        while (iterator.hasNext()){
+            ArchiveEntry archiveEntry = iterator.next();
+            result ++;
+            if(archiveEntry.isFile()){
+                checkMethod(archiveEntry);
+                entryList.add(archiveEntry);
+            }
+        }
+        int size = entryList.size();
+        File[] files = new File[size];
+        Set<File> directories = new HashSet<>();
+        for(int i = 0; i < size; i++){
+            File file = archive.toFile(dir, entryList.get(i));
+            files[i] = file;
+            File parent = file.getParentFile();
+            if(parent != null){
+                directories.add(parent);
+            }
+        }
+        makeDirectories(directories);
+        logMessage("Extracting " + size + " files ...");
+        List<Future<Long>> futureList = new ArrayList<>(size);
+        try{
+            for(int i = 0; i < size; i++){
+                File file = files[i];
+                ArchiveEntry archiveEntry = entryList.get(i);
+                futureList.add(executorService.submit(() -> extract(file, archiveEntry)));
+            }
+            long bytes = 0;
+            for(Future<Long> future : futureList){
+                bytes += FutureUtil.await(future);
+            }
+            logThroughput(size, bytes, System.currentTimeMillis() - start);
+        }finally {
+            FutureUtil.cancelAll(futureList);
+            releaseWorkers();
+        }
+        return result;
+    }
+    private long extract(File file, ArchiveEntry archiveEntry) throws IOException {
+        archive.logLargeFileExtract(archiveEntry, logger);
+        if(archiveEntry.getMethod() == Archive.STORED){
+            archive.extractStored(file, archiveEntry);
+        }else {
+            Worker worker = acquireWorker();
+            try{
+                worker.inflate(archive.openRawInputStream(archiveEntry), file);
+            }finally {
+                workerPool.offer(worker);
+            }
+        }
+        archive.applyAttributes(archiveEntry, file);
+        return archiveEntry.getSize();
+    }
+    private Worker acquireWorker(){
+        Worker worker = workerPool.poll();
+        if(worker == null){
+            worker = new Worker();
+        }
+        return worker;
+    }
+    private void releaseWorkers(){
+        Worker worker;
+        while ((worker = workerPool.poll()) != null){
+            worker.release();
+        }
+    }
+    private void logThroughput(int count, long bytes, long millis){
+        if(logger == null){
+            return;
+        }
+        if(millis <= 0){
+            millis = 1;
+        }
+        long perSecond = (bytes * 1000) / millis;
+        logMessage("Extracted " + count + " files, "
+                + FileUtil.toReadableFileSize(bytes) + " in " + millis + "ms ("
+                + FileUtil.toReadableFileSize(perSecond) + "/s)");
+    }
+    private void logMessage(String msg){
+        APKLogger logger = this.logger;
+        if(logger != null){
+            logger.logMessage(msg);
+        }
+    }
+
+    /**
+     * Workers only copy stored data or inflate raw deflate data, any other method would be
+     * extracted as garbage thus rejected before anything is written
+     * */
+    private static void checkMethod(ArchiveEntry archiveEntry) throws IOException {
+        int method = archiveEntry.getMethod();
+        if(method != Archive.STORED && method != Archive.DEFLATED){
+            throw new IOException("Unsupported compression method: " + method
+                    + ", " + archiveEntry.getName());
+        }
+    }
+    private static void makeDirectories(Set<File> directories) throws IOException {
+        for(File dir : directories){
+            if(!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()){
+                throw new IOException("Failed to create directory: " + dir);
+            }
+        }
+    }
+
+    static class Worker {
+        private final Inflater inflater;
+        private final byte[] buffer;
+        Worker(){
+            this.inflater = CodecPool.getDefault().acquireInflater();
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+        void inflate(InputStream rawInputStream, File file) throws IOException {
+            Inflater inflater = this.inflater;
+            inflater.reset();
+            byte[] buffer = this.buffer;
+            InputStream inputStream = new InflaterInputStream(rawInputStream, inflater, INFLATER_INPUT_SIZE);
+            OutputStream outputStream = new FileOutputStream(file);
+            try{
+                int read;
+                while ((read = inputStream.read(buffer, 0, buffer.length)) >= 0){
+                    outputStream.write(buffer, 0, read);
+                }
+            }finally {
+                inputStream.close();
+                outputStream.close();
+            }
+        }
+        void release(){
+            CodecPool.getDefault().releaseInflater(inflater);
+        }
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final int INFLATER_INPUT_SIZE = 1024 * 16;
+}
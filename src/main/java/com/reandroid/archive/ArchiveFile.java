@@ -16,21 +16,82 @@
 package com.reandroid.archive;
 
 import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.model.ArchiveIndex;
 import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipSliceInput;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 
 public class ArchiveFile extends Archive<ZipFileInput>{
 
+    private boolean nested;
+
     public ArchiveFile(ZipFileInput zipInput) throws IOException {
         super(zipInput);
     }
     public ArchiveFile(File file) throws IOException {
         this(new ZipFileInput(file));
     }
+    /**
+     * See {@link Archive#Archive(com.reandroid.archive.io.ZipInput, boolean)}
+     * */
+    public ArchiveFile(ZipFileInput zipInput, boolean centralDirectoryOnly) throws IOException {
+        super(zipInput, centralDirectoryOnly);
+    }
+    public ArchiveFile(File file, boolean centralDirectoryOnly) throws IOException {
+        this(new ZipFileInput(file), centralDirectoryOnly);
+    }
+
+    /**
+     * See {@link Archive#Archive(com.reandroid.archive.io.ZipInput, ArchiveIndex)}
+     * */
+    public ArchiveFile(ZipFileInput zipInput, ArchiveIndex archiveIndex) throws IOException {
+        super(zipInput, archiveIndex);
+    }
+    /**
+     * Opens archive with its sidecar index, see {@link ArchiveIndex#sidecarOf(File)}
+     * */
+    public static ArchiveFile openIndexed(File file) throws IOException {
+        return new ArchiveFile(new ZipFileInput(file), ArchiveIndex.sidecarOf(file));
+    }
+
+    public ArchiveFile openNested(String path) throws IOException {
+        ArchiveEntry archiveEntry = getEntry(path);
+        if(archiveEntry == null){
+            throw new FileNotFoundException("No such entry: " + path);
+        }
+        return openNested(archiveEntry, false);
+    }
+    /**
+     * Opens the given entry as archive without extracting it, stored entries are read
+     * through a {@link ZipSliceInput} of this archive thus this archive must remain open.
+     * Compressed entries are spilled to a temp file which is deleted on close.
+     * */
+    public ArchiveFile openNested(ArchiveEntry archiveEntry, boolean centralDirectoryOnly) throws IOException {
+        ZipFileInput zipInput;
+        if(archiveEntry.getMethod() == Archive.STORED){
+            zipInput = new ZipSliceInput(getZipInput(),
+                    archiveEntry.getFileOffset(), archiveEntry.getDataSize());
+        }else {
+            File file = File.createTempFile("nested", ".zip", FileUtil.getTempDir());
+            extract(file, archiveEntry);
+            zipInput = new TempFileInput(file);
+        }
+        ArchiveFile archiveFile = new ArchiveFile(zipInput, centralDirectoryOnly);
+        archiveFile.nested = true;
+        return archiveFile;
+    }
+    /**
+     * Returns true if this archive is an entry of another archive, whether sliced or
+     * spilled to temp file
+     * */
+    public boolean isNested() {
+        return nested || getZipInput() instanceof ZipSliceInput;
+    }
 
     @Override
     InputSource createInputSource(ArchiveEntry entry) {
@@ -39,9 +100,22 @@ public class ArchiveFile extends Archive<ZipFileInput>{
     @Override
     void extractStored(File file, ArchiveEntry archiveEntry) throws IOException {
         FileChannel outputChannel = FileUtil.openWriteChannel(file);
-        FileChannel fileChannel = getZipInput().getFileChannel();
-        fileChannel.position(archiveEntry.getFileOffset());
-        outputChannel.transferFrom(fileChannel, 0, archiveEntry.getDataSize());
+        getZipInput().transferTo(archiveEntry.getFileOffset(),
+                archiveEntry.getDataSize(), outputChannel);
         outputChannel.close();
     }
+
+    static class TempFileInput extends ZipFileInput {
+        TempFileInput(File file){
+            super(file);
+        }
+        @Override
+        public void close() throws IOException {
+            super.close();
+            File file = getFile();
+            if(file.isFile()){
+                file.delete();
+            }
+        }
+    }
 }
@@ -55,10 +55,24 @@ public class BlockInputSource<T extends Block> extends ByteInputSource {
         block.writeBytes(outputStream);
         return outputStream.getValue();
     }
+    /**
+     * The block remains mutable after it is written, thus crc and length recorded by
+     * the writer are not kept
+     * */
+    @Override
+    public void onWritten(long crc, long length){
+    }
     @Override
     public long write(OutputStream outputStream) throws IOException {
         return getBlock().writeBytes(outputStream);
     }
+    /**
+     * Writing refreshes the block, which may be shared (e.g. resources table)
+     * */
+    @Override
+    public boolean isConcurrentWriteSafe() {
+        return false;
+    }
     @Override
     public byte[] getBytes() {
         return getBlock().getBytes();
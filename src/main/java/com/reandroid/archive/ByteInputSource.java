@@ -16,6 +16,7 @@
 package com.reandroid.archive;
 
 import com.reandroid.common.BytesInputStream;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -23,25 +24,73 @@ import java.io.OutputStream;
 
 public class ByteInputSource extends InputSource {
     private byte[] array;
+    private SpillBuffer buffer;
     public ByteInputSource(byte[] array, String name) {
         super(name);
         this.array = array;
     }
+    /**
+     * Content is read from the buffer without materializing as single array,
+     * the buffer is disposed together with this source
+     * */
+    public ByteInputSource(SpillBuffer buffer, String name) {
+        super(name);
+        this.buffer = buffer;
+    }
     @Override
     public long write(OutputStream outputStream) throws IOException {
+        SpillBuffer buffer = this.buffer;
+        if(buffer != null){
+            buffer.writeTo(outputStream);
+            return buffer.size();
+        }
         byte[] bytes = getBytes();
         outputStream.write(bytes);
         return bytes.length;
     }
     @Override
+    public long getLength() throws IOException {
+        if(isWritten()){
+            return super.getLength();
+        }
+        SpillBuffer buffer = this.buffer;
+        if(buffer != null){
+            return buffer.size();
+        }
+        return array.length;
+    }
+    @Override
     public InputStream openStream() throws IOException {
+        SpillBuffer buffer = this.buffer;
+        if(buffer != null){
+            return buffer.openStream();
+        }
         return new BytesInputStream(getBytes());
     }
+    /**
+     * If backed by buffer, returns a copy of its content
+     * */
     public byte[] getBytes() {
+        SpillBuffer buffer = this.buffer;
+        if(buffer != null){
+            try {
+                return buffer.toByteArray();
+            } catch (IOException ex) {
+                throw new IllegalArgumentException(ex);
+            }
+        }
         return array;
     }
+    public SpillBuffer getBuffer() {
+        return buffer;
+    }
     @Override
     public void disposeInputSource(){
         array = new byte[0];
+        SpillBuffer buffer = this.buffer;
+        if(buffer != null){
+            buffer.dispose();
+            this.buffer = null;
+        }
     }
 }
@@ -17,6 +17,7 @@ package com.reandroid.archive;
 
 import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.utils.Crc32OutputStream;
 import com.reandroid.utils.CompareUtil;
 import com.reandroid.utils.StringsUtil;
@@ -49,6 +50,25 @@ public abstract class InputSource {
     }
     public void disposeInputSource(){
     }
+    /**
+     * Called by archive writers once the content is fully written, so that later calls of
+     * {@link #getCrc()} and {@link #getLength()} do not need to serialize the content again
+     * */
+    public void onWritten(long crc, long length){
+        this.mCrc = crc;
+        this.mLength = length;
+    }
+    protected boolean isWritten(){
+        return mLength != 0 || mCrc != 0;
+    }
+    /**
+     * Returns false if {@link #write(OutputStream)} mutates state shared with other sources
+     * (e.g. encodes into a resource table), parallel archive writers write such sources
+     * on the writer thread only
+     * */
+    public boolean isConcurrentWriteSafe(){
+        return true;
+    }
     public int getSort() {
         return sort;
     }
@@ -155,6 +175,16 @@ public abstract class InputSource {
         return mCrc;
     }
     public abstract InputStream openStream() throws IOException;
+    /**
+     * Returns reader over the whole content, sources backed by mapped files
+     * may return a view of the mapped pages without copying
+     * */
+    public BlockReader openBlockReader() throws IOException {
+        InputStream inputStream = openStream();
+        BlockReader reader = new BlockReader(inputStream);
+        close(inputStream);
+        return reader;
+    }
     @Override
     public boolean equals(Object o) {
         if (this == o) {
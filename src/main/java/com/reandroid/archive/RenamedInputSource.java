@@ -57,6 +57,10 @@ public class RenamedInputSource<T extends InputSource> extends InputSource {
         return getInputSource().getCrc();
     }
     @Override
+    public boolean isConcurrentWriteSafe() {
+        return getInputSource().isConcurrentWriteSafe();
+    }
+    @Override
     public void write(File file) throws IOException {
         getInputSource().write(file);
     }
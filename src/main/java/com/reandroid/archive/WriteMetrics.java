@@ -0,0 +1,49 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+/**
+ * Receives timing and size figures from archive writers. Entry callbacks may be invoked
+ * concurrently when the writer compresses on executor. When no listener is set, writers skip
+ * all measurements.
+ * */
+public interface WriteMetrics {
+    /**
+     * @param path entry name
+     * @param method {@link Archive#STORED} or {@link Archive#DEFLATED}
+     * @param bytesIn uncompressed size
+     * @param bytesOut size as written to archive
+     * @param compressNanos time spent reading source and compressing, excluding crc
+     * @param crcNanos time spent on crc computation
+     * */
+    void onEntry(String path, int method, long bytesIn, long bytesOut, long compressNanos, long crcNanos);
+    /**
+     * @param phase one of PHASE_* constants
+     * @param nanos elapsed time of the phase
+     * */
+    void onPhase(int phase, long nanos);
+
+    /**
+     * Compressing entries ahead of writing (buffered writers), zero for writers that compress while writing
+     * */
+    int PHASE_PREPARE = 0;
+    int PHASE_WRITE_ENTRIES = 1;
+    /**
+     * Writing signature block, when signing this also includes digest and central directory
+     * */
+    int PHASE_SIGNATURE_BLOCK = 2;
+    int PHASE_CENTRAL_DIRECTORY = 3;
+}
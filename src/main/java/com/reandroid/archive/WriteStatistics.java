@@ -0,0 +1,188 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Collects {@link WriteMetrics} of a write into memory, use {@link #getSlowest(int)} or
+ * {@link #toString()} to find entries dominating write time.
+ * */
+public class WriteStatistics implements WriteMetrics {
+    private final List<Entry> entryList;
+    private final AtomicLongArray phaseNanos;
+
+    public WriteStatistics(){
+        this.entryList = new ArrayList<>();
+        this.phaseNanos = new AtomicLongArray(PHASE_NAMES.length);
+    }
+
+    @Override
+    public void onEntry(String path, int method, long bytesIn, long bytesOut, long compressNanos, long crcNanos) {
+        Entry entry = new Entry(path, method, bytesIn, bytesOut, compressNanos, crcNanos);
+        synchronized (entryList){
+            entryList.add(entry);
+        }
+    }
+    @Override
+    public void onPhase(int phase, long nanos) {
+        phaseNanos.addAndGet(phase, nanos);
+    }
+
+    public List<Entry> getEntries(){
+        synchronized (entryList){
+            return new ArrayList<>(entryList);
+        }
+    }
+    /**
+     * Returns entries of the longest compress plus crc time, the longest first
+     * */
+    public List<Entry> getSlowest(int limit){
+        List<Entry> results = getEntries();
+        Collections.sort(results, (entry1, entry2) -> Long.compare(entry2.getTotalNanos(), entry1.getTotalNanos()));
+        if(results.size() > limit){
+            results = new ArrayList<>(results.subList(0, limit));
+        }
+        return results;
+    }
+    public long getPhaseNanos(int phase){
+        return phaseNanos.get(phase);
+    }
+    public long getBytesIn(){
+        long result = 0;
+        for(Entry entry : getEntries()){
+            result += entry.getBytesIn();
+        }
+        return result;
+    }
+    public long getBytesOut(){
+        long result = 0;
+        for(Entry entry : getEntries()){
+            result += entry.getBytesOut();
+        }
+        return result;
+    }
+    public long getCompressNanos(){
+        long result = 0;
+        for(Entry entry : getEntries()){
+            result += entry.getCompressNanos();
+        }
+        return result;
+    }
+    public long getCrcNanos(){
+        long result = 0;
+        for(Entry entry : getEntries()){
+            result += entry.getCrcNanos();
+        }
+        return result;
+    }
+    public void clear(){
+        synchronized (entryList){
+            entryList.clear();
+        }
+        for(int i = 0; i < PHASE_NAMES.length; i++){
+            phaseNanos.set(i, 0);
+        }
+    }
+    @Override
+    public String toString(){
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < PHASE_NAMES.length; i++){
+            if(i != 0){
+                builder.append(", ");
+            }
+            builder.append(PHASE_NAMES[i]).append('=').append(toMillis(getPhaseNanos(i))).append("ms");
+        }
+        builder.append("\nentries=").append(getEntries().size());
+        builder.append(", in=").append(getBytesIn());
+        builder.append(", out=").append(getBytesOut());
+        builder.append(", compress=").append(toMillis(getCompressNanos())).append("ms");
+        builder.append(", crc=").append(toMillis(getCrcNanos())).append("ms");
+        for(Entry entry : getSlowest(10)){
+            builder.append("\n  ").append(entry);
+        }
+        return builder.toString();
+    }
+    private static long toMillis(long nanos){
+        return nanos / 1000000;
+    }
+
+    public static class Entry {
+        private final String path;
+        private final int method;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final long compressNanos;
+        private final long crcNanos;
+
+        public Entry(String path, int method, long bytesIn, long bytesOut, long compressNanos, long crcNanos){
+            this.path = path;
+            this.method = method;
+            this.bytesIn = bytesIn;
+            this.bytesOut = bytesOut;
+            this.compressNanos = compressNanos;
+            this.crcNanos = crcNanos;
+        }
+        public String getPath() {
+            return path;
+        }
+        public int getMethod() {
+            return method;
+        }
+        public long getBytesIn() {
+            return bytesIn;
+        }
+        public long getBytesOut() {
+            return bytesOut;
+        }
+        /**
+         * Returns output to input size ratio, 1.0 for empty entries
+         * */
+        public double getRatio(){
+            if(bytesIn == 0){
+                return 1.0;
+            }
+            return (double) bytesOut / bytesIn;
+        }
+        public long getCompressNanos() {
+            return compressNanos;
+        }
+        public long getCrcNanos() {
+            return crcNanos;
+        }
+        public long getTotalNanos(){
+            return compressNanos + crcNanos;
+        }
+        @Override
+        public String toString(){
+            return path + (method == Archive.STORED ? " [stored]" : " [deflated]")
+                    + " in=" + bytesIn + ", out=" + bytesOut
+                    + ", ratio=" + (Math.round(getRatio() * 1000) / 1000.0)
+                    + ", compress=" + (compressNanos / 1000) + "us"
+                    + ", crc=" + (crcNanos / 1000) + "us";
+        }
+    }
+
+    public static final String[] PHASE_NAMES = new String[]{
+            "prepare",
+            "write_entries",
+            "signature_block",
+            "central_directory"
+    };
+}
@@ -15,12 +15,21 @@
  */
 package com.reandroid.archive;
 
+import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.EndRecord;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ZipFileInput;
 import com.reandroid.archive.writer.ApkFileWriter;
 import com.reandroid.archive.writer.ZipAligner;
+import com.reandroid.utils.io.FileUtil;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
 
 public class ZipAlign {
 
@@ -57,6 +66,127 @@ public class ZipAlign {
         writer.write();
     }
 
+    /**
+     * Realigns the given apk in place with native libraries aligned to the given page size,
+     * see {@link #realign(File, File, ZipAligner)}. Returns false if nothing is changed
+     * */
+    public static boolean realignApk(File apkFile, int pageAlignment) throws IOException {
+        if(!apkFile.isFile()){
+            throw new FileNotFoundException("No such file: " + apkFile);
+        }
+        ZipAligner zipAligner = ZipAligner.apkAligner(pageAlignment);
+        if(isAligned(apkFile, zipAligner)){
+            return false;
+        }
+        File tmp = toTmpFile(apkFile);
+        try{
+            realign(apkFile, tmp, zipAligner);
+        }catch (IOException ex){
+            tmp.delete();
+            throw ex;
+        }
+        apkFile.delete();
+        tmp.renameTo(apkFile);
+        return true;
+    }
+    public static boolean isAligned(File zipFile, ZipAligner zipAligner) throws IOException {
+        ArchiveFile archiveFile = new ArchiveFile(zipFile);
+        try {
+            return isAligned(archiveFile, zipAligner);
+        }finally {
+            archiveFile.close();
+        }
+    }
+    private static boolean isAligned(ArchiveFile archiveFile, ZipAligner zipAligner){
+        Iterator<ArchiveEntry> iterator = archiveFile.iterator();
+        while (iterator.hasNext()){
+            if(!zipAligner.isAligned(iterator.next().getLocalFileHeader())){
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Realigns existing zip without decompressing or rebuilding entries, only local headers are
+     * rewritten with new padding and the central directory is regenerated. Entry data is copied
+     * by channel transfer. Returns false without creating output if the zip is already aligned.
+     * <br/>
+     * NOTE: APK signing block (v2+) is dropped since moving entries invalidates it, thus
+     * align before signing.
+     * */
+    public static boolean realign(File zipFile, File outFile, ZipAligner zipAligner) throws IOException {
+        if(zipFile.equals(outFile)){
+            throw new IOException("Input and output are equal: " + zipFile);
+        }
+        ArchiveFile archiveFile = new ArchiveFile(zipFile);
+        try {
+            if(isAligned(archiveFile, zipAligner)){
+                return false;
+            }
+            EndRecord endRecord = archiveFile.getEndRecord();
+            if(endRecord.getZip64Locator() != null){
+                archiveFile.close();
+                align(zipFile, outFile, zipAligner);
+                return true;
+            }
+            FileChannel outputChannel = FileUtil.openWriteChannel(outFile);
+            try {
+                realign(archiveFile, zipAligner, outputChannel);
+            }finally {
+                outputChannel.close();
+            }
+        }finally {
+            archiveFile.close();
+        }
+        return true;
+    }
+    private static void realign(ArchiveFile archiveFile, ZipAligner zipAligner,
+                                FileChannel outputChannel) throws IOException {
+        ZipFileInput zipInput = archiveFile.getZipInput();
+        long offset = 0;
+        int count = archiveFile.size();
+        CentralEntryHeader[] cehList = new CentralEntryHeader[count];
+        Iterator<ArchiveEntry> iterator = archiveFile.iterator();
+        int index = 0;
+        while (iterator.hasNext()){
+            ArchiveEntry entry = iterator.next();
+            LocalFileHeader lfh = entry.getLocalFileHeader();
+            long dataOffset = entry.getFileOffset();
+            long dataSize = entry.getDataSize();
+            CentralEntryHeader ceh = entry.getCentralEntryHeader();
+            ceh.setLocalRelativeOffset(offset);
+            cehList[index] = ceh;
+            index ++;
+            zipAligner.align(offset, lfh);
+            offset += writeFully(outputChannel, lfh.getBytes());
+            long transferred = zipInput.transferTo(dataOffset, dataSize, outputChannel);
+            if(transferred != dataSize){
+                throw new IOException("Incomplete transfer of " + entry.getName()
+                        + ", expected = " + dataSize + ", transferred = " + transferred);
+            }
+            offset += transferred;
+            DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+            if(dataDescriptor != null){
+                offset += writeFully(outputChannel, dataDescriptor.getBytes());
+            }
+        }
+        long cdOffset = offset;
+        for(CentralEntryHeader ceh : cehList){
+            offset += writeFully(outputChannel, ceh.getBytes());
+        }
+        EndRecord endRecord = archiveFile.getEndRecord();
+        endRecord.setOffsetOfCentralDirectory(cdOffset);
+        endRecord.setLengthOfCentralDirectory(offset - cdOffset);
+        writeFully(outputChannel, endRecord.getBytes());
+    }
+    private static int writeFully(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()){
+            channel.write(buffer);
+        }
+        return bytes.length;
+    }
+
     private static File toTmpFile(File file){
         String name = file.getName() + ".align.tmp";
         File dir = file.getParentFile();
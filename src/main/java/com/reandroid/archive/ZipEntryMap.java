@@ -239,6 +239,22 @@ public class ZipEntryMap implements Comparator<InputSource>, Iterable<InputSourc
             return mSourceMap.get(name);
         }
     }
+    /**
+     * Returns input sources of the given names in the same order, missing names are skipped
+     * */
+    public List<InputSource> getInputSources(Collection<String> names){
+        List<InputSource> results = new ArrayList<>(names.size());
+        synchronized (mLock){
+            LinkedHashMap<String, InputSource> map = this.mSourceMap;
+            for(String name : names){
+                InputSource inputSource = map.get(name);
+                if(inputSource != null){
+                    results.add(inputSource);
+                }
+            }
+        }
+        return results;
+    }
     public boolean contains(String name){
         synchronized (mLock){
             return mSourceMap.containsKey(name);
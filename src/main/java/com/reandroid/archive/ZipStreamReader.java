@@ -0,0 +1,335 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive;
+
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.CodecPool;
+import com.reandroid.arsc.base.Block;
+import com.reandroid.utils.Crc32;
+import com.reandroid.utils.HexUtil;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Forward-only zip reader for non-seekable sources (e.g. network body or pipe). Entries are
+ * parsed from local headers in stream order, the central directory and anything after the
+ * last entry (e.g. APK signing block) are not read. Data of deflated entries with data
+ * descriptor is delimited by the end of deflate stream, stored entries with data descriptor
+ * have no known length and are rejected.
+ * <br/>
+ * Entry data is verified against crc on reaching its end. File offsets are not tracked, thus
+ * {@link ArchiveEntry#getFileOffset()} of the returned entries is meaningless.
+ * <pre>
+ *     ZipStreamReader reader = new ZipStreamReader(inputStream);
+ *     reader.visit((entry, data) -> {
+ *         if(AndroidManifestBlock.FILE_NAME.equals(entry.getName())){
+ *             manifest = AndroidManifestBlock.load(data);
+ *             return false; // stop
+ *         }
+ *         return true;
+ *     });
+ * </pre>
+ * */
+public class ZipStreamReader implements Closeable {
+    private final SourceStream sourceStream;
+    private final CodecPool codecPool;
+    private EntryInputStream currentStream;
+    private int index;
+    private boolean mFinished;
+
+    public ZipStreamReader(InputStream inputStream, CodecPool codecPool){
+        this.sourceStream = new SourceStream(inputStream);
+        this.codecPool = codecPool;
+    }
+    public ZipStreamReader(InputStream inputStream){
+        this(inputStream, CodecPool.getDefault());
+    }
+
+    /**
+     * Calls the visitor for each entry as it arrives, the given stream is uncompressed data of
+     * the entry and valid only during the call; unread data is skipped. Sizes and crc of entries
+     * with data descriptor are known only after their data is read. Returns the number of
+     * visited entries.
+     * */
+    public int visit(EntryVisitor visitor) throws IOException {
+        int result = 0;
+        ArchiveEntry entry;
+        while ((entry = nextEntry()) != null){
+            result ++;
+            if(!visitor.visit(entry, currentStream)){
+                break;
+            }
+        }
+        return result;
+    }
+    /**
+     * Skips the remaining data of the current entry (if any) and reads next local header,
+     * returns null at the end of entries. Data is read through {@link #getInputStream()}
+     * */
+    public ArchiveEntry nextEntry() throws IOException {
+        closeEntry();
+        if(mFinished){
+            return null;
+        }
+        LocalFileHeader lfh = LocalFileHeader.read(sourceStream);
+        if(lfh == null){
+            // central directory, signing block or end of stream
+            mFinished = true;
+            return null;
+        }
+        lfh.setIndex(index);
+        index ++;
+        if(lfh.hasDataDescriptor() && lfh.getMethod() == Archive.STORED){
+            throw new ArchiveException("Stored entry with data descriptor can not be streamed: "
+                    + lfh.getFileName());
+        }
+        this.currentStream = new EntryInputStream(lfh);
+        return new ArchiveEntry(lfh);
+    }
+    /**
+     * Returns uncompressed data of the current entry
+     * */
+    public InputStream getInputStream() {
+        return currentStream;
+    }
+    public int getEntriesCount(){
+        return index;
+    }
+    private void closeEntry() throws IOException {
+        EntryInputStream entryStream = this.currentStream;
+        if(entryStream != null){
+            this.currentStream = null;
+            entryStream.close();
+        }
+    }
+    @Override
+    public void close() throws IOException {
+        try {
+            closeEntry();
+        }finally {
+            mFinished = true;
+            sourceStream.close();
+        }
+    }
+
+    private void readDataDescriptor(LocalFileHeader lfh) throws IOException {
+        byte[] bytes = new byte[16];
+        sourceStream.readFully(bytes, 0, 4);
+        int offset = 0;
+        if(Block.getInteger(bytes, 0) == ZipSignature.DATA_DESCRIPTOR.getValue()){
+            sourceStream.readFully(bytes, 4, 12);
+            offset = 4;
+        }else {
+            // descriptor without signature
+            sourceStream.readFully(bytes, 4, 8);
+        }
+        lfh.updateDataDescriptor();
+        DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+        dataDescriptor.setSignature(ZipSignature.DATA_DESCRIPTOR);
+        dataDescriptor.setCrc(Block.getInteger(bytes, offset) & 0xffffffffL);
+        dataDescriptor.setCompressedSize(Block.getInteger(bytes, offset + 4) & 0xffffffffL);
+        dataDescriptor.setSize(Block.getInteger(bytes, offset + 8) & 0xffffffffL);
+    }
+
+    public interface EntryVisitor {
+        /**
+         * Returns false to stop visiting
+         * */
+        boolean visit(ArchiveEntry archiveEntry, InputStream inputStream) throws IOException;
+    }
+
+    private class EntryInputStream extends InputStream {
+        private final LocalFileHeader lfh;
+        private final Crc32 crc32;
+        private Inflater inflater;
+        private byte[] buffer;
+        private int bufferLength;
+        private long remaining;
+        private boolean mEnd;
+        private boolean mClosed;
+
+        EntryInputStream(LocalFileHeader lfh){
+            this.lfh = lfh;
+            this.crc32 = new Crc32();
+            if(lfh.getMethod() == Archive.STORED){
+                this.remaining = lfh.getSize();
+            }else {
+                this.inflater = codecPool.acquireInflater();
+                this.buffer = new byte[BUFFER_SIZE];
+            }
+        }
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            if(read(bytes, 0, 1) != 1){
+                return -1;
+            }
+            return bytes[0] & 0xff;
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if(mClosed){
+                throw new IOException("Stream closed");
+            }
+            if(mEnd){
+                return -1;
+            }
+            if(length == 0){
+                return 0;
+            }
+            int count;
+            if(inflater == null){
+                count = readStored(bytes, offset, length);
+            }else {
+                count = readDeflated(bytes, offset, length);
+            }
+            if(count > 0){
+                crc32.update(bytes, offset, count);
+            }else {
+                onEnd();
+            }
+            return count;
+        }
+        private int readStored(byte[] bytes, int offset, int length) throws IOException {
+            if(remaining == 0){
+                return -1;
+            }
+            length = (int) Math.min(length, remaining);
+            int count = sourceStream.readAvailable(bytes, offset, length);
+            if(count < 0){
+                throw new EOFException("Stream ended at " + lfh.getFileName());
+            }
+            remaining -= count;
+            return count;
+        }
+        private int readDeflated(byte[] bytes, int offset, int length) throws IOException {
+            Inflater inflater = this.inflater;
+            try {
+                while (true){
+                    int count = inflater.inflate(bytes, offset, length);
+                    if(count > 0){
+                        return count;
+                    }
+                    if(inflater.finished()){
+                        int unused = inflater.getRemaining();
+                        if(unused > 0){
+                            sourceStream.unread(buffer, bufferLength - unused, unused);
+                        }
+                        return -1;
+                    }
+                    if(inflater.needsDictionary()){
+                        throw new ArchiveException("Deflate dictionary required: " + lfh.getFileName());
+                    }
+                    if(inflater.needsInput()){
+                        int read = sourceStream.readAvailable(buffer, 0, buffer.length);
+                        if(read < 0){
+                            throw new EOFException("Stream ended at " + lfh.getFileName());
+                        }
+                        bufferLength = read;
+                        inflater.setInput(buffer, 0, read);
+                    }
+                }
+            } catch (DataFormatException ex) {
+                throw new ArchiveException("Invalid deflate data: " + lfh.getFileName()
+                        + ", " + ex.getMessage());
+            }
+        }
+        private void onEnd() throws IOException {
+            if(mEnd){
+                return;
+            }
+            mEnd = true;
+            releaseInflater();
+            LocalFileHeader lfh = this.lfh;
+            if(lfh.hasDataDescriptor()){
+                readDataDescriptor(lfh);
+            }
+            if(crc32.getValue() != lfh.getCrc()){
+                throw new ArchiveException("CRC mismatch: " + lfh.getFileName()
+                        + ", expected = " + HexUtil.toHex8(lfh.getCrc())
+                        + ", actual = " + HexUtil.toHex8(crc32.getValue()));
+            }
+        }
+        private void releaseInflater(){
+            Inflater inflater = this.inflater;
+            if(inflater != null){
+                this.inflater = null;
+                this.buffer = null;
+                codecPool.releaseInflater(inflater);
+            }
+        }
+        @Override
+        public void close() throws IOException {
+            if(mClosed){
+                return;
+            }
+            try {
+                if(!mEnd){
+                    // skip to the next header
+                    byte[] skipBuffer = new byte[BUFFER_SIZE];
+                    while (read(skipBuffer, 0, skipBuffer.length) >= 0){
+                        continue;
+                    }
+                }
+            }finally {
+                mClosed = true;
+                releaseInflater();
+            }
+        }
+    }
+
+    /**
+     * Source with push back of bytes read ahead by inflater, single reads are filled fully
+     * so that headers are not split on short reads of network streams
+     * */
+    static class SourceStream extends PushbackInputStream {
+        SourceStream(InputStream inputStream){
+            super(inputStream, BUFFER_SIZE);
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int result = 0;
+            while (result < length){
+                int count = super.read(bytes, offset + result, length - result);
+                if(count < 0){
+                    break;
+                }
+                result += count;
+            }
+            if(result == 0 && length != 0){
+                return -1;
+            }
+            return result;
+        }
+        int readAvailable(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, length);
+        }
+        void readFully(byte[] bytes, int offset, int length) throws IOException {
+            if(read(bytes, offset, length) != length){
+                throw new EOFException("Stream ended while reading data descriptor");
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+}
@@ -0,0 +1,472 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.block;
+
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipMappedInput;
+import com.reandroid.utils.FutureUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * Verifies v1 (jar), v2 and v3 signatures. Signed data of all signers is verified
+ * first, then content digests of all schemes are computed together from a single
+ * pass of 1MB chunks over the mapped file. Verification stops at the first failure.
+ * */
+public class ApkVerifier {
+
+    private ExecutorService executorService;
+
+    public ApkVerifier(){
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+    /**
+     * Sets executor to digest chunks of single apk in parallel, or to verify apks in
+     * parallel on {@link #verify(Collection)}. Default is null, verifies on calling thread
+     * */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Verifies all files sharing the executor, each apk is verified on single task thus
+     * the pool is never blocked waiting for nested chunk tasks. Results are in the
+     * same order as the files, failure to read an apk is reported as result error.
+     * */
+    public List<VerificationResult> verify(Collection<File> files) throws IOException {
+        List<VerificationResult> results = new ArrayList<>(files.size());
+        ExecutorService executorService = getExecutorService();
+        if(executorService == null){
+            for(File file : files){
+                results.add(verifyQuietly(file, null));
+            }
+            return results;
+        }
+        List<Future<VerificationResult>> futures = new ArrayList<>(files.size());
+        try{
+            for(File file : files){
+                futures.add(executorService.submit(() -> verifyQuietly(file, null)));
+            }
+            for(Future<VerificationResult> future : futures){
+                results.add(FutureUtil.await(future));
+            }
+        }finally {
+            FutureUtil.cancelAll(futures);
+        }
+        return results;
+    }
+    public VerificationResult verify(File file) throws IOException {
+        return verify(file, getExecutorService());
+    }
+    private VerificationResult verifyQuietly(File file, ExecutorService executorService){
+        try{
+            return verify(file, executorService);
+        }catch (IOException | RuntimeException ex){
+            VerificationResult result = new VerificationResult(file.getName());
+            result.setError("Failed to read: " + ex.getMessage());
+            return result;
+        }
+    }
+    private VerificationResult verify(File file, ExecutorService executorService) throws IOException {
+        VerificationResult result = new VerificationResult(file.getName());
+        ArchiveFile archive = new ArchiveFile(new ZipMappedInput(file), true);
+        try{
+            verifyBlock(archive, result, executorService);
+            if(!result.hasError()){
+                verifyV1(file, result);
+            }
+        }finally {
+            archive.close();
+        }
+        return result;
+    }
+
+    private void verifyBlock(ArchiveFile archive, VerificationResult result,
+                             ExecutorService executorService) throws IOException {
+        ApkSignatureBlock signatureBlock = archive.getApkSignatureBlock();
+        if(signatureBlock == null){
+            return;
+        }
+        SignatureInfo v2 = signatureBlock.getSignature(SignatureId.V2);
+        SignatureInfo v3 = signatureBlock.getSignature(SignatureId.V3);
+        result.setV2Signed(v2 != null);
+        result.setV3Signed(v3 != null);
+        List<SignerInfo> signerList = new ArrayList<>();
+        if(v3 != null){
+            if(!parseSigners(v3, true, signerList, result)){
+                return;
+            }
+        }
+        if(v2 != null){
+            List<SignerInfo> v2Signers = new ArrayList<>();
+            if(!parseSigners(v2, false, v2Signers, result)){
+                return;
+            }
+            for(SignerInfo signerInfo : v2Signers){
+                if(signerInfo.strippedScheme == 3 && v3 == null){
+                    result.setError("V2 signer requires stripped v3 signature");
+                    return;
+                }
+            }
+            signerList.addAll(v2Signers);
+        }
+        if(signerList.isEmpty()){
+            return;
+        }
+        if(!verifyContentDigests(archive, signerList, result, executorService)){
+            return;
+        }
+        result.setV3Verified(v3 != null);
+        result.setV2Verified(v2 != null);
+        result.setCertificates(signerList.get(0).certificates);
+    }
+    private boolean verifyContentDigests(ArchiveFile archive, List<SignerInfo> signerList,
+                                         VerificationResult result,
+                                         ExecutorService executorService) throws IOException {
+        List<String> algorithms = new ArrayList<>();
+        for(SignerInfo signerInfo : signerList){
+            String algorithm = signerInfo.algorithm.getDigestAlgorithm();
+            if(!algorithms.contains(algorithm)){
+                algorithms.add(algorithm);
+            }
+        }
+        ZipFileInput zipInput = archive.getZipInput();
+        EndRecord endRecord = archive.getEndRecord();
+        SignatureFooter footer = archive.getApkSignatureBlock().getSignatureFooter();
+        long cedOffset = endRecord.getOffsetOfCentralDirectory();
+        long cedLength = endRecord.getLengthOfCentralDirectory();
+        long blockOffset = cedOffset - footer.getSignatureSize() - 8;
+        long endOffset = cedOffset + cedLength;
+        long fileLength = zipInput.getLength();
+        if(blockOffset < 0 || endOffset > fileLength || fileLength - endOffset > EndRecord.MAX_LENGTH){
+            result.setError("Invalid signature block or central directory offsets");
+            return false;
+        }
+        byte[] endRecordBytes = new byte[(int) (fileLength - endOffset)];
+        zipInput.read(endOffset, endRecordBytes, 0, endRecordBytes.length);
+        ByteBuffer.wrap(endRecordBytes).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(OFFSET_END_RECORD_CED, (int) blockOffset);
+
+        ChunkedDigest chunkedDigest = new ChunkedDigest(
+                algorithms.toArray(new String[0]), executorService);
+        byte[][] digests = chunkedDigest.digest(
+                ChunkedDigest.of(zipInput, 0, blockOffset),
+                ChunkedDigest.of(zipInput, cedOffset, cedLength),
+                ChunkedDigest.of(endRecordBytes));
+        for(SignerInfo signerInfo : signerList){
+            int index = algorithms.indexOf(signerInfo.algorithm.getDigestAlgorithm());
+            if(!MessageDigest.isEqual(digests[index], signerInfo.contentDigest)){
+                result.setError("V" + (signerInfo.v3 ? 3 : 2) + " content digest mismatch, "
+                        + signerInfo.algorithm);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean parseSigners(SignatureInfo signatureInfo, boolean v3,
+                                 List<SignerInfo> results, VerificationResult result) {
+        String scheme = v3 ? "V3" : "V2";
+        try{
+            byte[] bytes = signatureInfo.getBytes();
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, 12, bytes.length - 12).slice()
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer signers = prefixed(buffer);
+            if(!signers.hasRemaining()){
+                result.setError(scheme + ": no signers");
+                return false;
+            }
+            while (signers.hasRemaining()){
+                SignerInfo signerInfo = new SignerInfo(v3);
+                String error = signerInfo.parse(prefixed(signers));
+                if(error != null){
+                    result.setError(scheme + ": " + error);
+                    return false;
+                }
+                results.add(signerInfo);
+            }
+            return true;
+        }catch (BufferUnderflowException | IllegalArgumentException ex){
+            result.setError(scheme + ": malformed signature block");
+            return false;
+        }catch (GeneralSecurityException ex){
+            result.setError(scheme + ": " + ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Verifies jar signature using the platform JarFile which checks manifest,
+     * signature files and digests of every entry as it is read
+     * */
+    private void verifyV1(File file, VerificationResult result) throws IOException {
+        JarFile jarFile = new JarFile(file, true);
+        try{
+            if(!hasV1Signature(jarFile)){
+                return;
+            }
+            result.setV1Signed(true);
+            String error = checkStrippedSchemes(jarFile, result);
+            if(error != null){
+                result.setError(error);
+                return;
+            }
+            byte[] buffer = new byte[8192];
+            List<X509Certificate> certificates = null;
+            Enumeration<JarEntry> enumeration = jarFile.entries();
+            while (enumeration.hasMoreElements()){
+                JarEntry jarEntry = enumeration.nextElement();
+                if(jarEntry.isDirectory() || isV1SignatureFile(jarEntry.getName())){
+                    continue;
+                }
+                InputStream inputStream = jarFile.getInputStream(jarEntry);
+                while (inputStream.read(buffer) >= 0){
+                    // reading fully triggers digest verification
+                }
+                inputStream.close();
+                CodeSigner[] codeSigners = jarEntry.getCodeSigners();
+                if(codeSigners == null || codeSigners.length == 0){
+                    result.setError("V1: unsigned entry " + jarEntry.getName());
+                    return;
+                }
+                if(certificates == null){
+                    certificates = toX509List(codeSigners[0].getSignerCertPath().getCertificates());
+                }
+            }
+            result.setV1Verified(true);
+            if(certificates != null){
+                result.setCertificates(certificates);
+            }
+        }catch (SecurityException ex){
+            result.setError("V1: " + ex.getMessage());
+        }finally {
+            jarFile.close();
+        }
+    }
+    private static boolean hasV1Signature(JarFile jarFile){
+        Enumeration<JarEntry> enumeration = jarFile.entries();
+        while (enumeration.hasMoreElements()){
+            String name = enumeration.nextElement().getName().toUpperCase(Locale.ROOT);
+            if(name.startsWith("META-INF/") && name.endsWith(".SF")){
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * Signature files declare the schemes of the same signer with X-Android-APK-Signed,
+     * if the declared scheme is missing then it has been stripped
+     * */
+    private static String checkStrippedSchemes(JarFile jarFile, VerificationResult result) throws IOException {
+        Enumeration<JarEntry> enumeration = jarFile.entries();
+        while (enumeration.hasMoreElements()){
+            JarEntry jarEntry = enumeration.nextElement();
+            String name = jarEntry.getName().toUpperCase(Locale.ROOT);
+            if(!name.startsWith("META-INF/") || !name.endsWith(".SF")){
+                continue;
+            }
+            InputStream inputStream = jarFile.getInputStream(jarEntry);
+            Attributes attributes = new Manifest(inputStream).getMainAttributes();
+            inputStream.close();
+            String value = attributes.getValue("X-Android-APK-Signed");
+            if(value == null){
+                continue;
+            }
+            for(String scheme : value.split(",")){
+                scheme = scheme.trim();
+                if("2".equals(scheme) && !result.isV2Signed()){
+                    return "V1: signature declares stripped v2 signature";
+                }
+                if("3".equals(scheme) && !result.isV3Signed()){
+                    return "V1: signature declares stripped v3 signature";
+                }
+            }
+        }
+        return null;
+    }
+    private static boolean isV1SignatureFile(String name){
+        name = name.toUpperCase(Locale.ROOT);
+        if(!name.startsWith("META-INF/")){
+            return false;
+        }
+        if(name.equals(JarFile.MANIFEST_NAME)){
+            return true;
+        }
+        return name.indexOf('/', 9) < 0 && (name.endsWith(".SF") || name.endsWith(".RSA")
+                || name.endsWith(".DSA") || name.endsWith(".EC"));
+    }
+    private static List<X509Certificate> toX509List(List<? extends Certificate> certificates){
+        List<X509Certificate> results = new ArrayList<>(certificates.size());
+        for(Certificate certificate : certificates){
+            if(certificate instanceof X509Certificate){
+                results.add((X509Certificate) certificate);
+            }
+        }
+        return results;
+    }
+
+    static ByteBuffer prefixed(ByteBuffer buffer){
+        int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining()){
+            throw new BufferUnderflowException();
+        }
+        ByteBuffer result = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+    static byte[] toArray(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static class SignerInfo {
+        final boolean v3;
+        SignatureAlgorithm algorithm;
+        byte[] contentDigest;
+        List<X509Certificate> certificates;
+        int strippedScheme;
+
+        SignerInfo(boolean v3){
+            this.v3 = v3;
+        }
+        /**
+         * Returns error message or null if signed data is verified
+         * */
+        String parse(ByteBuffer signer) throws GeneralSecurityException {
+            ByteBuffer signedData = prefixed(signer);
+            byte[] signedDataBytes = toArray(signedData.duplicate());
+            int minSdk = 0;
+            int maxSdk = 0;
+            if(v3){
+                minSdk = signer.getInt();
+                maxSdk = signer.getInt();
+            }
+            ByteBuffer signatures = prefixed(signer);
+            byte[] publicKeyBytes = toArray(prefixed(signer));
+            byte[] signature = null;
+            SignatureAlgorithm best = null;
+            while (signatures.hasRemaining()){
+                ByteBuffer element = prefixed(signatures);
+                SignatureAlgorithm algorithm = SignatureAlgorithm.valueOf(element.getInt());
+                byte[] bytes = toArray(prefixed(element));
+                if(algorithm != null && (best == null || isStronger(algorithm, best))){
+                    best = algorithm;
+                    signature = bytes;
+                }
+            }
+            if(best == null){
+                return "no supported signature algorithm";
+            }
+            this.algorithm = best;
+            PublicKey publicKey = KeyFactory.getInstance(best.getKeyAlgorithm())
+                    .generatePublic(new X509EncodedKeySpec(publicKeyBytes));
+            Signature jcaSignature = best.newSignature();
+            jcaSignature.initVerify(publicKey);
+            jcaSignature.update(signedDataBytes);
+            if(!jcaSignature.verify(signature)){
+                return "signature mismatch, " + best;
+            }
+            ByteBuffer digests = prefixed(signedData);
+            while (digests.hasRemaining()){
+                ByteBuffer element = prefixed(digests);
+                int id = element.getInt();
+                byte[] digest = toArray(prefixed(element));
+                if(id == best.getId()){
+                    this.contentDigest = digest;
+                }
+            }
+            if(contentDigest == null){
+                return "missing content digest of " + best;
+            }
+            String error = parseCertificates(prefixed(signedData), publicKeyBytes);
+            if(error != null){
+                return error;
+            }
+            if(v3){
+                if(minSdk != signedData.getInt() || maxSdk != signedData.getInt()){
+                    return "sdk versions of signer and signed data mismatch";
+                }
+            }
+            ByteBuffer attributes = prefixed(signedData);
+            while (attributes.hasRemaining()){
+                ByteBuffer attribute = prefixed(attributes);
+                if(attribute.getInt() == ApkSigner.ATTR_STRIPPING_PROTECTION){
+                    strippedScheme = attribute.getInt();
+                }
+            }
+            return null;
+        }
+        /**
+         * Certificates are parsed the same way as {@link CertificateBlock#getCertificate()},
+         * each certificate must be signed by the next one on the chain
+         * */
+        private String parseCertificates(ByteBuffer buffer, byte[] publicKeyBytes) {
+            List<X509Certificate> certificates = new ArrayList<>();
+            while (buffer.hasRemaining()){
+                X509Certificate certificate = CertificateUtil.generateCertificate(
+                        toArray(prefixed(buffer)));
+                if(certificate == null){
+                    return "invalid certificate";
+                }
+                certificates.add(certificate);
+            }
+            if(certificates.isEmpty()){
+                return "no certificates";
+            }
+            if(!Arrays.equals(publicKeyBytes, certificates.get(0).getPublicKey().getEncoded())){
+                return "public key mismatch with certificate";
+            }
+            int size = certificates.size();
+            for(int i = 0; i < size - 1; i++){
+                try {
+                    certificates.get(i).verify(certificates.get(i + 1).getPublicKey());
+                } catch (GeneralSecurityException ex) {
+                    return "broken certificate chain at " + i + ", " + ex.getMessage();
+                }
+            }
+            this.certificates = certificates;
+            return null;
+        }
+        private static boolean isStronger(SignatureAlgorithm algorithm, SignatureAlgorithm other){
+            return "SHA-512".equals(algorithm.getDigestAlgorithm())
+                    && !"SHA-512".equals(other.getDigestAlgorithm());
+        }
+    }
+
+    private static final int OFFSET_END_RECORD_CED = 16;
+}
@@ -0,0 +1,250 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.block;
+
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipOutput;
+import com.reandroid.utils.FutureUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Computes APK signature scheme v2/v3 content digests: every section is split into
+ * 1MB chunks, each chunk is digested as (0xa5, uint32 length, bytes) and the top level
+ * digest is computed over (0x5a, uint32 chunk count, chunk digests).
+ * Chunks are independent thus digested in parallel when executor is given, all
+ * algorithms are computed from a single read of each chunk.
+ * */
+public class ChunkedDigest {
+
+    private final String[] digestAlgorithms;
+    private final ExecutorService executorService;
+
+    public ChunkedDigest(String[] digestAlgorithms, ExecutorService executorService) throws IOException {
+        this.digestAlgorithms = digestAlgorithms;
+        this.executorService = executorService;
+        for(String algorithm : digestAlgorithms){
+            newDigest(algorithm);
+        }
+    }
+    public ChunkedDigest(String digestAlgorithm, ExecutorService executorService) throws IOException {
+        this(new String[]{digestAlgorithm}, executorService);
+    }
+
+    /**
+     * Returns top level digests in the same order as the digest algorithms
+     * */
+    public byte[][] digest(Section ... sections) throws IOException {
+        List<Chunk> chunkList = new ArrayList<>();
+        for(Section section : sections){
+            long length = section.length();
+            long offset = 0;
+            while (offset < length){
+                int size = (int) Math.min(CHUNK_SIZE, length - offset);
+                chunkList.add(new Chunk(section, offset, size));
+                offset += size;
+            }
+        }
+        Chunk[] chunks = chunkList.toArray(new Chunk[0]);
+        int count = chunks.length;
+        String[] algorithms = this.digestAlgorithms;
+        byte[][][] chunkDigests = new byte[count][][];
+        ExecutorService executorService = this.executorService;
+        if(executorService == null || count < 2){
+            byte[] buffer = new byte[CHUNK_SIZE];
+            for(int i = 0; i < count; i++){
+                chunkDigests[i] = chunks[i].digest(algorithms, buffer);
+            }
+        }else {
+            digestParallel(executorService, chunks, chunkDigests);
+        }
+        int length = algorithms.length;
+        byte[][] results = new byte[length][];
+        byte[] header = new byte[5];
+        header[0] = 0x5a;
+        putInteger(header, 1, count);
+        for(int i = 0; i < length; i++){
+            MessageDigest messageDigest = newDigest(algorithms[i]);
+            messageDigest.update(header);
+            for(int j = 0; j < count; j++){
+                messageDigest.update(chunkDigests[j][i]);
+            }
+            results[i] = messageDigest.digest();
+        }
+        return results;
+    }
+    private void digestParallel(ExecutorService executorService, Chunk[] chunks,
+                                byte[][][] chunkDigests) throws IOException {
+        String[] algorithms = this.digestAlgorithms;
+        int count = chunks.length;
+        Future<?>[] futures = new Future<?>[count];
+        // reused by tasks of this call only, thus released on return rather than pinned
+        // to pool threads
+        Queue<byte[]> buffers = new ConcurrentLinkedQueue<>();
+        try{
+            for(int i = 0; i < count; i++){
+                Chunk chunk = chunks[i];
+                int index = i;
+                futures[i] = executorService.submit(() -> {
+                    byte[] buffer = buffers.poll();
+                    if(buffer == null){
+                        buffer = new byte[CHUNK_SIZE];
+                    }
+                    try{
+                        chunkDigests[index] = chunk.digest(algorithms, buffer);
+                    }finally {
+                        buffers.offer(buffer);
+                    }
+                    return null;
+                });
+            }
+            FutureUtil.awaitAll(futures);
+        }finally {
+            FutureUtil.cancelAll(futures);
+        }
+    }
+
+    static MessageDigest newDigest(String algorithm) throws IOException {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+    private static void putInteger(byte[] bytes, int offset, int value){
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    static class Chunk {
+        private final Section section;
+        private final long offset;
+        private final int size;
+        Chunk(Section section, long offset, int size){
+            this.section = section;
+            this.offset = offset;
+            this.size = size;
+        }
+        byte[][] digest(String[] algorithms, byte[] buffer) throws IOException {
+            int size = this.size;
+            readFully(buffer, size);
+            byte[] header = new byte[5];
+            header[0] = (byte) 0xa5;
+            putInteger(header, 1, size);
+            int length = algorithms.length;
+            byte[][] results = new byte[length][];
+            for(int i = 0; i < length; i++){
+                MessageDigest messageDigest = newDigest(algorithms[i]);
+                messageDigest.update(header);
+                messageDigest.update(buffer, 0, size);
+                results[i] = messageDigest.digest();
+            }
+            return results;
+        }
+        private void readFully(byte[] buffer, int size) throws IOException {
+            Section section = this.section;
+            long offset = this.offset;
+            int read = 0;
+            while (read < size){
+                int result = section.read(offset + read, buffer, read, size - read);
+                if(result <= 0){
+                    throw new EOFException("Section ended at " + (offset + read)
+                            + ", expecting " + (offset + size));
+                }
+                read += result;
+            }
+        }
+    }
+
+    /**
+     * A range of bytes to digest, reads must be safe to call concurrently
+     * */
+    public interface Section {
+        long length();
+        int read(long position, byte[] buffer, int offset, int length) throws IOException;
+    }
+    public static Section of(byte[] bytes){
+        return new Section() {
+            @Override
+            public long length() {
+                return bytes.length;
+            }
+            @Override
+            public int read(long position, byte[] buffer, int offset, int length) {
+                if(position >= bytes.length){
+                    return -1;
+                }
+                length = (int) Math.min(length, bytes.length - position);
+                System.arraycopy(bytes, (int) position, buffer, offset, length);
+                return length;
+            }
+        };
+    }
+    /**
+     * Reads back the given range of already written bytes of zipOutput
+     * */
+    public static Section of(ZipOutput zipOutput, long start, long length){
+        return new Section() {
+            @Override
+            public long length() {
+                return length;
+            }
+            @Override
+            public int read(long position, byte[] buffer, int offset, int len) throws IOException {
+                if(position >= length){
+                    return -1;
+                }
+                len = (int) Math.min(len, length - position);
+                return zipOutput.read(start + position, buffer, offset, len);
+            }
+        };
+    }
+
+    /**
+     * Positional reads of the given range of zipInput, for mapped inputs the chunks are
+     * copied straight from the mapped segments
+     * */
+    public static Section of(ZipFileInput zipInput, long start, long length){
+        return new Section() {
+            @Override
+            public long length() {
+                return length;
+            }
+            @Override
+            public int read(long position, byte[] buffer, int offset, int len) throws IOException {
+                if(position >= length){
+                    return -1;
+                }
+                len = (int) Math.min(len, length - position);
+                zipInput.read(start + position, buffer, offset, len);
+                return len;
+            }
+        };
+    }
+
+    public static final int CHUNK_SIZE = 1024 * 1024;
+}
@@ -0,0 +1,140 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.block;
+
+import com.reandroid.utils.HexUtil;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.Signature;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.RSAKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.security.spec.PSSParameterSpec;
+
+/**
+ * Signature algorithm ids used by APK signature scheme v2 and v3 blocks
+ * */
+public class SignatureAlgorithm {
+    private final String name;
+    private final int id;
+    private final String keyAlgorithm;
+    private final String jcaSignatureAlgorithm;
+    private final String digestAlgorithm;
+    private final int saltLength;
+
+    private SignatureAlgorithm(String name, int id, String keyAlgorithm,
+                               String jcaSignatureAlgorithm, String digestAlgorithm, int saltLength) {
+        this.name = name;
+        this.id = id;
+        this.keyAlgorithm = keyAlgorithm;
+        this.jcaSignatureAlgorithm = jcaSignatureAlgorithm;
+        this.digestAlgorithm = digestAlgorithm;
+        this.saltLength = saltLength;
+    }
+    public String name() {
+        return name;
+    }
+    public int getId() {
+        return id;
+    }
+    public String getKeyAlgorithm() {
+        return keyAlgorithm;
+    }
+    /**
+     * Message digest algorithm of the 1MB chunks and of the top level content digest
+     * */
+    public String getDigestAlgorithm() {
+        return digestAlgorithm;
+    }
+    public Signature newSignature() throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(jcaSignatureAlgorithm);
+        if(saltLength != 0){
+            MGF1ParameterSpec mgf1 = "SHA-512".equals(digestAlgorithm) ?
+                    MGF1ParameterSpec.SHA512 : MGF1ParameterSpec.SHA256;
+            signature.setParameter(new PSSParameterSpec(digestAlgorithm,
+                    "MGF1", mgf1, saltLength, 1));
+        }
+        return signature;
+    }
+    @Override
+    public String toString() {
+        String name = this.name;
+        if (name != null) {
+            return name;
+        }
+        return "UNKNOWN(" + HexUtil.toHex8(id) + ")";
+    }
+
+    /**
+     * Returns null if the given id is not known
+     * */
+    public static SignatureAlgorithm valueOf(int id) {
+        for (SignatureAlgorithm algorithm : VALUES) {
+            if (id == algorithm.getId()) {
+                return algorithm;
+            }
+        }
+        return null;
+    }
+    /**
+     * Picks the algorithm for the given key the same way as apksigner does,
+     * SHA-512 is used only for large RSA (> 3072 bits) and EC (> 256 bits) keys.
+     * Returns null for unsupported key algorithm.
+     * */
+    public static SignatureAlgorithm forKey(Key key) {
+        String algorithm = key.getAlgorithm();
+        if ("RSA".equalsIgnoreCase(algorithm)) {
+            if (key instanceof RSAKey && ((RSAKey) key).getModulus().bitLength() > 3072) {
+                return RSA_PKCS1_SHA512;
+            }
+            return RSA_PKCS1_SHA256;
+        }
+        if ("EC".equalsIgnoreCase(algorithm)) {
+            if (key instanceof ECKey && ((ECKey) key).getParams().getOrder().bitLength() > 256) {
+                return ECDSA_SHA512;
+            }
+            return ECDSA_SHA256;
+        }
+        if ("DSA".equalsIgnoreCase(algorithm)) {
+            return DSA_SHA256;
+        }
+        return null;
+    }
+    public static SignatureAlgorithm[] values() {
+        return VALUES.clone();
+    }
+
+    public static final SignatureAlgorithm RSA_PSS_SHA256 = new SignatureAlgorithm("RSA_PSS_SHA256",
+            0x0101, "RSA", "RSASSA-PSS", "SHA-256", 32);
+    public static final SignatureAlgorithm RSA_PSS_SHA512 = new SignatureAlgorithm("RSA_PSS_SHA512",
+            0x0102, "RSA", "RSASSA-PSS", "SHA-512", 64);
+    public static final SignatureAlgorithm RSA_PKCS1_SHA256 = new SignatureAlgorithm("RSA_PKCS1_SHA256",
+            0x0103, "RSA", "SHA256withRSA", "SHA-256", 0);
+    public static final SignatureAlgorithm RSA_PKCS1_SHA512 = new SignatureAlgorithm("RSA_PKCS1_SHA512",
+            0x0104, "RSA", "SHA512withRSA", "SHA-512", 0);
+    public static final SignatureAlgorithm ECDSA_SHA256 = new SignatureAlgorithm("ECDSA_SHA256",
+            0x0201, "EC", "SHA256withECDSA", "SHA-256", 0);
+    public static final SignatureAlgorithm ECDSA_SHA512 = new SignatureAlgorithm("ECDSA_SHA512",
+            0x0202, "EC", "SHA512withECDSA", "SHA-512", 0);
+    public static final SignatureAlgorithm DSA_SHA256 = new SignatureAlgorithm("DSA_SHA256",
+            0x0301, "DSA", "SHA256withDSA", "SHA-256", 0);
+
+    private static final SignatureAlgorithm[] VALUES = new SignatureAlgorithm[]{
+            RSA_PSS_SHA256, RSA_PSS_SHA512, RSA_PKCS1_SHA256, RSA_PKCS1_SHA512,
+            ECDSA_SHA256, ECDSA_SHA512, DSA_SHA256
+    };
+}
@@ -0,0 +1,158 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.block;
+
+import com.reandroid.json.JSONArray;
+import com.reandroid.json.JSONObject;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of {@link ApkVerifier}, verification stops at the first failure thus
+ * at most one error is reported
+ * */
+public class VerificationResult {
+    private final String name;
+    private boolean v1Signed;
+    private boolean v2Signed;
+    private boolean v3Signed;
+    private boolean v1Verified;
+    private boolean v2Verified;
+    private boolean v3Verified;
+    private final List<X509Certificate> certificates;
+    private String error;
+
+    public VerificationResult(String name) {
+        this.name = name;
+        this.certificates = new ArrayList<>();
+    }
+
+    public String getName() {
+        return name;
+    }
+    /**
+     * True if no error and at least one scheme is verified
+     * */
+    public boolean isVerified() {
+        return error == null && (v1Verified || v2Verified || v3Verified);
+    }
+    public boolean isV1Signed() {
+        return v1Signed;
+    }
+    public boolean isV2Signed() {
+        return v2Signed;
+    }
+    public boolean isV3Signed() {
+        return v3Signed;
+    }
+    public boolean isV1Verified() {
+        return v1Verified;
+    }
+    public boolean isV2Verified() {
+        return v2Verified;
+    }
+    public boolean isV3Verified() {
+        return v3Verified;
+    }
+    /**
+     * Certificate chain of the first signer of the strongest verified scheme
+     * */
+    public List<X509Certificate> getCertificates() {
+        return certificates;
+    }
+    public String getError() {
+        return error;
+    }
+    public boolean hasError() {
+        return error != null;
+    }
+
+    void setV1Signed(boolean v1Signed) {
+        this.v1Signed = v1Signed;
+    }
+    void setV2Signed(boolean v2Signed) {
+        this.v2Signed = v2Signed;
+    }
+    void setV3Signed(boolean v3Signed) {
+        this.v3Signed = v3Signed;
+    }
+    void setV1Verified(boolean v1Verified) {
+        this.v1Verified = v1Verified;
+    }
+    void setV2Verified(boolean v2Verified) {
+        this.v2Verified = v2Verified;
+    }
+    void setV3Verified(boolean v3Verified) {
+        this.v3Verified = v3Verified;
+    }
+    void setCertificates(List<X509Certificate> certificates) {
+        if(this.certificates.isEmpty()){
+            this.certificates.addAll(certificates);
+        }
+    }
+    void setError(String error) {
+        if(this.error == null){
+            this.error = error;
+        }
+    }
+
+    public JSONObject toJson() {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("name", getName());
+        jsonObject.put("verified", isVerified());
+        jsonObject.put("v1", toJson(isV1Signed(), isV1Verified()));
+        jsonObject.put("v2", toJson(isV2Signed(), isV2Verified()));
+        jsonObject.put("v3", toJson(isV3Signed(), isV3Verified()));
+        JSONArray jsonArray = new JSONArray();
+        for(X509Certificate certificate : getCertificates()){
+            JSONObject json = new JSONObject();
+            json.put("subject", CertificateUtil.toJson(certificate.getSubjectX500Principal()));
+            json.put("issuer", CertificateUtil.toJson(certificate.getIssuerX500Principal()));
+            json.put("serial", certificate.getSerialNumber().longValue());
+            jsonArray.put(json);
+        }
+        jsonObject.put("certificates", jsonArray);
+        jsonObject.put("error", getError());
+        return jsonObject;
+    }
+    private static JSONObject toJson(boolean signed, boolean verified) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("signed", signed);
+        jsonObject.put("verified", verified);
+        return jsonObject;
+    }
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(getName());
+        builder.append(": verified = ");
+        builder.append(isVerified());
+        builder.append(", v1 = ");
+        builder.append(isV1Verified());
+        builder.append(", v2 = ");
+        builder.append(isV2Verified());
+        builder.append(", v3 = ");
+        builder.append(isV3Verified());
+        String error = getError();
+        if(error != null){
+            builder.append(", error = ");
+            builder.append(error);
+        }
+        return builder.toString();
+    }
+}
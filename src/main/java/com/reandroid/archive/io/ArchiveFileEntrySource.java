@@ -17,11 +17,11 @@ package com.reandroid.archive.io;
 
 import com.reandroid.archive.Archive;
 import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 public class ArchiveFileEntrySource extends ArchiveEntrySource<ZipFileInput> {
@@ -33,32 +33,32 @@ public class ArchiveFileEntrySource extends ArchiveEntrySource<ZipFileInput> {
 
     @Override
     public byte[] getBytes(int length) throws IOException {
-        FileChannel fileChannel = getFileChannel();
-        if(getMethod() != Archive.STORED || fileChannel == null){
+        if(getMethod() != Archive.STORED){
             return super.getBytes(length);
         }
         byte[] bytes = new byte[length];
-        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
-        fileChannel.read(byteBuffer);
+        getZipSource().read(getArchiveEntry().getFileOffset(), bytes, 0, length);
         return bytes;
     }
-
-    FileChannel getFileChannel() throws IOException {
+    @Override
+    public BlockReader openBlockReader() throws IOException {
         ZipFileInput zipInput = getZipSource();
-        FileChannel fileChannel = zipInput.getFileChannel();
-        fileChannel.position(getArchiveEntry().getFileOffset());
-        return fileChannel;
+        long length = getLength();
+        if(getMethod() != Archive.STORED || !(zipInput instanceof ZipMappedInput)
+                || length > Integer.MAX_VALUE){
+            return super.openBlockReader();
+        }
+        return new BlockReader(((ZipMappedInput) zipInput).getByteBuffer(
+                getArchiveEntry().getFileOffset(), (int) length));
     }
-
     @Override
     public void write(File file) throws IOException {
-        FileChannel fileChannel = getFileChannel();
-        if(getMethod() != Archive.STORED || fileChannel == null){
+        if(getMethod() != Archive.STORED){
             super.write(file);
             return;
         }
         FileChannel outputChannel = FileUtil.openWriteChannel(file);
-        outputChannel.transferFrom(fileChannel, 0, getLength());
+        getZipSource().transferTo(getArchiveEntry().getFileOffset(), getLength(), outputChannel);
         outputChannel.close();
     }
 
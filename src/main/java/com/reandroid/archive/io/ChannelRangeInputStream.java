@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a range of file channel using positional reads {@link FileChannel#read(ByteBuffer, long)},
+ * the channel position is never changed thus any number of streams can read the same
+ * channel concurrently. Streams of {@link ZipFileInput} read through the zip input, thus
+ * continue on a reopened channel if the shared channel is closed by another reader.
+ * */
+public class ChannelRangeInputStream extends InputStream {
+    private final FileChannel fileChannel;
+    private final ZipFileInput zipInput;
+    private final long start;
+    private final long length;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    private long position;
+    private long bufferStart;
+    private int bufferLength;
+    private long mark;
+    private boolean mClosed;
+
+    private ChannelRangeInputStream(FileChannel fileChannel, ZipFileInput zipInput,
+                                    long start, long length, int bufferSize){
+        this.fileChannel = fileChannel;
+        this.zipInput = zipInput;
+        this.start = start;
+        this.length = length;
+        if(bufferSize > length){
+            bufferSize = (int) length;
+        }
+        if(bufferSize <= 0){
+            bufferSize = 1;
+        }
+        this.buffer = new byte[bufferSize];
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+    public ChannelRangeInputStream(FileChannel fileChannel, long start, long length, int bufferSize){
+        this(fileChannel, null, start, length, bufferSize);
+    }
+    public ChannelRangeInputStream(FileChannel fileChannel, long start, long length){
+        this(fileChannel, start, length, DEFAULT_BUFFER_SIZE);
+    }
+    ChannelRangeInputStream(ZipFileInput zipInput, long start, long length){
+        this(null, zipInput, start, length, DEFAULT_BUFFER_SIZE);
+    }
+
+    public FileChannel getFileChannel() throws IOException {
+        ZipFileInput zipInput = this.zipInput;
+        if(zipInput != null){
+            return zipInput.getFileChannel();
+        }
+        return fileChannel;
+    }
+    private int readChannel(ByteBuffer byteBuffer, long position) throws IOException {
+        ZipFileInput zipInput = this.zipInput;
+        if(zipInput != null){
+            return zipInput.read(byteBuffer, position);
+        }
+        return fileChannel.read(byteBuffer, position);
+    }
+    public long transferTo(OutputStream outputStream) throws IOException {
+        long result = 0;
+        while (remaining() > 0){
+            int offset = loadBuffer();
+            int count = bufferLength - offset;
+            outputStream.write(buffer, offset, count);
+            position += count;
+            result += count;
+        }
+        return result;
+    }
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if(length == 0){
+            return 0;
+        }
+        long remaining = remaining();
+        if(remaining <= 0){
+            return -1;
+        }
+        if(length > remaining){
+            length = (int) remaining;
+        }
+        if(length >= buffer.length){
+            return readDirect(bytes, offset, length);
+        }
+        int result = 0;
+        while (length > 0){
+            int bufferOffset = loadBuffer();
+            int count = bufferLength - bufferOffset;
+            if(count > length){
+                count = length;
+            }
+            System.arraycopy(buffer, bufferOffset, bytes, offset, count);
+            position += count;
+            offset += count;
+            length -= count;
+            result += count;
+        }
+        return result;
+    }
+    private int readDirect(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length);
+        long pos = start + position;
+        while (byteBuffer.hasRemaining()){
+            int read = readChannel(byteBuffer, pos);
+            if(read < 0){
+                throw new EOFException("Unexpected end of channel at " + pos);
+            }
+            pos += read;
+        }
+        position += length;
+        return length;
+    }
+    private int loadBuffer() throws IOException {
+        long position = this.position;
+        if(position >= bufferStart && position < bufferStart + bufferLength){
+            return (int) (position - bufferStart);
+        }
+        int length = (int) Math.min(buffer.length, remaining());
+        ByteBuffer byteBuffer = this.byteBuffer;
+        byteBuffer.clear();
+        byteBuffer.limit(length);
+        long pos = start + position;
+        while (byteBuffer.hasRemaining()){
+            int read = readChannel(byteBuffer, pos);
+            if(read < 0){
+                throw new EOFException("Unexpected end of channel at " + pos);
+            }
+            pos += read;
+        }
+        this.bufferStart = position;
+        this.bufferLength = length;
+        return 0;
+    }
+    @Override
+    public int read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+    @Override
+    public int read() throws IOException {
+        if(remaining() <= 0){
+            return -1;
+        }
+        int offset = loadBuffer();
+        position ++;
+        return buffer[offset] & 0xff;
+    }
+    @Override
+    public long skip(long amount) {
+        if(amount <= 0){
+            return 0;
+        }
+        long remaining = remaining();
+        if(amount > remaining){
+            amount = remaining;
+        }
+        position += amount;
+        return amount;
+    }
+    @Override
+    public int available() {
+        return (int) Math.min(remaining(), Integer.MAX_VALUE);
+    }
+    private long remaining(){
+        if(mClosed){
+            return 0;
+        }
+        return length - position;
+    }
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+    @Override
+    public synchronized void mark(int readLimit) {
+        this.mark = position;
+    }
+    @Override
+    public synchronized void reset() {
+        this.position = mark;
+    }
+    @Override
+    public void close() {
+        mClosed = true;
+    }
+    @Override
+    public String toString(){
+        return "[" + start + ", " + length + "] " + position;
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 1024 * 64;
+}
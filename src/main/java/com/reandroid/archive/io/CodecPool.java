@@ -0,0 +1,202 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Thread-safe pool of raw (nowrap) zip {@link Deflater}s and {@link Inflater}s.
+ * Deflaters are pooled per compression level, idle codecs above {@link #getMaxIdle()}
+ * are ended immediately on release thus retained native memory stays bounded.
+ * Native memory of live codecs is estimated from zlib default window and memory levels.
+ * */
+public class CodecPool {
+    private final DeflaterPool[] deflaterPools;
+    private final ConcurrentLinkedQueue<Inflater> inflaterPool;
+    private final AtomicInteger inflaterIdle;
+    private final AtomicLong liveDeflaters;
+    private final AtomicLong liveInflaters;
+    private final AtomicLong peakNativeMemory;
+    private final AtomicLong reuseCount;
+    private final int maxIdle;
+
+    public CodecPool(int maxIdle){
+        int length = LEVELS_COUNT;
+        this.deflaterPools = new DeflaterPool[length];
+        for(int i = 0; i < length; i++){
+            deflaterPools[i] = new DeflaterPool();
+        }
+        this.inflaterPool = new ConcurrentLinkedQueue<>();
+        this.inflaterIdle = new AtomicInteger();
+        this.liveDeflaters = new AtomicLong();
+        this.liveInflaters = new AtomicLong();
+        this.peakNativeMemory = new AtomicLong();
+        this.reuseCount = new AtomicLong();
+        this.maxIdle = maxIdle;
+    }
+    public CodecPool(){
+        this(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public Deflater acquireDeflater(int level){
+        DeflaterPool pool = deflaterPools[toIndex(level)];
+        Deflater deflater = pool.queue.poll();
+        if(deflater != null){
+            pool.idle.decrementAndGet();
+            reuseCount.incrementAndGet();
+            return deflater;
+        }
+        deflater = new Deflater(level, true);
+        liveDeflaters.incrementAndGet();
+        updatePeak();
+        return deflater;
+    }
+    /**
+     * Returns deflater acquired with the given level back to pool
+     * */
+    public void releaseDeflater(Deflater deflater, int level){
+        if(deflater == null){
+            return;
+        }
+        DeflaterPool pool = deflaterPools[toIndex(level)];
+        if(pool.idle.incrementAndGet() > maxIdle){
+            pool.idle.decrementAndGet();
+            deflater.end();
+            liveDeflaters.decrementAndGet();
+            return;
+        }
+        deflater.reset();
+        pool.queue.offer(deflater);
+    }
+    public Inflater acquireInflater(){
+        Inflater inflater = inflaterPool.poll();
+        if(inflater != null){
+            inflaterIdle.decrementAndGet();
+            reuseCount.incrementAndGet();
+            return inflater;
+        }
+        inflater = new Inflater(true);
+        liveInflaters.incrementAndGet();
+        updatePeak();
+        return inflater;
+    }
+    public void releaseInflater(Inflater inflater){
+        if(inflater == null){
+            return;
+        }
+        if(inflaterIdle.incrementAndGet() > maxIdle){
+            inflaterIdle.decrementAndGet();
+            inflater.end();
+            liveInflaters.decrementAndGet();
+            return;
+        }
+        inflater.reset();
+        inflaterPool.offer(inflater);
+    }
+    /**
+     * Ends all idle codecs, acquired codecs remain valid and are ended on release
+     * if the pool is full
+     * */
+    public void trim(){
+        for(DeflaterPool pool : deflaterPools){
+            Deflater deflater;
+            while ((deflater = pool.queue.poll()) != null){
+                pool.idle.decrementAndGet();
+                deflater.end();
+                liveDeflaters.decrementAndGet();
+            }
+        }
+        Inflater inflater;
+        while ((inflater = inflaterPool.poll()) != null){
+            inflaterIdle.decrementAndGet();
+            inflater.end();
+            liveInflaters.decrementAndGet();
+        }
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+    public long getLiveDeflaters(){
+        return liveDeflaters.get();
+    }
+    public long getLiveInflaters(){
+        return liveInflaters.get();
+    }
+    public long getReuseCount(){
+        return reuseCount.get();
+    }
+    /**
+     * Estimated native (zlib) memory held by not yet ended codecs of this pool
+     * */
+    public long getNativeMemory(){
+        return getLiveDeflaters() * DEFLATER_NATIVE_SIZE
+                + getLiveInflaters() * INFLATER_NATIVE_SIZE;
+    }
+    public long getPeakNativeMemory(){
+        return peakNativeMemory.get();
+    }
+    private void updatePeak(){
+        long memory = getNativeMemory();
+        long peak;
+        while ((peak = peakNativeMemory.get()) < memory){
+            if(peakNativeMemory.compareAndSet(peak, memory)){
+                break;
+            }
+        }
+    }
+    @Override
+    public String toString(){
+        return "deflaters=" + getLiveDeflaters()
+                + ", inflaters=" + getLiveInflaters()
+                + ", reused=" + getReuseCount()
+                + ", native=" + getNativeMemory()
+                + ", peak=" + getPeakNativeMemory();
+    }
+
+    private static int toIndex(int level){
+        if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION){
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        return level + 1;
+    }
+
+    static class DeflaterPool {
+        final ConcurrentLinkedQueue<Deflater> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger idle = new AtomicInteger();
+    }
+
+    public static CodecPool getDefault(){
+        return DEFAULT;
+    }
+
+    private static final CodecPool DEFAULT = new CodecPool();
+
+    private static final int LEVELS_COUNT = Deflater.BEST_COMPRESSION + 2;
+
+    /**
+     * zlib deflate: (1 << (windowBits + 2)) + (1 << (memLevel + 9)) plus internal state
+     * */
+    public static final long DEFLATER_NATIVE_SIZE = (1 << 17) + (1 << 17) + 6 * 1024;
+    /**
+     * zlib inflate: (1 << windowBits) plus internal state
+     * */
+    public static final long INFLATER_NATIVE_SIZE = (1 << 15) + 7 * 1024;
+}
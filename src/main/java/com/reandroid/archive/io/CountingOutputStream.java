@@ -27,6 +27,8 @@ public class CountingOutputStream<T extends OutputStream> extends OutputStream {
     private Crc32 crc32;
     private long size;
     private boolean mClosed;
+    private boolean timeCrc;
+    private long crcNanos;
 
     public CountingOutputStream(T outputStream, boolean disableCrc){
         this.outputStream = outputStream;
@@ -52,6 +54,15 @@ public class CountingOutputStream<T extends OutputStream> extends OutputStream {
         }
     }
 
+    /**
+     * Measures time spent on crc computation, see {@link #getCrcNanos()}
+     * */
+    public void setTimeCrc(boolean timeCrc) {
+        this.timeCrc = timeCrc;
+    }
+    public long getCrcNanos() {
+        return crcNanos;
+    }
     public void reset() {
         if (this.crc32 != null) {
             this.crc32.reset();
@@ -90,8 +101,15 @@ public class CountingOutputStream<T extends OutputStream> extends OutputStream {
         }
         outputStream.write(bytes, offset, length);
         this.size += length;
-        if(this.crc32 != null){
-            this.crc32.update(bytes, offset, length);
+        Crc32 crc32 = this.crc32;
+        if(crc32 != null){
+            if(timeCrc){
+                long start = System.nanoTime();
+                crc32.update(bytes, offset, length);
+                this.crcNanos += System.nanoTime() - start;
+            }else {
+                crc32.update(bytes, offset, length);
+            }
         }
     }
     @Override
@@ -0,0 +1,163 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads a range of {@link ZipMappedInput} segments without copying into intermediate
+ * buffers, every stream has its own position thus concurrent streams do not interfere.
+ * */
+public class MappedInputStream extends InputStream {
+    private final ZipMappedInput zipInput;
+    private final long start;
+    private final long length;
+    private long position;
+    private long mark;
+    private boolean mClosed;
+    private ByteBuffer mSegment;
+    private long mSegmentOffset;
+
+    MappedInputStream(ZipMappedInput zipInput, long start, long length){
+        this.zipInput = zipInput;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * Returns zero-copy view of the remaining bytes if they are within single segment,
+     * otherwise a heap copy. The stream position is not changed.
+     * */
+    public ByteBuffer remainingBuffer() throws IOException {
+        return zipInput.getByteBuffer(start + position, (int) Math.min(remaining(), Integer.MAX_VALUE));
+    }
+    public long transferTo(OutputStream outputStream) throws IOException {
+        long result = 0;
+        byte[] buffer = null;
+        while (remaining() > 0){
+            ByteBuffer segment = zipInput.segmentAt(start + position, remaining());
+            int length = segment.remaining();
+            if(segment.hasArray()){
+                outputStream.write(segment.array(), segment.arrayOffset() + segment.position(), length);
+            }else {
+                if(buffer == null){
+                    buffer = new byte[(int) Math.min(remaining(), BUFFER_SIZE)];
+                }
+                int count = Math.min(length, buffer.length);
+                segment.get(buffer, 0, count);
+                outputStream.write(buffer, 0, count);
+                length = count;
+            }
+            position += length;
+            result += length;
+        }
+        return result;
+    }
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if(length == 0){
+            return 0;
+        }
+        long remaining = remaining();
+        if(remaining <= 0){
+            return -1;
+        }
+        if(length > remaining){
+            length = (int) remaining;
+        }
+        int result = 0;
+        while (length > 0){
+            ByteBuffer segment = zipInput.segmentAt(start + position, length);
+            int count = segment.remaining();
+            segment.get(bytes, offset, count);
+            offset += count;
+            length -= count;
+            position += count;
+            result += count;
+        }
+        return result;
+    }
+    @Override
+    public int read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+    @Override
+    public int read() throws IOException {
+        if(remaining() <= 0){
+            return -1;
+        }
+        long offset = start + position;
+        ByteBuffer segment = this.mSegment;
+        long index = offset - mSegmentOffset;
+        if(segment == null || index < 0 || index >= segment.remaining()){
+            segment = zipInput.segmentAt(offset, remaining());
+            this.mSegment = segment;
+            this.mSegmentOffset = offset;
+            index = 0;
+        }
+        int i = segment.get(segment.position() + (int) index);
+        position ++;
+        return i & 0xff;
+    }
+    @Override
+    public long skip(long amount) {
+        if(amount <= 0){
+            return 0;
+        }
+        long remaining = remaining();
+        if(amount > remaining){
+            amount = remaining;
+        }
+        position += amount;
+        return amount;
+    }
+    @Override
+    public int available() {
+        return (int) Math.min(remaining(), Integer.MAX_VALUE);
+    }
+    private long remaining(){
+        if(mClosed){
+            return 0;
+        }
+        return length - position;
+    }
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+    @Override
+    public synchronized void mark(int readLimit) {
+        this.mark = position;
+    }
+    @Override
+    public synchronized void reset() {
+        this.position = mark;
+    }
+    @Override
+    public void close() {
+        mClosed = true;
+        mSegment = null;
+    }
+    @Override
+    public String toString(){
+        return "[" + start + ", " + length + "] " + position;
+    }
+
+    private static final int BUFFER_SIZE = 1024 * 64;
+}
@@ -0,0 +1,55 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Inflates raw deflate data with inflater from {@link CodecPool}, the inflater is
+ * returned to the pool on {@link #close()}
+ * */
+public class PooledInflaterInputStream extends InflaterInputStream {
+    private final CodecPool codecPool;
+    private Inflater pooledInflater;
+
+    public PooledInflaterInputStream(InputStream inputStream, CodecPool codecPool, int bufferSize){
+        this(inputStream, codecPool, codecPool.acquireInflater(), bufferSize);
+    }
+    public PooledInflaterInputStream(InputStream inputStream, int bufferSize){
+        this(inputStream, CodecPool.getDefault(), bufferSize);
+    }
+    private PooledInflaterInputStream(InputStream inputStream, CodecPool codecPool, Inflater inflater, int bufferSize){
+        super(inputStream, inflater, bufferSize);
+        this.codecPool = codecPool;
+        this.pooledInflater = inflater;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try{
+            super.close();
+        }finally {
+            Inflater inflater = this.pooledInflater;
+            if(inflater != null){
+                this.pooledInflater = null;
+                codecPool.releaseInflater(inflater);
+            }
+        }
+    }
+}
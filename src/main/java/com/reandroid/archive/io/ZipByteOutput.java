@@ -15,23 +15,39 @@
  */
 package com.reandroid.archive.io;
 
-import com.reandroid.common.BytesOutputStream;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+/**
+ * Writes to {@link SpillBuffer}, content above the memory limit is moved to temp file
+ * */
 public class ZipByteOutput extends ZipOutput{
-    private final BytesOutputStream bis;
+    private final SpillBuffer buffer;
+    public ZipByteOutput(SpillBuffer buffer){
+        this.buffer = buffer;
+    }
+    public ZipByteOutput(long memoryLimit){
+        this(new SpillBuffer(memoryLimit));
+    }
     public ZipByteOutput(){
-        this.bis = new BytesOutputStream();
+        this(new SpillBuffer());
+    }
+    public SpillBuffer getBuffer() {
+        return buffer;
     }
-    public byte[] toByteArray(){
-        return bis.toByteArray();
+    public byte[] toByteArray() {
+        try {
+            return buffer.toByteArray();
+        } catch (IOException ex) {
+            throw new IllegalArgumentException(ex);
+        }
     }
     @Override
     public long position() throws IOException {
-        return bis.position();
+        return buffer.size();
     }
     @Override
     public void position(long pos) throws IOException {
@@ -39,7 +55,7 @@ public class ZipByteOutput extends ZipOutput{
     }
     @Override
     public void close() throws IOException {
-        bis.close();
+        buffer.close();
     }
     @Override
     public boolean isOpen() {
@@ -47,13 +63,31 @@ public class ZipByteOutput extends ZipOutput{
     }
     @Override
     public void write(InputStream inputStream) throws IOException {
-        bis.write(inputStream);
+        buffer.write(inputStream);
     }
     public void write(byte[] bytes) throws IOException {
-        bis.write(bytes);
+        buffer.write(bytes, 0, bytes.length);
+    }
+    /**
+     * Replaces already written bytes starting at the given position
+     * */
+    public void overwrite(long position, byte[] bytes) throws IOException {
+        if(position < 0 || position + bytes.length > position()){
+            throw new IOException("Invalid overwrite range: position = "
+                    + position + ", length = " + bytes.length);
+        }
+        buffer.overwrite(position, bytes, 0, bytes.length);
+    }
+    @Override
+    public int read(long position, byte[] bytes, int offset, int length) throws IOException {
+        return buffer.read(position, bytes, offset, length);
+    }
+    @Override
+    public boolean isReadable() {
+        return true;
     }
     @Override
     public OutputStream getOutputStream() {
-        return bis;
+        return buffer;
     }
 }
@@ -15,17 +15,28 @@
  */
 package com.reandroid.archive.io;
 
-import com.reandroid.common.FileChannelInputStream;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
+/**
+ * Reads zip file through single shared file channel. All reads are positional
+ * ({@link FileChannel#read(ByteBuffer, long)}), thus input streams returned by
+ * {@link #getInputStream(long, long)} are independent of each other and of the channel
+ * position, and can be used concurrently from multiple threads.
+ * Only {@link #position(long)} moves the shared channel position.
+ * A reader interrupted while in I/O closes the shared channel, other readers then
+ * continue on a reopened channel.
+ * */
 public class ZipFileInput extends ZipInput {
     private final File file;
-    private FileChannel fileChannel;
-    private InputStream mCurrentInputStream;
+    private volatile FileChannel fileChannel;
+    private volatile long mLength = -1;
     public ZipFileInput(File file){
         this.file = file;
     }
@@ -48,15 +59,59 @@ public class ZipFileInput extends ZipInput {
     }
     @Override
     public long getLength(){
+        long length = this.mLength;
+        if(length >= 0){
+            return length;
+        }
         return this.file.length();
     }
     @Override
     public InputStream getInputStream(long offset, long length) throws IOException {
-        closeCurrentInputStream();
+        return new ChannelRangeInputStream(this, offset, length);
+    }
+    /**
+     * Positional read, does not change channel position
+     * */
+    public void read(long offset, byte[] bytes, int start, int length) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, start, length);
+        long position = offset;
+        while (byteBuffer.hasRemaining()){
+            int read = read(byteBuffer, position);
+            if(read < 0){
+                throw new EOFException("Unexpected end of file at " + position + ", " + this);
+            }
+            position += read;
+        }
+    }
+    /**
+     * Positional read, does not change channel position. If the shared channel was closed
+     * by another (interrupted) reader, the read is retried once on a reopened channel.
+     * */
+    public int read(ByteBuffer byteBuffer, long position) throws IOException {
+        FileChannel fileChannel = getFileChannel();
+        try{
+            return fileChannel.read(byteBuffer, position);
+        }catch (ClosedChannelException ex){
+            if(ex instanceof ClosedByInterruptException || Thread.currentThread().isInterrupted()){
+                throw ex;
+            }
+            return reopenChannel(fileChannel).read(byteBuffer, position);
+        }
+    }
+    /**
+     * Positional transfer, does not change channel position
+     * */
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
         FileChannel fileChannel = getFileChannel();
-        fileChannel.position(offset);
-        mCurrentInputStream = new FileChannelInputStream(fileChannel, length);
-        return mCurrentInputStream;
+        long result = 0;
+        while (result < length){
+            long count = fileChannel.transferTo(offset + result, length - result, target);
+            if(count <= 0){
+                break;
+            }
+            result += count;
+        }
+        return result;
     }
 
     @Override
@@ -66,26 +121,34 @@ public class ZipFileInput extends ZipInput {
             minLength = (int) position;
         }
         position = position - minLength;
-        FileChannel fileChannel = getFileChannel();
-        fileChannel.position(position);
-        ByteBuffer buffer = ByteBuffer.allocate(minLength);
-        fileChannel.read(buffer);
-        return buffer.array();
+        byte[] bytes = new byte[minLength];
+        read(position, bytes, 0, minLength);
+        return bytes;
     }
+    /**
+     * Returns the shared channel, a channel closed by an interrupted reader is replaced
+     * by a newly opened one
+     * */
     public FileChannel getFileChannel() throws IOException {
         FileChannel fileChannel = this.fileChannel;
-        if(fileChannel != null){
+        if(fileChannel != null && fileChannel.isOpen()){
             return fileChannel;
         }
+        return reopenChannel(fileChannel);
+    }
+    private FileChannel reopenChannel(FileChannel closed) throws IOException {
         synchronized (this){
-            fileChannel = FileUtil.openReadChannel(file);
-            this.fileChannel = fileChannel;
+            FileChannel fileChannel = this.fileChannel;
+            if(fileChannel == null || (fileChannel == closed && !fileChannel.isOpen())){
+                fileChannel = FileUtil.openReadChannel(file);
+                this.mLength = fileChannel.size();
+                this.fileChannel = fileChannel;
+            }
             return fileChannel;
         }
     }
     @Override
     public void close() throws IOException {
-        closeCurrentInputStream();
         closeChannel();
     }
     @Override
@@ -106,16 +169,9 @@ public class ZipFileInput extends ZipInput {
         synchronized (this){
             fileChannel.close();
             this.fileChannel = null;
+            this.mLength = -1;
         }
     }
-    private void closeCurrentInputStream() throws IOException {
-        InputStream current = this.mCurrentInputStream;
-        if(current == null){
-            return;
-        }
-        current.close();
-        mCurrentInputStream = null;
-    }
     @Override
     public String toString(){
         return "File: " + this.file;
@@ -15,11 +15,10 @@
  */
 package com.reandroid.archive.io;
 
-import com.reandroid.utils.io.FileUtil;
-
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
@@ -31,6 +30,10 @@ public class ZipFileOutput extends ZipOutput{
         initFile(file);
         this.file = file;
     }
+    private ZipFileOutput(File file, FileChannel fileChannel) {
+        this.file = file;
+        this.fileChannel = fileChannel;
+    }
     public File getFile() {
         return file;
     }
@@ -41,6 +44,45 @@ public class ZipFileOutput extends ZipOutput{
         fileChannel.position(pos + length);
     }
 
+    /**
+     * Copies the given range of input using positional transfer, thus the input
+     * can be shared with concurrent readers
+     * */
+    public void write(ZipFileInput input, long offset, long length) throws IOException{
+        FileChannel fileChannel = getFileChannel();
+        long pos = fileChannel.position();
+        length = input.transferTo(offset, length, fileChannel);
+        fileChannel.position(pos + length);
+    }
+
+    /**
+     * Discards everything after the given size
+     * */
+    public void truncate(long size) throws IOException {
+        getFileChannel().truncate(size);
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        FileChannel fileChannel = getFileChannel();
+        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, offset, length);
+        int result = 0;
+        while (byteBuffer.hasRemaining()){
+            int read = fileChannel.read(byteBuffer, position + result);
+            if(read < 0){
+                break;
+            }
+            result += read;
+        }
+        if(result == 0 && length != 0){
+            return -1;
+        }
+        return result;
+    }
+    @Override
+    public boolean isReadable() {
+        return true;
+    }
     @Override
     public long position() throws IOException {
         return getFileChannel().position();
@@ -70,7 +112,9 @@ public class ZipFileOutput extends ZipOutput{
             return fileChannel;
         }
         synchronized (this){
-            fileChannel = FileUtil.openWriteChannel(file);
+            // opened for read too, so written bytes can be read back e.g. for signing
+            fileChannel = new RandomAccessFile(file, "rw").getChannel();
+            fileChannel.truncate(0);
             this.fileChannel = fileChannel;
             return fileChannel;
         }
@@ -103,6 +147,17 @@ public class ZipFileOutput extends ZipOutput{
     }
 
 
+    /**
+     * Opens the given file for random access write, unlike the constructor
+     * the current content is preserved
+     * */
+    public static ZipFileOutput openExisting(File file) throws IOException {
+        if(!file.isFile()){
+            throw new IOException("No such file: " + file);
+        }
+        FileChannel fileChannel = new RandomAccessFile(file, "rw").getChannel();
+        return new ZipFileOutput(file, fileChannel);
+    }
     private static void initFile(File file) throws IOException{
         if(file.isDirectory()){
             throw new IOException("Not file: " + file);
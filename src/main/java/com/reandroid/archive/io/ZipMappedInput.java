@@ -0,0 +1,156 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped zip file input, the file is mapped as read-only segments of
+ * {@link #SEGMENT_SIZE} so files larger than 2GB are supported.
+ * Streams returned by {@link #getInputStream(long, long)} read directly from the
+ * mapped segments and are independent of each other, thus can be used concurrently.
+ * The file channel remains available for zero-copy transfers.
+ * */
+public class ZipMappedInput extends ZipFileInput {
+    private final int segmentShift;
+    private final long segmentMask;
+    private volatile ByteBuffer[] segments;
+
+    public ZipMappedInput(File file){
+        this(file, SEGMENT_SHIFT);
+    }
+    /**
+     * Maps the file as segments of (1 << segmentShift) bytes, small segments are only
+     * useful to exercise reads across segment boundaries
+     * */
+    ZipMappedInput(File file, int segmentShift){
+        super(file);
+        if(segmentShift < 1 || segmentShift > SEGMENT_SHIFT){
+            throw new IllegalArgumentException("Invalid segment shift: " + segmentShift);
+        }
+        this.segmentShift = segmentShift;
+        this.segmentMask = (1L << segmentShift) - 1;
+    }
+
+    @Override
+    public InputStream getInputStream(long offset, long length) throws IOException {
+        checkRange(offset, length);
+        return new MappedInputStream(this, offset, length);
+    }
+    @Override
+    public byte[] getFooter(int minLength) throws IOException {
+        long length = getLength();
+        if(minLength > length){
+            minLength = (int) length;
+        }
+        byte[] bytes = new byte[minLength];
+        read(length - minLength, bytes, 0, minLength);
+        return bytes;
+    }
+    /**
+     * Returns read-only view of the given range without copying if the range is
+     * within single segment, otherwise copies the bytes into heap buffer.
+     * */
+    public ByteBuffer getByteBuffer(long offset, int length) throws IOException {
+        checkRange(offset, length);
+        ByteBuffer segment = segmentAt(offset, length);
+        if(segment.remaining() == length){
+            return segment.slice();
+        }
+        byte[] bytes = new byte[length];
+        read(offset, bytes, 0, length);
+        return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+    }
+    @Override
+    public void read(long offset, byte[] bytes, int start, int length) throws IOException {
+        checkRange(offset, length);
+        while (length > 0){
+            ByteBuffer segment = segmentAt(offset, length);
+            int count = segment.remaining();
+            segment.get(bytes, start, count);
+            offset += count;
+            start += count;
+            length -= count;
+        }
+    }
+    ByteBuffer segmentAt(long offset, long maxLength) throws IOException {
+        ByteBuffer[] segments = getSegments();
+        int index = (int) (offset >>> segmentShift);
+        if(index >= segments.length){
+            throw new EOFException("Offset out of range: " + offset + ", " + this);
+        }
+        ByteBuffer segment = segments[index].duplicate();
+        int position = (int) (offset & segmentMask);
+        long limit = position + maxLength;
+        if(limit > segment.capacity()){
+            limit = segment.capacity();
+        }
+        segment.limit((int) limit);
+        segment.position(position);
+        return segment;
+    }
+    private ByteBuffer[] getSegments() throws IOException {
+        ByteBuffer[] segments = this.segments;
+        if(segments != null){
+            return segments;
+        }
+        synchronized (this){
+            segments = this.segments;
+            if(segments == null){
+                segments = mapSegments(getFileChannel(), segmentShift);
+                this.segments = segments;
+            }
+            return segments;
+        }
+    }
+    private void checkRange(long offset, long length) throws IOException {
+        if(offset < 0 || length < 0 || offset + length > getLength()){
+            throw new EOFException("Invalid range [" + offset + ", " + length + "], " + this);
+        }
+    }
+    @Override
+    public void close() throws IOException {
+        synchronized (this){
+            this.segments = null;
+        }
+        super.close();
+    }
+    @Override
+    public String toString(){
+        return "Mapped: " + getFile();
+    }
+
+    private static ByteBuffer[] mapSegments(FileChannel fileChannel, int segmentShift) throws IOException {
+        long size = fileChannel.size();
+        long segmentSize = 1L << segmentShift;
+        int count = (int) ((size + segmentSize - 1) >>> segmentShift);
+        ByteBuffer[] results = new ByteBuffer[count];
+        for(int i = 0; i < count; i++){
+            long position = (long) i << segmentShift;
+            long length = Math.min(segmentSize, size - position);
+            results[i] = fileChannel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        }
+        return results;
+    }
+
+    private static final int SEGMENT_SHIFT = 30;
+    public static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+}
@@ -15,5 +15,19 @@
  */
 package com.reandroid.archive.io;
 
+import java.io.IOException;
+
 public abstract class ZipOutput implements WriteOnlyStream{
+
+    /**
+     * Reads back already written bytes at the given position without moving the current
+     * position, returns number of bytes read or -1 at end of written bytes.
+     * Outputs which can not read back (e.g. plain streams) throws IOException
+     * */
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        throw new IOException("Read not supported: " + getClass().getSimpleName());
+    }
+    public boolean isReadable(){
+        return false;
+    }
 }
@@ -0,0 +1,135 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A range of the parent input viewed as a separate zip, e.g. a stored apk inside .apks
+ * bundle. All reads are delegated to the parent with the slice offset added, thus the
+ * parent channel (or mapped segments) is shared and nothing is copied.
+ * Closing a slice does not close the parent.
+ * */
+public class ZipSliceInput extends ZipFileInput {
+    private final ZipFileInput parent;
+    private final long offset;
+    private final long length;
+
+    public ZipSliceInput(ZipFileInput parent, long offset, long length) throws IOException {
+        super(parent.getFile());
+        if(offset < 0 || length < 0 || offset + length > parent.getLength()){
+            throw new EOFException("Invalid slice [" + offset + ", " + length + "], " + parent);
+        }
+        this.parent = parent;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public ZipFileInput getParent() {
+        return parent;
+    }
+    /**
+     * Start of this slice on the parent
+     * */
+    public long getOffset() {
+        return offset;
+    }
+    @Override
+    public long position() throws IOException {
+        return parent.position() - offset;
+    }
+    @Override
+    public void position(long pos) throws IOException {
+        parent.position(offset + pos);
+    }
+    @Override
+    public long getLength() {
+        return length;
+    }
+    @Override
+    public InputStream getInputStream(long offset, long length) throws IOException {
+        checkRange(offset, length);
+        return parent.getInputStream(this.offset + offset, length);
+    }
+    @Override
+    public void read(long offset, byte[] bytes, int start, int length) throws IOException {
+        checkRange(offset, length);
+        parent.read(this.offset + offset, bytes, start, length);
+    }
+    /**
+     * Positional read limited to this slice, returns -1 at the end of slice
+     * */
+    @Override
+    public int read(ByteBuffer byteBuffer, long position) throws IOException {
+        checkRange(position, 0);
+        long available = this.length - position;
+        if(available == 0 && byteBuffer.hasRemaining()){
+            return -1;
+        }
+        int limit = byteBuffer.limit();
+        if(byteBuffer.remaining() > available){
+            byteBuffer.limit(byteBuffer.position() + (int) available);
+        }
+        try{
+            return parent.read(byteBuffer, this.offset + position);
+        }finally {
+            byteBuffer.limit(limit);
+        }
+    }
+    @Override
+    public long transferTo(long offset, long length, WritableByteChannel target) throws IOException {
+        checkRange(offset, length);
+        return parent.transferTo(this.offset + offset, length, target);
+    }
+    @Override
+    public byte[] getFooter(int minLength) throws IOException {
+        long length = getLength();
+        if(minLength > length){
+            minLength = (int) length;
+        }
+        byte[] bytes = new byte[minLength];
+        read(length - minLength, bytes, 0, minLength);
+        return bytes;
+    }
+    /**
+     * Returns the channel of the parent, positions on it are not relative to this slice
+     * */
+    @Override
+    public FileChannel getFileChannel() throws IOException {
+        return parent.getFileChannel();
+    }
+    @Override
+    public void close() {
+    }
+    @Override
+    public boolean isOpen() {
+        return parent.isOpen();
+    }
+    private void checkRange(long offset, long length) throws IOException {
+        if(offset < 0 || length < 0 || offset + length > this.length){
+            throw new EOFException("Invalid range [" + offset + ", " + length + "], " + this);
+        }
+    }
+    @Override
+    public String toString(){
+        return "Slice [" + offset + ", " + length + "] of " + parent;
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.model;
+
+import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.EndRecord;
+import com.reandroid.archive.block.Zip64Record;
+import com.reandroid.archive.io.ZipInput;
+import com.reandroid.archive.io.ZipMappedInput;
+import com.reandroid.arsc.base.Block;
+import com.reandroid.utils.io.FileUtil;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Persistent sidecar index of archive central directory. The index holds raw central
+ * directory records together with resolved data offsets (end of each local header), thus
+ * a matching index allows opening archive without parsing central directory from archive
+ * nor reading any local header. The index is keyed by archive length, last modified time and
+ * checksum of end record; on any mismatch it is ignored and rewritten.
+ * <br/>
+ * Layout (little endian):
+ * <pre>
+ *   int   magic
+ *   int   version
+ *   long  archive length
+ *   long  archive last modified
+ *   long  crc32 of end record
+ *   int   entry count
+ *   [entry count] {
+ *       long  data offset
+ *       bytes central directory record
+ *   }
+ *   long  crc32 of all the above
+ * </pre>
+ * */
+public class ArchiveIndex {
+    private final File file;
+    private final long lastModified;
+
+    public ArchiveIndex(File file, long lastModified){
+        this.file = file;
+        this.lastModified = lastModified;
+    }
+
+    public File getFile() {
+        return file;
+    }
+    public long getLastModified() {
+        return lastModified;
+    }
+    public boolean isValid(ZipInput zipInput, EndRecord endRecord){
+        try {
+            return load(zipInput, endRecord) != null;
+        } catch (IOException ignored) {
+            return false;
+        }
+    }
+    /**
+     * Returns central directory records with file offsets resolved, or null if the index
+     * file does not exist or does not match the given archive
+     * */
+    public List<CentralEntryHeader> load(ZipInput zipInput, EndRecord endRecord) throws IOException {
+        File file = getFile();
+        if(!file.isFile() || file.length() < HEADER_SIZE + 8){
+            return null;
+        }
+        ZipMappedInput mappedInput = new ZipMappedInput(file);
+        try {
+            return load(mappedInput, zipInput, endRecord);
+        }finally {
+            mappedInput.close();
+        }
+    }
+    private List<CentralEntryHeader> load(ZipMappedInput mappedInput, ZipInput zipInput,
+                                          EndRecord endRecord) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        mappedInput.read(0, header, 0, HEADER_SIZE);
+        if(Block.getInteger(header, 0) != MAGIC
+                || Block.getInteger(header, 4) != VERSION
+                || Block.getLong(header, 8) != zipInput.getLength()
+                || Block.getLong(header, 16) != getLastModified()
+                || Block.getLong(header, 24) != checksum(endRecord)){
+            return null;
+        }
+        int count = Block.getInteger(header, 32);
+        if(count < 0 || count != endRecord.getTotalNumberOfDirectories()){
+            return null;
+        }
+        long length = mappedInput.getLength() - 8;
+        byte[] crcBytes = new byte[8];
+        mappedInput.read(length, crcBytes, 0, 8);
+        if(Block.getLong(crcBytes, 0) != checksum(mappedInput, length)){
+            return null;
+        }
+        InputStream inputStream = new BufferedInputStream(mappedInput.getInputStream(HEADER_SIZE,
+                length - HEADER_SIZE));
+        List<CentralEntryHeader> headerList = new ArrayList<>(count);
+        byte[] offsetBytes = new byte[8];
+        for(int i = 0; i < count; i++){
+            if(inputStream.read(offsetBytes) != 8){
+                return null;
+            }
+            CentralEntryHeader ceh = new CentralEntryHeader();
+            ceh.readBytes(inputStream);
+            if(!ceh.isValidSignature()){
+                return null;
+            }
+            ceh.setFileOffset(Block.getLong(offsetBytes, 0));
+            headerList.add(ceh);
+        }
+        inputStream.close();
+        return headerList;
+    }
+    /**
+     * Writes index of the given central directory, all records must have their file offsets
+     * resolved (i.e. after local headers are read). The file is written to temporary name first
+     * and then renamed, thus concurrent readers never see partial index.
+     * */
+    public void write(ZipInput zipInput, CentralFileDirectory cfd) throws IOException {
+        List<CentralEntryHeader> headerList = cfd.getHeaderList();
+        int count = headerList.size();
+        byte[] header = new byte[HEADER_SIZE];
+        Block.putInteger(header, 0, MAGIC);
+        Block.putInteger(header, 4, VERSION);
+        Block.putLong(header, 8, zipInput.getLength());
+        Block.putLong(header, 16, getLastModified());
+        Block.putLong(header, 24, checksum(cfd.getEndRecord()));
+        Block.putInteger(header, 32, count);
+        CRC32 crc32 = new CRC32();
+        File file = getFile();
+        FileUtil.ensureParentDirectory(file);
+        File tmp = FileUtil.toTmpName(file);
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tmp));
+        try {
+            outputStream.write(header);
+            crc32.update(header);
+            byte[] offsetBytes = new byte[8];
+            for(CentralEntryHeader ceh : headerList){
+                long offset = ceh.getFileOffset();
+                if(offset <= 0){
+                    throw new IOException("Unresolved file offset: " + ceh.getFileName());
+                }
+                Block.putLong(offsetBytes, 0, offset);
+                outputStream.write(offsetBytes);
+                crc32.update(offsetBytes);
+                byte[] bytes = ceh.getBytes();
+                outputStream.write(bytes);
+                crc32.update(bytes);
+            }
+            Block.putLong(offsetBytes, 0, crc32.getValue());
+            outputStream.write(offsetBytes);
+            outputStream.close();
+        }catch (IOException ex){
+            outputStream.close();
+            tmp.delete();
+            throw ex;
+        }
+        if(file.isFile()){
+            file.delete();
+        }
+        if(!tmp.renameTo(file)){
+            tmp.delete();
+            throw new IOException("Failed to rename: " + tmp);
+        }
+    }
+    public void delete(){
+        File file = getFile();
+        if(file.isFile()){
+            file.delete();
+        }
+    }
+
+    private static long checksum(ZipMappedInput mappedInput, long length) throws IOException {
+        CRC32 crc32 = new CRC32();
+        byte[] buffer = new byte[(int) Math.min(length, 8192)];
+        long offset = 0;
+        while (offset < length){
+            int count = (int) Math.min(length - offset, buffer.length);
+            mappedInput.read(offset, buffer, 0, count);
+            crc32.update(buffer, 0, count);
+            offset += count;
+        }
+        return crc32.getValue();
+    }
+    private static long checksum(EndRecord endRecord){
+        CRC32 crc32 = new CRC32();
+        crc32.update(endRecord.getBytes());
+        Zip64Record zip64Record = endRecord.getZip64Record();
+        if(zip64Record != null){
+            crc32.update(zip64Record.getBytes());
+        }
+        return crc32.getValue();
+    }
+
+    /**
+     * Returns default index file of the given archive, i.e. a sidecar file on the same directory
+     * */
+    public static ArchiveIndex sidecarOf(File archive){
+        File dir = archive.getParentFile();
+        String name = archive.getName() + EXTENSION;
+        File file = dir == null ? new File(name) : new File(dir, name);
+        return new ArchiveIndex(file, archive.lastModified());
+    }
+    /**
+     * Returns index of the given archive placed in the given directory, the file name is derived
+     * from absolute path of the archive so that archives on read-only locations can be indexed
+     * */
+    public static ArchiveIndex inDirectory(File dir, File archive){
+        String path = archive.getAbsolutePath();
+        String name = archive.getName() + "-" + Integer.toHexString(path.hashCode()) + EXTENSION;
+        return new ArchiveIndex(new File(dir, name), archive.lastModified());
+    }
+
+    public static final String EXTENSION = ".cdx";
+
+    private static final int MAGIC = 0x58444331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+}
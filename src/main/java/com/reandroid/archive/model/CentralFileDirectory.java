@@ -52,6 +52,34 @@ public class CentralFileDirectory {
         this.headerList = loadCentralFileHeaders(inputStream, endRecord.getTotalNumberOfDirectories());
         this.signatureFooter = tryFindSignatureFooter(zipInput, endRecord);
     }
+    /**
+     * Same as {@link #visit(ZipInput)} but central directory records are taken from the given
+     * index if it matches this archive, in which case records have their file offsets resolved.
+     * Returns true if loaded from index.
+     * */
+    public boolean visit(ZipInput zipInput, ArchiveIndex archiveIndex) throws IOException {
+        if(archiveIndex == null){
+            visit(zipInput);
+            return false;
+        }
+        EndRecord endRecord = new EndRecord();
+        endRecord.findEndRecord(zipInput);
+        List<CentralEntryHeader> headerList;
+        try {
+            headerList = archiveIndex.load(zipInput, endRecord);
+        } catch (IOException ignored) {
+            // corrupted index, treat as mismatch
+            headerList = null;
+        }
+        if(headerList == null){
+            visit(zipInput);
+            return false;
+        }
+        this.endRecord = endRecord;
+        this.headerList = headerList;
+        this.signatureFooter = tryFindSignatureFooter(zipInput, endRecord);
+        return true;
+    }
     private List<CentralEntryHeader> loadCentralFileHeaders(InputStream inputStream, int capacity) throws IOException {
         List<CentralEntryHeader> headerList = new ArrayList<>(capacity);
         CentralEntryHeader ceh = new CentralEntryHeader();
@@ -39,6 +39,13 @@ public class LocalFileDirectory {
         visitLocalFile(zipInput);
         visitApkSigBlock(zipInput);
     }
+    /**
+     * Reads signature block only, local headers are left to be read lazily
+     * by entries of {@link #buildLazyArchiveEntryList(ZipInput)}
+     * */
+    public void visitCentralOnly(ZipInput zipInput) throws IOException {
+        visitApkSigBlock(zipInput);
+    }
     private void visitLocalFile(ZipInput zipInput) throws IOException {
         List<LocalFileHeader> headerList = this.getHeaderList();
         long offset;
@@ -50,27 +57,7 @@ public class LocalFileDirectory {
             offset = ceh.getLocalRelativeOffset();
             inputStream.reset();
             offset = inputStream.skip(offset);
-            LocalFileHeader lfh = LocalFileHeader.read(inputStream);
-            if(lfh == null){
-                throw new ArchiveException("Error reading LFH at "
-                        + offset + ", for CEH = " + ceh.getFileName());
-            }
-            offset = offset + lfh.countBytes();
-            ceh.setFileOffset(offset);
-
-            lfh.setCentralEntryHeader(ceh);
-
-            inputStream.skip(lfh.getDataSize());
-
-            lfh.updateDataDescriptor();
-            DataDescriptor dataDescriptor = lfh.getDataDescriptor();
-            if(dataDescriptor != null) {
-                int read = dataDescriptor.readBytes(inputStream);
-                if(read != dataDescriptor.countBytes()) {
-                    lfh.setHasDataDescriptor(false);
-                }
-            }
-            lfh.setIndex(index);
+            LocalFileHeader lfh = readLocalFileHeader(inputStream, offset, ceh, index);
 
             headerList.add(lfh);
 
@@ -99,6 +86,15 @@ public class LocalFileDirectory {
     public List<LocalFileHeader> getHeaderList() {
         return headerList;
     }
+    public ArchiveEntry[] buildLazyArchiveEntryList(ZipInput zipInput){
+        List<CentralEntryHeader> headerList = getCentralFileDirectory().getHeaderList();
+        int size = headerList.size();
+        ArchiveEntry[] entryList = new ArchiveEntry[size];
+        for(int i = 0; i < size; i++){
+            entryList[i] = new ArchiveEntry(headerList.get(i), zipInput, i);
+        }
+        return entryList;
+    }
     public ArchiveEntry[] buildArchiveEntryList(){
         List<LocalFileHeader> headerList = getHeaderList();
         int size = headerList.size();
@@ -113,4 +109,39 @@ public class LocalFileDirectory {
         }
         return entryList;
     }
+
+    public static LocalFileHeader readLocalFileHeader(ZipInput zipInput, CentralEntryHeader ceh, int index) throws IOException {
+        long offset = ceh.getLocalRelativeOffset();
+        InputStream inputStream = zipInput.getInputStream(offset, zipInput.getLength() - offset);
+        try{
+            return readLocalFileHeader(inputStream, offset, ceh, index);
+        }finally {
+            inputStream.close();
+        }
+    }
+    private static LocalFileHeader readLocalFileHeader(InputStream inputStream, long offset,
+                                                       CentralEntryHeader ceh, int index) throws IOException {
+        LocalFileHeader lfh = LocalFileHeader.read(inputStream);
+        if(lfh == null){
+            throw new ArchiveException("Error reading LFH at "
+                    + offset + ", for CEH = " + ceh.getFileName());
+        }
+        offset = offset + lfh.countBytes();
+        ceh.setFileOffset(offset);
+
+        lfh.setCentralEntryHeader(ceh);
+
+        inputStream.skip(lfh.getDataSize());
+
+        lfh.updateDataDescriptor();
+        DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+        if(dataDescriptor != null) {
+            int read = dataDescriptor.readBytes(inputStream);
+            if(read != dataDescriptor.countBytes()) {
+                lfh.setHasDataDescriptor(false);
+            }
+        }
+        lfh.setIndex(index);
+        return lfh;
+    }
 }
@@ -17,11 +17,14 @@ package com.reandroid.archive.writer;
 
 import com.reandroid.archive.InputSource;
 import com.reandroid.archive.io.ZipByteOutput;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
- * Writes full apk (zip) file to byte array
+ * Writes full apk (zip) file to memory, content above the memory limit of the
+ * output buffer is moved to temp file (see {@link SpillBuffer})
  * */
 public class ApkByteWriter extends ApkWriter<ZipByteOutput, ByteOutputSource>{
     public ApkByteWriter(ZipByteOutput zipOutput, InputSource[] sources) {
@@ -30,10 +33,22 @@ public class ApkByteWriter extends ApkWriter<ZipByteOutput, ByteOutputSource>{
     public ApkByteWriter(InputSource[] sources) {
         this(new ZipByteOutput(), sources);
     }
+    public ApkByteWriter(long memoryLimit, InputSource[] sources) {
+        this(new ZipByteOutput(memoryLimit), sources);
+    }
 
     public byte[] toByteArray(){
         return getZipOutput().toByteArray();
     }
+    /**
+     * Returns the written apk without copying it into single array
+     * */
+    public SpillBuffer getBuffer(){
+        return getZipOutput().getBuffer();
+    }
+    public void writeTo(OutputStream outputStream) throws IOException {
+        getBuffer().writeTo(outputStream);
+    }
     @Override
     void writeApk(ByteOutputSource outputSource, ZipAligner zipAligner) throws IOException {
         outputSource.writeApk(getZipOutput(), zipAligner);
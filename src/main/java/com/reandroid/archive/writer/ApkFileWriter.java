@@ -23,11 +23,16 @@ import com.reandroid.arsc.chunk.TableBlock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
     private BufferFileInput buffer;
     public ApkFileWriter(File file, InputSource[] sources) throws IOException {
-        super(new ZipFileOutput(file), sources);
+        this(new ZipFileOutput(file), sources);
+    }
+    ApkFileWriter(ZipFileOutput zipOutput, InputSource[] sources) {
+        super(zipOutput, sources);
     }
     @Override
     void closeBuffer() throws IOException{
@@ -45,6 +50,10 @@ public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
         this.buffer = buffer;
     }
     @Override
+    boolean isBufferedOnPrepare(){
+        return true;
+    }
+    @Override
     FileOutputSource[] createOutArray(int length){
         return new FileOutputSource[length];
     }
@@ -66,6 +75,12 @@ public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
         File bufferFile = getBufferFile();
         BufferFileOutput output = new BufferFileOutput(bufferFile);
         BufferFileInput input = new BufferFileInput(bufferFile);
+        DeflatePipeline pipeline = getDeflatePipeline();
+        if(pipeline != null){
+            writeBuffer(pipeline, outputList, input, output);
+            output.close();
+            return input;
+        }
         FileOutputSource tableSource = null;
         int length = outputList.length;
         for(int i = 0; i < length; i++){
@@ -86,6 +101,33 @@ public class ApkFileWriter extends ApkWriter<ZipFileOutput, FileOutputSource> {
         output.close();
         return input;
     }
+    private void writeBuffer(DeflatePipeline pipeline, FileOutputSource[] outputList,
+                             BufferFileInput input, BufferFileOutput output) throws IOException {
+        List<FileOutputSource> bufferList = new ArrayList<>(outputList.length);
+        FileOutputSource tableSource = null;
+        for(FileOutputSource fileOutputSource : outputList){
+            if(!fileOutputSource.requiresBuffer()){
+                continue;
+            }
+            if(tableSource == null && TableBlock.FILE_NAME.equals(
+                    fileOutputSource.getInputSource().getAlias())){
+                tableSource = fileOutputSource;
+                continue;
+            }
+            bufferList.add(fileOutputSource);
+        }
+        pipeline.run(bufferList.toArray(new FileOutputSource[bufferList.size()]),
+                (fileOutputSource, index) -> {
+                    InputSource inputSource = fileOutputSource.getInputSource();
+                    onCompressFileProgress(inputSource.getAlias(),
+                            inputSource.getMethod(),
+                            output.position());
+                    fileOutputSource.writePreparedBuffer(input, output);
+                });
+        if(tableSource != null){
+            tableSource.makeBuffer(input, output);
+        }
+    }
     private File getBufferFile(){
         File file = getZipOutput().getFile();
         File dir = file.getParentFile();
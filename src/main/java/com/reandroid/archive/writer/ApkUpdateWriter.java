@@ -0,0 +1,226 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.io.ZipFileOutput;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Updates the file of the given archive in place. Unchanged entries are left where they
+ * are, new or modified entries are written into the space of removed entries if they
+ * fit or else appended after the last kept entry, then signature block, central directory
+ * and end record are rewritten. Thus the cost is proportional to the changed bytes
+ * rather than to the whole archive.
+ * <br/>
+ * An entry is kept in place if its source is an unchanged entry of the same archive,
+ * with the same name and compression method, and its data satisfies {@link ZipAligner}.
+ * <br/>
+ * The archive must stay open during write. Regions of removed or changed entries are
+ * overwritten, so the archive and sources read from it should not be used afterwards.
+ * */
+public class ApkUpdateWriter extends ApkFileWriter {
+
+    private final ArchiveFile archiveFile;
+    private final Map<FileOutputSource, long[]> plannedRanges;
+    private List<long[]> freeRanges;
+    private long tailOffset;
+
+    public ApkUpdateWriter(ArchiveFile archiveFile, InputSource[] sources) throws IOException {
+        super(openOutput(archiveFile), sources);
+        this.archiveFile = archiveFile;
+        this.plannedRanges = new IdentityHashMap<>();
+    }
+
+    private static ZipFileOutput openOutput(ArchiveFile archiveFile) throws IOException {
+        if(archiveFile.isNested()){
+            throw new IOException("Can not update nested archive in place: "
+                    + archiveFile.getZipInput());
+        }
+        return ZipFileOutput.openExisting(archiveFile.getZipInput().getFile());
+    }
+
+    @Override
+    void prepareOutputs(FileOutputSource[] outList) throws IOException {
+        super.prepareOutputs(outList);
+        planLayout(outList);
+    }
+    @Override
+    void writeApk(FileOutputSource outputSource, ZipAligner zipAligner) throws IOException {
+        long[] range = plannedRanges.get(outputSource);
+        if(range == null){
+            return;
+        }
+        ZipFileOutput zipOutput = getZipOutput();
+        zipOutput.position(range[0]);
+        super.writeApk(outputSource, zipAligner);
+        if(zipOutput.position() != range[1]){
+            throw new IOException("Entry length changed after layout: "
+                    + outputSource.getInputSource().getAlias());
+        }
+    }
+    @Override
+    void closeBuffer() throws IOException {
+        super.closeBuffer();
+        ZipFileOutput zipOutput = getZipOutput();
+        clearFreeRanges(zipOutput);
+        zipOutput.truncate(tailOffset);
+        zipOutput.position(tailOffset);
+    }
+    @Override
+    FileOutputSource toOutputSource(InputSource inputSource){
+        if(inputSource instanceof ArchiveFileEntrySource){
+            ArchiveFileEntrySource entrySource = (ArchiveFileEntrySource) inputSource;
+            if(isUnchanged(entrySource)){
+                return new InPlaceOutputSource(entrySource);
+            }
+        }
+        return super.toOutputSource(inputSource);
+    }
+    private boolean isUnchanged(ArchiveFileEntrySource entrySource){
+        if(entrySource.getZipSource() != archiveFile.getZipInput()){
+            return false;
+        }
+        LocalFileHeader lfh = entrySource.getArchiveEntry().getLocalFileHeader();
+        if(lfh.getMethod() != entrySource.getMethod()
+                || !lfh.getFileName().equals(entrySource.getAlias())){
+            return false;
+        }
+        ZipAligner zipAligner = getZipAligner();
+        return zipAligner == null || zipAligner.isAligned(lfh);
+    }
+
+    private void planLayout(FileOutputSource[] outList) {
+        List<long[]> usedRanges = new ArrayList<>();
+        ZipFileInput zipInput = archiveFile.getZipInput();
+        for(FileOutputSource outputSource : outList){
+            if(outputSource instanceof InPlaceOutputSource){
+                InPlaceOutputSource inPlace = (InPlaceOutputSource) outputSource;
+                usedRanges.add(new long[]{inPlace.getStartOffset(), inPlace.getEndOffset()});
+                continue;
+            }
+            // data copied from this archive at write time, must not be overwritten before
+            EntryBuffer entryBuffer = outputSource.getEntryBuffer();
+            if(entryBuffer != null && entryBuffer.getZipFileInput() == zipInput){
+                long offset = entryBuffer.getOffset();
+                usedRanges.add(new long[]{offset, offset + entryBuffer.getLength()});
+            }
+        }
+        usedRanges.sort((range1, range2) -> Long.compare(range1[0], range2[0]));
+        List<long[]> freeRanges = new ArrayList<>();
+        long position = getFirstEntryOffset();
+        for(long[] range : usedRanges){
+            if(range[0] > position){
+                freeRanges.add(new long[]{position, range[0]});
+            }
+            position = Math.max(position, range[1]);
+        }
+        this.freeRanges = freeRanges;
+        this.tailOffset = position;
+
+        long kept = 0;
+        for(FileOutputSource outputSource : outList){
+            if(outputSource instanceof InPlaceOutputSource){
+                kept ++;
+                continue;
+            }
+            plannedRanges.put(outputSource, allocate(outputSource));
+        }
+        logMessage("Kept in place: " + kept + "/" + outList.length
+                + ", write from offset: " + tailOffset);
+    }
+    private long[] allocate(FileOutputSource outputSource) {
+        ZipAligner zipAligner = getZipAligner();
+        Iterator<long[]> iterator = freeRanges.iterator();
+        while (iterator.hasNext()){
+            long[] free = iterator.next();
+            long start = free[0];
+            if(free[1] - start < MIN_FREE_LENGTH){
+                continue;
+            }
+            long end = start + measure(outputSource, start, zipAligner);
+            if(end > free[1]){
+                continue;
+            }
+            free[0] = end;
+            if(end == free[1]){
+                iterator.remove();
+            }
+            return new long[]{start, end};
+        }
+        long start = tailOffset;
+        long end = start + measure(outputSource, start, zipAligner);
+        tailOffset = end;
+        return new long[]{start, end};
+    }
+    private long measure(FileOutputSource outputSource, long position, ZipAligner zipAligner) {
+        LocalFileHeader lfh = outputSource.alignLFH(position, zipAligner);
+        long length = lfh.countBytes() + outputSource.getEntryBuffer().getLength();
+        DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+        if(dataDescriptor != null){
+            length += dataDescriptor.countBytes();
+        }
+        return length;
+    }
+    /**
+     * Zero fills unused space including leftovers too short to hold an entry,
+     * thus removed content does not remain in the file
+     * */
+    private void clearFreeRanges(ZipFileOutput zipOutput) throws IOException {
+        byte[] zeros = null;
+        for(long[] free : freeRanges){
+            long length = free[1] - free[0];
+            if(length <= 0){
+                continue;
+            }
+            if(zeros == null){
+                zeros = new byte[ZERO_BUFFER_SIZE];
+            }
+            zipOutput.position(free[0]);
+            while (length > 0){
+                int write = (int) Math.min(length, zeros.length);
+                zipOutput.getOutputStream().write(zeros, 0, write);
+                length -= write;
+            }
+        }
+    }
+    private long getFirstEntryOffset(){
+        long result = -1;
+        Iterator<ArchiveEntry> iterator = archiveFile.iterator();
+        while (iterator.hasNext()){
+            long offset = iterator.next().getCentralEntryHeader().getLocalRelativeOffset();
+            if(result < 0 || offset < result){
+                result = offset;
+            }
+        }
+        if(result < 0){
+            result = 0;
+        }
+        return result;
+    }
+
+    // fixed part of local file header, smaller space can not hold any entry
+    private static final int MIN_FREE_LENGTH = 30;
+    private static final int ZERO_BUFFER_SIZE = 64 * 1024;
+}
@@ -18,14 +18,17 @@ package com.reandroid.archive.writer;
 import com.reandroid.apk.APKLogger;
 import com.reandroid.archive.ArchiveInfo;
 import com.reandroid.archive.InputSource;
+import com.reandroid.archive.WriteMetrics;
 import com.reandroid.archive.WriteProgress;
 import com.reandroid.archive.ZipSignature;
 import com.reandroid.archive.block.*;
+import com.reandroid.archive.io.ZipByteOutput;
 import com.reandroid.archive.io.ZipOutput;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.ExecutorService;
 
 public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> implements Closeable {
     private final Object mLock = new Object();
@@ -33,48 +36,142 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
     private final InputSource[] inputSources;
     private ZipAligner zipAligner;
     private ApkSignatureBlock apkSignatureBlock;
+    private ApkSigner apkSigner;
     private APKLogger apkLogger;
     private WriteProgress writeProgress;
+    private WriteMetrics writeMetrics;
+    private boolean deduplicateEntries;
+    private DuplicateReport duplicateReport;
+    private ExecutorService executorService;
+    private CompressionProvider compressionProvider;
     private final HeaderInterceptorChain interceptorChain;
 
     public ApkWriter(T zipOutput, InputSource[] sources){
         this.zipOutput = zipOutput;
         this.inputSources = sources;
         this.zipAligner = ZipAligner.apkAligner();
+        this.compressionProvider = CompressionProvider.defaultProvider();
         this.interceptorChain = HeaderInterceptorChain.createDefault();
     }
 
     public void write()throws IOException {
         synchronized (mLock){
             OUT[] outList = buildOutputEntries();
+            if(!isDeduplicateEntries()){
+                writeOutputs(outList);
+                return;
+            }
+            this.duplicateReport = DuplicateGroup.find(outList, getCompressionProvider());
+            logMessage("Duplicate entries: " + duplicateReport);
+            try{
+                writeOutputs(outList);
+            }finally {
+                DuplicateGroup.dispose(outList);
+            }
+        }
+    }
+    private void writeOutputs(OUT[] outList) throws IOException {
+        WriteMetrics metrics = getWriteMetrics();
+        long start = metrics != null ? System.nanoTime() : 0;
 
-            prepareOutputs(outList);
-            writeApkList(outList);
+        prepareOutputs(outList);
+        start = onPhase(metrics, WriteMetrics.PHASE_PREPARE, start);
+        writeApkList(outList);
 
-            closeBuffer();
+        closeBuffer();
+        start = onPhase(metrics, WriteMetrics.PHASE_WRITE_ENTRIES, start);
 
+        if(getApkSigner() != null){
+            writeSigned(outList);
+            onPhase(metrics, WriteMetrics.PHASE_SIGNATURE_BLOCK, start);
+        }else {
             writeSignatureBlock();
+            start = onPhase(metrics, WriteMetrics.PHASE_SIGNATURE_BLOCK, start);
             writeCEHList(outList);
+            onPhase(metrics, WriteMetrics.PHASE_CENTRAL_DIRECTORY, start);
+        }
 
-            this.close();
+        this.close();
+    }
+    private static long onPhase(WriteMetrics metrics, int phase, long start){
+        if(metrics == null){
+            return 0;
         }
+        long now = System.nanoTime();
+        metrics.onPhase(phase, now - start);
+        return now;
     }
     private void writeApkList(OUT[] outputList) throws IOException{
         int length = outputList.length;
         logMessage("Writing files: " + length);
         APKLogger logger = this.getApkLogger();
         ZipAligner zipAligner = getZipAligner();
+        DeflatePipeline pipeline = getDeflatePipeline();
+        if(pipeline != null && !isBufferedOnPrepare()){
+            pipeline.run(outputList, (out, index) ->
+                    writeApk(out, zipAligner, logger, index));
+            return;
+        }
         for(int i = 0; i < length; i++){
-            OUT out = outputList[i];
-            out.setAPKLogger(logger);
-            writeApk(out, zipAligner);
-            if(i % 100 == 0){
-                out.logFileWrite();
-            }
+            writeApk(outputList[i], zipAligner, logger, i);
+        }
+    }
+    private void writeApk(OUT out, ZipAligner zipAligner, APKLogger logger, int index) throws IOException {
+        out.setAPKLogger(logger);
+        writeApk(out, zipAligner);
+        if(index % 100 == 0){
+            out.logFileWrite();
         }
     }
     void closeBuffer() throws IOException{
     }
+    /**
+     * Signs while writing: contents digests are computed by reading back the already
+     * written entries from zip output, central directory and end record are built in
+     * memory first since their digest is required before the signature block is written
+     * */
+    private void writeSigned(OUT[] outputList) throws IOException{
+        ZipOutput zipOutput = getZipOutput();
+        if(!zipOutput.isReadable()){
+            throw new IOException("Signing requires readable output: "
+                    + zipOutput.getClass().getSimpleName());
+        }
+        long offset = position();
+        if(ZipHeader.isZip64Length(offset)){
+            throw new IOException("Signing ZIP64 apk is not supported");
+        }
+        offset = writeSignatureBlockPadding(offset);
+        ZipByteOutput centralDirectory = new ZipByteOutput();
+        int count = outputList.length;
+        for(int i = 0; i < count; i++){
+            outputList[i].writeCEH(centralDirectory);
+        }
+        byte[] cedBytes = centralDirectory.toByteArray();
+        EndRecord endRecord = new EndRecord();
+        endRecord.setSignature(ZipSignature.END_RECORD);
+        endRecord.setNumberOfDirectories(count);
+        endRecord.setTotalNumberOfDirectories(count);
+        endRecord.setLengthOfCentralDirectory(cedBytes.length);
+        endRecord.setOffsetOfCentralDirectory(offset);
+        if(endRecord.getZip64Record() != null){
+            throw new IOException("Signing ZIP64 apk is not supported");
+        }
+        logMessage("Signing ...");
+        ApkSigner apkSigner = getApkSigner();
+        ExecutorService executorService = apkSigner.getExecutorService();
+        if(executorService == null){
+            executorService = getExecutorService();
+        }
+        ApkSignatureBlock signatureBlock = apkSigner.sign(getApkSignatureBlock(),
+                ChunkedDigest.of(zipOutput, 0, offset), cedBytes, endRecord.getBytes(),
+                executorService);
+        signatureBlock.updatePadding();
+        OutputStream outputStream = getOutputStream();
+        signatureBlock.writeBytes(outputStream);
+        endRecord.setOffsetOfCentralDirectory(position());
+        outputStream.write(cedBytes);
+        endRecord.writeBytes(outputStream);
+    }
     private void writeCEHList(OUT[] outputList) throws IOException{
         EndRecord endRecord = new EndRecord();
         endRecord.setSignature(ZipSignature.END_RECORD);
@@ -111,15 +208,26 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
         if(interceptorChain.isDisabled()){
             interceptorChain = null;
         }
+        CompressionProvider compressionProvider = getCompressionProvider();
+        WriteMetrics writeMetrics = getWriteMetrics();
         for(int i = 0; i < length; i++){
             InputSource inputSource = sources[i];
             OUT out = toOutputSource(inputSource);
             out.setHeaderInterceptor(interceptorChain);
+            out.setCompressionProvider(compressionProvider);
+            out.setWriteMetrics(writeMetrics);
             results[i] = out;
         }
         return results;
     }
 
+    /**
+     * Returns true if entries are compressed on prepareOutputs, so writeApkList
+     * only copies the already compressed bytes
+     * */
+    boolean isBufferedOnPrepare(){
+        return false;
+    }
     abstract void writeApk(OUT outputSource, ZipAligner zipAligner) throws IOException;
     abstract void prepareOutputs(OUT[] outList) throws IOException;
     abstract OUT toOutputSource(InputSource inputSource);
@@ -144,6 +252,37 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
         this.zipAligner = zipAligner;
     }
 
+    /**
+     * Sets executor to compress entries in parallel, entries are still written in
+     * the original order thus the output is identical to serial write.
+     * Sources which are not {@link InputSource#isConcurrentWriteSafe()} (xml encoding,
+     * resource table) are written on the calling thread one at a time.
+     * Default is null, compresses all entries on the calling thread.
+     * */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+    DeflatePipeline getDeflatePipeline(){
+        ExecutorService executorService = this.getExecutorService();
+        if(executorService == null){
+            return null;
+        }
+        return new DeflatePipeline(executorService);
+    }
+
+    public CompressionProvider getCompressionProvider() {
+        return compressionProvider;
+    }
+    public void setCompressionProvider(CompressionProvider compressionProvider) {
+        if(compressionProvider == null){
+            compressionProvider = CompressionProvider.defaultProvider();
+        }
+        this.compressionProvider = compressionProvider;
+    }
+
     public void setApkSignatureBlock(ApkSignatureBlock apkSignatureBlock) {
         this.apkSignatureBlock = apkSignatureBlock;
     }
@@ -161,14 +300,28 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
             logMessage("ZIP64 mode, skip writing signature block!");
             return;
         }
+        writeSignatureBlockPadding(offset);
+        signatureBlock.updatePadding();
+        signatureBlock.writeBytes(getOutputStream());
+    }
+    private long writeSignatureBlockPadding(long offset) throws IOException {
         int alignment = 4096;
         int filesPadding = (int) ((alignment - (offset % alignment)) % alignment);
-        OutputStream outputStream = getOutputStream();
         if(filesPadding > 0){
-            outputStream.write(new byte[filesPadding]);
+            getOutputStream().write(new byte[filesPadding]);
         }
-        signatureBlock.updatePadding();
-        signatureBlock.writeBytes(outputStream);
+        return offset + filesPadding;
+    }
+    public ApkSigner getApkSigner() {
+        return apkSigner;
+    }
+    /**
+     * Sets signer to compute v2/v3 signatures of the output, base signature block set by
+     * {@link #setApkSignatureBlock(ApkSignatureBlock)} is kept except its v2/v3 entries.
+     * Requires output which can read back its written bytes, i.e. not stream output.
+     * */
+    public void setApkSigner(ApkSigner apkSigner) {
+        this.apkSigner = apkSigner;
     }
 
     @Override
@@ -180,6 +333,33 @@ public abstract class ApkWriter<T extends ZipOutput, OUT extends OutputSource> i
         this.writeProgress = writeProgress;
     }
 
+    public WriteMetrics getWriteMetrics() {
+        return writeMetrics;
+    }
+    /**
+     * Sets listener of per-entry and per-phase timings, default is null which disables
+     * all measurements
+     * */
+    public void setWriteMetrics(WriteMetrics writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
+
+    public boolean isDeduplicateEntries() {
+        return deduplicateEntries;
+    }
+    /**
+     * If true, byte-identical entries (by size, crc and SHA-256) are compressed once and the
+     * compressed data is reused for the rest. Only sources of the same size are read once
+     * more for hashing, entries copied as they are from source archive are not checked.
+     * Groups found are available from {@link #getDuplicateReport()} after write.
+     * */
+    public void setDeduplicateEntries(boolean deduplicateEntries) {
+        this.deduplicateEntries = deduplicateEntries;
+    }
+    public DuplicateReport getDuplicateReport() {
+        return duplicateReport;
+    }
+
     public HeaderInterceptorChain getInterceptorChain() {
         return interceptorChain;
     }
@@ -42,6 +42,11 @@ public class ArchiveOutputSource extends FileOutputSource {
                 lfh.getDataSize());
     }
     @Override
+    boolean isCopiedAsIs(){
+        LocalFileHeader lfh = getArchiveSource().getArchiveEntry().getLocalFileHeader();
+        return lfh.getMethod() == getInputSource().getMethod();
+    }
+    @Override
     LocalFileHeader createLocalFileHeader(){
         ArchiveFileEntrySource source = getArchiveSource();
         LocalFileHeader lfh = source.getArchiveEntry().getLocalFileHeader();
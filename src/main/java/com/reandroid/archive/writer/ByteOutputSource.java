@@ -16,7 +16,9 @@
 package com.reandroid.archive.writer;
 
 import com.reandroid.archive.InputSource;
+import com.reandroid.archive.block.LocalFileHeader;
 import com.reandroid.archive.io.ZipByteOutput;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
 
@@ -25,12 +27,36 @@ class ByteOutputSource extends OutputSource{
         super(inputSource);
     }
     void writeApk(ZipByteOutput zipOutput, ZipAligner zipAligner) throws IOException {
-        ZipByteOutput buffer = new ZipByteOutput();
-        writeBuffer(buffer);
-        buffer.close();
+        if(!isBufferPrepared()){
+            writeInPlace(zipOutput, zipAligner);
+            return;
+        }
+        SpillBuffer buffer = takeBuffer();
         writeLFH(zipOutput, zipAligner);
         getLocalFileHeader().setFileOffset(zipOutput.position());
-        zipOutput.write(buffer.toByteArray());
+        buffer.writeTo(zipOutput.getOutputStream());
+        buffer.dispose();
+        writeDD(zipOutput);
+    }
+    /**
+     * Writes the data straight after a provisional header and then patches crc and sizes
+     * back into the header, thus the entry is serialized only once and without extra copy
+     * */
+    private void writeInPlace(ZipByteOutput zipOutput, ZipAligner zipAligner) throws IOException {
+        long headerOffset = zipOutput.position();
+        writeLFH(zipOutput, zipAligner);
+        LocalFileHeader lfh = getLocalFileHeader();
+        long dataOffset = zipOutput.position();
+        lfh.setFileOffset(dataOffset);
+        writeBuffer(zipOutput);
+        if(!lfh.hasDataDescriptor()){
+            byte[] header = lfh.getBytes();
+            if(header.length != dataOffset - headerOffset){
+                throw new IOException("Local header length changed: "
+                        + getInputSource().getAlias());
+            }
+            zipOutput.overwrite(headerOffset, header);
+        }
         writeDD(zipOutput);
     }
 }
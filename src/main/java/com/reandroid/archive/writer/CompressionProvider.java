@@ -0,0 +1,107 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.io.CodecPool;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+/**
+ * Supplies pooled deflaters to {@link ApkWriter} with compression level chosen by entry path.
+ * Patterns are matched in the order they are added, the first match wins.
+ * */
+public class CompressionProvider {
+
+    private final CodecPool codecPool;
+    private final Map<Pattern, Integer> levelMap;
+    private int defaultLevel;
+
+    public CompressionProvider(CodecPool codecPool){
+        this.codecPool = codecPool;
+        this.levelMap = new LinkedHashMap<>();
+        this.defaultLevel = Deflater.DEFAULT_COMPRESSION;
+    }
+    public CompressionProvider(){
+        this(CodecPool.getDefault());
+    }
+
+    public CodecPool getCodecPool() {
+        return codecPool;
+    }
+    public void setLevel(Pattern patternFileName, int level){
+        if(patternFileName == null){
+            return;
+        }
+        checkLevel(level);
+        levelMap.remove(patternFileName);
+        levelMap.put(patternFileName, level);
+    }
+    public void clearLevels(){
+        levelMap.clear();
+    }
+    public int getDefaultLevel() {
+        return defaultLevel;
+    }
+    public void setDefaultLevel(int defaultLevel) {
+        checkLevel(defaultLevel);
+        this.defaultLevel = defaultLevel;
+    }
+    public int getLevel(String name){
+        if(!levelMap.isEmpty()){
+            for(Map.Entry<Pattern, Integer> entry : levelMap.entrySet()){
+                if(entry.getKey().matcher(name).matches()){
+                    return entry.getValue();
+                }
+            }
+        }
+        return defaultLevel;
+    }
+    Deflater acquireDeflater(int level){
+        return getCodecPool().acquireDeflater(level);
+    }
+    void releaseDeflater(Deflater deflater, int level){
+        getCodecPool().releaseDeflater(deflater, level);
+    }
+
+    private static void checkLevel(int level){
+        if(level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION){
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+    }
+
+    public static CompressionProvider defaultProvider(){
+        return new CompressionProvider();
+    }
+    /**
+     * Fastest compression, e.g. for debug/CI builds
+     * */
+    public static CompressionProvider speed(){
+        CompressionProvider provider = new CompressionProvider();
+        provider.setDefaultLevel(Deflater.BEST_SPEED);
+        return provider;
+    }
+    /**
+     * Smallest output, e.g. for release builds
+     * */
+    public static CompressionProvider size(){
+        CompressionProvider provider = new CompressionProvider();
+        provider.setDefaultLevel(Deflater.BEST_COMPRESSION);
+        return provider;
+    }
+}
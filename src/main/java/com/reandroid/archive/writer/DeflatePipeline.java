@@ -0,0 +1,111 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.utils.FutureUtil;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Compresses entries into per-entry memory buffers on the given executor, and hands
+ * them back to the caller strictly in list order. At most <code>window</code> entries
+ * are buffered ahead of the consumer, which keeps memory bounded for large lists.
+ * Sources not safe for concurrent write are not submitted, the consumer writes them
+ * on its own thread.
+ * */
+class DeflatePipeline {
+
+    private final ExecutorService executorService;
+    private final int window;
+
+    DeflatePipeline(ExecutorService executorService, int window){
+        if(window < 1){
+            window = 1;
+        }
+        this.executorService = executorService;
+        this.window = window;
+    }
+    DeflatePipeline(ExecutorService executorService){
+        this(executorService, DEFAULT_WINDOW);
+    }
+
+    <T extends OutputSource> void run(T[] outputList, Consumer<T> consumer) throws IOException {
+        int length = outputList.length;
+        Future<?>[] futures = new Future<?>[length];
+        AtomicBoolean aborted = new AtomicBoolean();
+        int submitted = 0;
+        int i = 0;
+        try{
+            for(; i < length; i++){
+                int limit = Math.min(length, i + window);
+                while (submitted < limit){
+                    futures[submitted] = submit(outputList[submitted], aborted);
+                    submitted ++;
+                }
+                T out = outputList[i];
+                Future<?> future = futures[i];
+                if(future != null){
+                    FutureUtil.await(future);
+                    futures[i] = null;
+                }
+                consumer.accept(out, i);
+            }
+        }finally {
+            if(i < length){
+                abort(outputList, futures, i, submitted, aborted);
+            }
+        }
+    }
+    private Future<?> submit(OutputSource outputSource, AtomicBoolean aborted){
+        if(!outputSource.getInputSource().isConcurrentWriteSafe()){
+            return null;
+        }
+        return executorService.submit(() -> {
+            if(aborted.get()){
+                return null;
+            }
+            outputSource.prepareBuffer();
+            // the consumer may have aborted while this was running
+            if(aborted.get()){
+                outputSource.disposeBuffer();
+            }
+            return null;
+        });
+    }
+    /**
+     * Cancels pending tasks and releases buffers prepared but not consumed. Tasks still
+     * running see the aborted flag and release their own buffer.
+     * */
+    private static void abort(OutputSource[] outputList, Future<?>[] futures,
+                              int start, int end, AtomicBoolean aborted){
+        aborted.set(true);
+        for(int i = start; i < end; i++){
+            Future<?> future = futures[i];
+            if(future != null){
+                future.cancel(false);
+            }
+            outputList[i].disposeBuffer();
+        }
+    }
+    interface Consumer<T extends OutputSource> {
+        void accept(T outputSource, int index) throws IOException;
+    }
+
+    private static final int DEFAULT_WINDOW = Runtime.getRuntime().availableProcessors() * 4;
+}
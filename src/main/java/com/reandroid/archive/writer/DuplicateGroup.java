@@ -0,0 +1,283 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.RenamedInputSource;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveEntrySource;
+import com.reandroid.archive.io.ZipByteOutput;
+import com.reandroid.archive.io.ZipOutput;
+import com.reandroid.common.SpillBuffer;
+import com.reandroid.utils.Crc32;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Byte-identical entries sharing one compressed payload. Whichever member is written first
+ * compresses and keeps the payload, the rest copy it, thus the result does not depend on
+ * write order or thread. The payload is released after the last member is written.
+ * */
+class DuplicateGroup {
+    private int pending;
+    private SpillBuffer payload;
+    private int method;
+    private long crc;
+    private long size;
+    private long compressedSize;
+
+    private DuplicateGroup(int members){
+        this.pending = members;
+    }
+
+    synchronized void write(OutputSource source, ZipOutput zipOutput) throws IOException {
+        LocalFileHeader lfh = source.getLocalFileHeader();
+        SpillBuffer payload = this.payload;
+        if(payload == null){
+            ZipByteOutput buffer = new ZipByteOutput();
+            try{
+                source.writeBufferDirect(buffer);
+                buffer.close();
+            }catch (IOException | RuntimeException ex){
+                buffer.getBuffer().dispose();
+                throw ex;
+            }
+            payload = buffer.getBuffer();
+            this.payload = payload;
+            this.method = lfh.getMethod();
+            this.crc = lfh.getCrc();
+            this.size = lfh.getSize();
+            this.compressedSize = lfh.getCompressedSize();
+        }else {
+            lfh.setMethod(method);
+            lfh.setCrc(crc);
+            lfh.setSize(size);
+            lfh.setCompressedSize(compressedSize);
+            source.onDuplicateWritten();
+        }
+        payload.writeTo(zipOutput.getOutputStream());
+        pending --;
+        if(pending == 0){
+            dispose();
+        }
+    }
+    /**
+     * Releases the payload, called after the last member is written or when writing aborts
+     * */
+    synchronized void dispose(){
+        SpillBuffer payload = this.payload;
+        if(payload != null){
+            payload.dispose();
+            this.payload = null;
+        }
+    }
+
+    /**
+     * Links identical deflated outputs of the same compression level to shared groups and
+     * returns all groups found. Outputs copied as they are from source archive are skipped,
+     * since they are not compressed. Only outputs colliding by size, and by crc where the
+     * source archive records it, are hashed.
+     * */
+    static DuplicateReport find(OutputSource[] outputList, CompressionProvider provider) throws IOException {
+        Map<Long, List<OutputSource>> sizeMap = new HashMap<>();
+        for(OutputSource outputSource : outputList){
+            if(outputSource.isCopiedAsIs()){
+                continue;
+            }
+            addTo(sizeMap, getSize(outputSource.getInputSource()), outputSource);
+        }
+        Set<OutputSource> candidates = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(List<OutputSource> sameSize : sizeMap.values()){
+            if(sameSize.size() > 1){
+                addCrcCollisions(sameSize, candidates);
+            }
+        }
+        Map<ContentKey, List<OutputSource>> map = new LinkedHashMap<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        MessageDigest messageDigest = newDigest();
+        for(OutputSource outputSource : outputList){
+            if(!candidates.contains(outputSource)){
+                continue;
+            }
+            ContentKey key = hash(outputSource.getInputSource(), messageDigest, buffer);
+            addTo(map, key, outputSource);
+        }
+        DuplicateReport report = new DuplicateReport();
+        for(Map.Entry<ContentKey, List<OutputSource>> entry : map.entrySet()){
+            List<OutputSource> list = entry.getValue();
+            int size = list.size();
+            if(size < 2){
+                continue;
+            }
+            String[] paths = new String[size];
+            for(int i = 0; i < size; i++){
+                paths[i] = list.get(i).getInputSource().getAlias();
+            }
+            ContentKey key = entry.getKey();
+            report.add(new DuplicateReport.Group(paths, key.size, key.crc, key.sha256));
+            link(list, provider);
+        }
+        return report;
+    }
+    private static void link(List<OutputSource> list, CompressionProvider provider){
+        Map<Integer, List<OutputSource>> levelMap = new HashMap<>();
+        for(OutputSource outputSource : list){
+            InputSource inputSource = outputSource.getInputSource();
+            if(inputSource.getMethod() != Archive.DEFLATED){
+                continue;
+            }
+            Integer level = provider.getLevel(inputSource.getAlias());
+            List<OutputSource> members = levelMap.get(level);
+            if(members == null){
+                members = new ArrayList<>(list.size());
+                levelMap.put(level, members);
+            }
+            members.add(outputSource);
+        }
+        for(List<OutputSource> members : levelMap.values()){
+            if(members.size() < 2){
+                continue;
+            }
+            DuplicateGroup group = new DuplicateGroup(members.size());
+            for(OutputSource outputSource : members){
+                outputSource.setDuplicateGroup(group);
+            }
+        }
+    }
+    /**
+     * Releases payloads of groups not completely written, e.g. when writing aborts
+     * */
+    static void dispose(OutputSource[] outputList){
+        for(OutputSource outputSource : outputList){
+            DuplicateGroup group = outputSource.getDuplicateGroup();
+            if(group != null){
+                group.dispose();
+            }
+        }
+    }
+    /**
+     * Adds outputs of the same size whose crc is unknown, or known and shared with another
+     */
+    private static void addCrcCollisions(List<OutputSource> sameSize, Set<OutputSource> results){
+        Map<Long, Integer> crcCount = new HashMap<>();
+        boolean unknown = false;
+        for(OutputSource outputSource : sameSize){
+            ArchiveEntry archiveEntry = getArchiveEntry(outputSource.getInputSource());
+            if(archiveEntry == null){
+                unknown = true;
+                continue;
+            }
+            Long crc = archiveEntry.getCrc();
+            Integer count = crcCount.get(crc);
+            crcCount.put(crc, count == null ? 1 : count + 1);
+        }
+        for(OutputSource outputSource : sameSize){
+            ArchiveEntry archiveEntry = getArchiveEntry(outputSource.getInputSource());
+            if(archiveEntry == null || unknown || crcCount.get(archiveEntry.getCrc()) > 1){
+                results.add(outputSource);
+            }
+        }
+    }
+    private static long getSize(InputSource inputSource) throws IOException {
+        ArchiveEntry archiveEntry = getArchiveEntry(inputSource);
+        if(archiveEntry != null){
+            return archiveEntry.getSize();
+        }
+        return inputSource.getLength();
+    }
+    /**
+     * Returns the entry of source archive, whose central directory records size and crc
+     */
+    private static ArchiveEntry getArchiveEntry(InputSource inputSource){
+        if(inputSource instanceof RenamedInputSource){
+            inputSource = ((RenamedInputSource<?>) inputSource)
+                    .getParentInputSource(ArchiveEntrySource.class);
+        }
+        if(inputSource instanceof ArchiveEntrySource){
+            return ((ArchiveEntrySource<?>) inputSource).getArchiveEntry();
+        }
+        return null;
+    }
+    private static <K> void addTo(Map<K, List<OutputSource>> map, K key, OutputSource outputSource){
+        List<OutputSource> list = map.get(key);
+        if(list == null){
+            list = new ArrayList<>(2);
+            map.put(key, list);
+        }
+        list.add(outputSource);
+    }
+    private static ContentKey hash(InputSource inputSource, MessageDigest messageDigest,
+                                   byte[] buffer) throws IOException {
+        messageDigest.reset();
+        Crc32 crc32 = new Crc32();
+        long size = 0;
+        InputStream inputStream = inputSource.openStream();
+        try {
+            int read;
+            while ((read = inputStream.read(buffer, 0, buffer.length)) > 0){
+                crc32.update(buffer, 0, read);
+                messageDigest.update(buffer, 0, read);
+                size += read;
+            }
+        }finally {
+            inputSource.close(inputStream);
+        }
+        return new ContentKey(size, crc32.getValue(), messageDigest.digest());
+    }
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    static class ContentKey {
+        final long size;
+        final long crc;
+        final byte[] sha256;
+
+        ContentKey(long size, long crc, byte[] sha256){
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if(obj == this){
+                return true;
+            }
+            if(!(obj instanceof ContentKey)){
+                return false;
+            }
+            ContentKey other = (ContentKey) obj;
+            return size == other.size && crc == other.crc
+                    && Arrays.equals(sha256, other.sha256);
+        }
+        @Override
+        public int hashCode() {
+            return (int) (crc ^ (size * 31));
+        }
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.json.JSONArray;
+import com.reandroid.json.JSONObject;
+import com.reandroid.utils.HexUtil;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Groups of byte-identical entries found by {@link ApkWriter#setDeduplicateEntries(boolean)},
+ * matched by size, crc and SHA-256 of uncompressed content.
+ * */
+public class DuplicateReport {
+    private final List<Group> groupList;
+
+    DuplicateReport(){
+        this.groupList = new ArrayList<>();
+    }
+    void add(Group group){
+        groupList.add(group);
+    }
+
+    public List<Group> getGroups(){
+        return Collections.unmodifiableList(groupList);
+    }
+    /**
+     * Returns total number of entries that have an identical earlier entry
+     * */
+    public int countDuplicates(){
+        int result = 0;
+        for(Group group : groupList){
+            result += group.size() - 1;
+        }
+        return result;
+    }
+    /**
+     * Returns uncompressed bytes that are not compressed again
+     * */
+    public long getDuplicateBytes(){
+        long result = 0;
+        for(Group group : groupList){
+            result += group.getSize() * (group.size() - 1);
+        }
+        return result;
+    }
+    public JSONArray toJson(){
+        JSONArray jsonArray = new JSONArray();
+        for(Group group : groupList){
+            jsonArray.put(group.toJson());
+        }
+        return jsonArray;
+    }
+    @Override
+    public String toString(){
+        return "groups = " + groupList.size() + ", duplicates = " + countDuplicates()
+                + ", bytes = " + getDuplicateBytes();
+    }
+
+    public static class Group {
+        private final String[] paths;
+        private final long size;
+        private final long crc;
+        private final byte[] sha256;
+
+        Group(String[] paths, long size, long crc, byte[] sha256){
+            this.paths = paths;
+            this.size = size;
+            this.crc = crc;
+            this.sha256 = sha256;
+        }
+        /**
+         * Returns paths of identical entries in write order
+         * */
+        public String[] getPaths() {
+            return paths.clone();
+        }
+        public int size(){
+            return paths.length;
+        }
+        public long getSize() {
+            return size;
+        }
+        public long getCrc() {
+            return crc;
+        }
+        public String getSha256() {
+            return HexUtil.toHexString(sha256);
+        }
+        public JSONObject toJson(){
+            JSONObject jsonObject = new JSONObject();
+            jsonObject.put("size", getSize());
+            jsonObject.put("crc", HexUtil.toHex8(getCrc()));
+            jsonObject.put("sha256", getSha256());
+            jsonObject.put("paths", new JSONArray(Arrays.asList(paths)));
+            return jsonObject;
+        }
+        @Override
+        public String toString(){
+            return size + " bytes x " + paths.length + ": " + paths[0];
+        }
+    }
+}
@@ -19,9 +19,9 @@ import com.reandroid.archive.InputSource;
 import com.reandroid.archive.block.LocalFileHeader;
 import com.reandroid.archive.io.ZipFileOutput;
 import com.reandroid.archive.io.ZipOutput;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
-import java.nio.channels.FileChannel;
 
 class FileOutputSource extends OutputSource {
     private EntryBuffer entryBuffer;
@@ -37,33 +37,63 @@ class FileOutputSource extends OutputSource {
         entryBuffer = makeFromEntry();
         if(entryBuffer != null){
             this.entryBuffer = entryBuffer;
+            onCopied();
             return;
         }
         this.entryBuffer = writeBuffer(input, output);
     }
+    /**
+     * Returns true if the data needs to be compressed into buffer file,
+     * false if it is already available from the source entry
+     * */
+    boolean requiresBuffer(){
+        if(this.entryBuffer != null){
+            return false;
+        }
+        EntryBuffer entryBuffer = makeFromEntry();
+        if(entryBuffer != null){
+            this.entryBuffer = entryBuffer;
+            onCopied();
+            return false;
+        }
+        return true;
+    }
+    void writePreparedBuffer(BufferFileInput input, BufferFileOutput output) throws IOException {
+        if(!isBufferPrepared()){
+            this.entryBuffer = writeBuffer(input, output);
+            return;
+        }
+        SpillBuffer buffer = takeBuffer();
+        long offset = output.position();
+        buffer.writeTo(output.getOutputStream());
+        this.entryBuffer = new EntryBuffer(input, offset, buffer.size());
+        buffer.dispose();
+    }
     private EntryBuffer writeBuffer(BufferFileInput input, ZipOutput output) throws IOException {
         long offset = output.position();
         writeBuffer(output);
         long length = output.position() - offset;
         return new EntryBuffer(input, offset, length);
     }
+    EntryBuffer getEntryBuffer(){
+        return entryBuffer;
+    }
     EntryBuffer makeFromEntry(){
         return null;
     }
     void writeApk(ZipFileOutput zipFileOutput, ZipAligner zipAligner) throws IOException{
         logLargeFileWrite();
         EntryBuffer entryBuffer = this.entryBuffer;
-        FileChannel input = entryBuffer.getZipFileInput().getFileChannel();
-        input.position(entryBuffer.getOffset());
         writeLFH(zipFileOutput, zipAligner);
-        writeData(input, entryBuffer.getLength(), zipFileOutput);
+        writeData(entryBuffer, zipFileOutput);
         writeDD(zipFileOutput);
     }
-    private void writeData(FileChannel input, long length, ZipFileOutput apkFileWriter) throws IOException{
+    private void writeData(EntryBuffer entryBuffer, ZipFileOutput apkFileWriter) throws IOException{
         long offset = apkFileWriter.position();
         LocalFileHeader lfh = getLocalFileHeader();
         lfh.setFileOffset(offset);
-        apkFileWriter.write(input, length);
+        apkFileWriter.write(entryBuffer.getZipFileInput(),
+                entryBuffer.getOffset(), entryBuffer.getLength());
     }
 
 
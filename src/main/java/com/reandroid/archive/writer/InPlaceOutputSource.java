@@ -0,0 +1,60 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.io.ArchiveFileEntrySource;
+import com.reandroid.archive.io.ZipFileOutput;
+import com.reandroid.archive.io.ZipOutput;
+
+import java.io.IOException;
+
+/**
+ * An unchanged entry of the archive being updated, its local header and data are
+ * left where they are, only the central directory record is written
+ * */
+class InPlaceOutputSource extends ArchiveOutputSource {
+
+    InPlaceOutputSource(ArchiveFileEntrySource inputSource){
+        super(inputSource);
+    }
+
+    long getStartOffset(){
+        LocalFileHeader lfh = getLocalFileHeader();
+        return lfh.getFileOffset() - lfh.countBytes();
+    }
+    long getEndOffset(){
+        LocalFileHeader lfh = getLocalFileHeader();
+        long end = lfh.getFileOffset() + lfh.getDataSize();
+        DataDescriptor dataDescriptor = lfh.getDataDescriptor();
+        if(dataDescriptor != null){
+            end += dataDescriptor.countBytes();
+        }
+        return end;
+    }
+    @Override
+    void writeApk(ZipFileOutput zipFileOutput, ZipAligner zipAligner) {
+    }
+    /**
+     * Returns the header already in the archive, thus the central directory record written
+     * by {@link OutputSource#writeCEH(ZipOutput)} matches the local header on disk
+     * */
+    @Override
+    LocalFileHeader getLocalFileHeader(){
+        return getArchiveSource().getArchiveEntry().getLocalFileHeader();
+    }
+}
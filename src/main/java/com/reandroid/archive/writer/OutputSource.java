@@ -18,12 +18,15 @@ package com.reandroid.archive.writer;
 import com.reandroid.apk.APKLogger;
 import com.reandroid.archive.Archive;
 import com.reandroid.archive.InputSource;
+import com.reandroid.archive.WriteMetrics;
 import com.reandroid.archive.ZipSignature;
 import com.reandroid.archive.block.CentralEntryHeader;
 import com.reandroid.archive.block.DataDescriptor;
 import com.reandroid.archive.block.LocalFileHeader;
 import com.reandroid.archive.io.CountingOutputStream;
+import com.reandroid.archive.io.ZipByteOutput;
 import com.reandroid.archive.io.ZipOutput;
+import com.reandroid.common.SpillBuffer;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.IOException;
@@ -36,45 +39,160 @@ class OutputSource {
     private LocalFileHeader lfh;
     private APKLogger apkLogger;
     private HeaderInterceptor headerInterceptor;
+    private CompressionProvider compressionProvider;
+    private volatile SpillBuffer preparedBuffer;
+    private WriteMetrics writeMetrics;
+    private DuplicateGroup duplicateGroup;
 
     OutputSource(InputSource inputSource){
         this.inputSource = inputSource;
     }
 
+    void prepareBuffer() throws IOException {
+        ZipByteOutput buffer = new ZipByteOutput();
+        try{
+            writeBuffer(buffer);
+            buffer.close();
+        }catch (IOException | RuntimeException ex){
+            buffer.getBuffer().dispose();
+            throw ex;
+        }
+        synchronized (this){
+            this.preparedBuffer = buffer.getBuffer();
+        }
+    }
+    /**
+     * Releases buffer prepared but not taken, e.g. when writing aborts
+     * */
+    void disposeBuffer(){
+        SpillBuffer buffer;
+        synchronized (this){
+            buffer = this.preparedBuffer;
+            this.preparedBuffer = null;
+        }
+        if(buffer != null){
+            buffer.dispose();
+        }
+    }
+    boolean isBufferPrepared(){
+        return preparedBuffer != null;
+    }
+    /**
+     * The caller owns the returned buffer and should dispose it after use
+     * */
+    SpillBuffer takeBuffer() throws IOException {
+        SpillBuffer buffer = this.preparedBuffer;
+        if(buffer == null){
+            prepareBuffer();
+            buffer = this.preparedBuffer;
+        }
+        this.preparedBuffer = null;
+        return buffer;
+    }
+
+    /**
+     * Streams the entry data into the given output, computing crc and sizes on the way.
+     * The given output is not closed, so this can write directly into the target archive.
+     * */
     void writeBuffer(ZipOutput zipOutput) throws IOException {
+        DuplicateGroup duplicateGroup = this.duplicateGroup;
+        if(duplicateGroup != null){
+            duplicateGroup.write(this, zipOutput);
+            return;
+        }
+        writeBufferDirect(zipOutput);
+    }
+    void writeBufferDirect(ZipOutput zipOutput) throws IOException {
         LocalFileHeader lfh = getLocalFileHeader();
         InputSource inputSource = getInputSource();
         OutputStream rawStream = zipOutput.getOutputStream();
         CountingOutputStream<OutputStream> rawCounter = new CountingOutputStream<>(rawStream);
-        CountingOutputStream<DeflaterOutputStream> deflateCounter = null;
+        WriteMetrics metrics = this.writeMetrics;
+        long start = 0;
+        if(metrics != null){
+            start = System.nanoTime();
+        }
 
-        if(inputSource.getMethod() != Archive.STORED){
-            DeflaterOutputStream deflaterInputStream =
-                    new DeflaterOutputStream(rawCounter, new Deflater(Deflater.DEFAULT_COMPRESSION, true), true);
-            deflateCounter = new CountingOutputStream<>(deflaterInputStream, false);
+        if(inputSource.getMethod() == Archive.STORED){
+            rawCounter.setTimeCrc(metrics != null);
+            inputSource.write(rawCounter);
+            lfh.setCompressedSize(rawCounter.getSize());
+            lfh.setSize(rawCounter.getSize());
+            lfh.setMethod(Archive.STORED);
+            lfh.setCrc(rawCounter.getCrc32());
+            onWritten(inputSource, lfh);
+            if(metrics != null){
+                onMetrics(metrics, lfh, start, rawCounter.getCrcNanos());
+            }
+            return;
         }
-        if(deflateCounter != null){
+        CompressionProvider provider = getCompressionProvider();
+        int level = provider.getLevel(inputSource.getAlias());
+        Deflater deflater = provider.acquireDeflater(level);
+        long crcNanos;
+        try{
+            DeflaterOutputStream deflaterOutputStream =
+                    new DeflaterOutputStream(rawCounter, deflater, true);
+            CountingOutputStream<DeflaterOutputStream> deflateCounter =
+                    new CountingOutputStream<>(deflaterOutputStream, false);
             rawCounter.disableCrc(true);
+            deflateCounter.setTimeCrc(metrics != null);
             inputSource.write(deflateCounter);
-            deflateCounter.close();
-            rawCounter.close();
-        }else {
-            inputSource.write(rawCounter);
-        }
-
-        lfh.setCompressedSize(rawCounter.getSize());
+            deflaterOutputStream.finish();
 
-        if(deflateCounter != null){
+            lfh.setCompressedSize(rawCounter.getSize());
             lfh.setMethod(Archive.DEFLATED);
             lfh.setCrc(deflateCounter.getCrc32());
             lfh.setSize(deflateCounter.getSize());
-        }else {
-            lfh.setSize(rawCounter.getSize());
-            lfh.setMethod(Archive.STORED);
-            lfh.setCrc(rawCounter.getCrc32());
+            crcNanos = deflateCounter.getCrcNanos();
+        }finally {
+            provider.releaseDeflater(deflater, level);
         }
+        onWritten(inputSource, lfh);
+        if(metrics != null){
+            onMetrics(metrics, lfh, start, crcNanos);
+        }
+    }
+    private void onWritten(InputSource inputSource, LocalFileHeader lfh){
+        inputSource.onWritten(lfh.getCrc(), lfh.getSize());
         inputSource.disposeInputSource();
     }
+    /**
+     * Called instead of compressing when the data is copied from an identical entry
+     * */
+    void onDuplicateWritten(){
+        onWritten(getInputSource(), getLocalFileHeader());
+        onCopied();
+    }
+    /**
+     * Returns true if data is copied as it is from source archive without compressing
+     * */
+    boolean isCopiedAsIs(){
+        return false;
+    }
+    DuplicateGroup getDuplicateGroup() {
+        return duplicateGroup;
+    }
+    void setDuplicateGroup(DuplicateGroup duplicateGroup) {
+        this.duplicateGroup = duplicateGroup;
+    }
+    /**
+     * Reports entry copied as it is from source archive (or from identical entry), thus
+     * without compress and crc time
+     * */
+    void onCopied(){
+        WriteMetrics metrics = this.writeMetrics;
+        if(metrics != null){
+            LocalFileHeader lfh = getLocalFileHeader();
+            metrics.onEntry(getInputSource().getAlias(), lfh.getMethod(), lfh.getSize(),
+                    lfh.getCompressedSize(), 0, 0);
+        }
+    }
+    private void onMetrics(WriteMetrics metrics, LocalFileHeader lfh, long start, long crcNanos){
+        long elapsed = System.nanoTime() - start;
+        metrics.onEntry(getInputSource().getAlias(), lfh.getMethod(), lfh.getSize(),
+                lfh.getCompressedSize(), elapsed - crcNanos, crcNanos);
+    }
     void writeCEH(ZipOutput zipOutput) throws IOException{
         LocalFileHeader lfh = getLocalFileHeader();
         CentralEntryHeader ceh = CentralEntryHeader.fromLocalFileHeader(lfh);
@@ -90,14 +208,39 @@ class OutputSource {
         dataDescriptor.writeBytes(apkFileWriter.getOutputStream());
     }
     void writeLFH(ZipOutput zipOutput, ZipAligner zipAligner) throws IOException {
+        LocalFileHeader lfh = alignLFH(zipOutput, zipAligner);
+        lfh.writeBytes(zipOutput.getOutputStream());
+    }
+    /**
+     * Applies alignment and header interceptors, after this call the header length
+     * and data descriptor flag are final
+     * */
+    LocalFileHeader alignLFH(ZipOutput zipOutput, ZipAligner zipAligner) throws IOException {
+        return alignLFH(zipOutput.position(), zipAligner);
+    }
+    LocalFileHeader alignLFH(long position, ZipAligner zipAligner) {
         LocalFileHeader lfh = getLocalFileHeader();
         if(zipAligner != null){
-            zipAligner.align(zipOutput.position(), lfh);
+            zipAligner.align(position, lfh);
         }
         notifyLFHWrite(lfh);
-        lfh.writeBytes(zipOutput.getOutputStream());
+        return lfh;
     }
 
+    CompressionProvider getCompressionProvider() {
+        CompressionProvider provider = this.compressionProvider;
+        if(provider == null){
+            provider = CompressionProvider.defaultProvider();
+            this.compressionProvider = provider;
+        }
+        return provider;
+    }
+    void setCompressionProvider(CompressionProvider compressionProvider) {
+        this.compressionProvider = compressionProvider;
+    }
+    void setWriteMetrics(WriteMetrics writeMetrics) {
+        this.writeMetrics = writeMetrics;
+    }
     public void setHeaderInterceptor(HeaderInterceptor interceptor) {
         this.headerInterceptor = interceptor;
     }
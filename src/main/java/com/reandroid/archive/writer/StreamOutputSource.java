@@ -16,8 +16,9 @@
 package com.reandroid.archive.writer;
 
 import com.reandroid.archive.InputSource;
-import com.reandroid.archive.io.ZipByteOutput;
+import com.reandroid.archive.block.LocalFileHeader;
 import com.reandroid.archive.io.ZipStreamOutput;
+import com.reandroid.common.SpillBuffer;
 
 import java.io.IOException;
 
@@ -26,13 +27,29 @@ class StreamOutputSource extends OutputSource{
         super(inputSource);
     }
     void writeApk(ZipStreamOutput zipOutput, ZipAligner zipAligner) throws IOException {
-        ZipByteOutput buffer = new ZipByteOutput();
-        writeBuffer(buffer);
-        buffer.close();
-
-        writeLFH(zipOutput, zipAligner);
+        if(isBufferPrepared()){
+            SpillBuffer buffer = takeBuffer();
+            writeLFH(zipOutput, zipAligner);
+            writeData(zipOutput, buffer);
+            return;
+        }
+        LocalFileHeader lfh = alignLFH(zipOutput, zipAligner);
+        if(lfh.hasDataDescriptor()){
+            // crc and sizes go to data descriptor, stream directly
+            lfh.writeBytes(zipOutput.getOutputStream());
+            lfh.setFileOffset(zipOutput.position());
+            writeBuffer(zipOutput);
+            writeDD(zipOutput);
+            return;
+        }
+        SpillBuffer buffer = takeBuffer();
+        lfh.writeBytes(zipOutput.getOutputStream());
+        writeData(zipOutput, buffer);
+    }
+    private void writeData(ZipStreamOutput zipOutput, SpillBuffer buffer) throws IOException {
         getLocalFileHeader().setFileOffset(zipOutput.position());
-        zipOutput.write(buffer.toByteArray());
+        buffer.writeTo(zipOutput.getOutputStream());
+        buffer.dispose();
         writeDD(zipOutput);
     }
 }
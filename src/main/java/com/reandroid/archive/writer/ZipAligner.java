@@ -73,6 +73,20 @@ public class ZipAligner {
         }
         lfh.setZipAlign(padding);
     }
+    /**
+     * Returns true if data of the given header, at its current file offset,
+     * already satisfies the alignment
+     * */
+    public boolean isAligned(LocalFileHeader lfh){
+        if(lfh.getMethod() == Archive.DEFLATED){
+            return true;
+        }
+        int alignment = getAlignment(lfh.getFileName());
+        if(alignment <= NO_ALIGNMENT){
+            return true;
+        }
+        return lfh.getFileOffset() % alignment == 0;
+    }
     private int getAlignment(String name){
         if(!alignmentMap.isEmpty()) {
             for(Map.Entry<Pattern, Integer> entry:alignmentMap.entrySet()){
@@ -86,10 +100,17 @@ public class ZipAligner {
     }
 
     public static ZipAligner apkAligner(){
+        return apkAligner(ALIGNMENT_PAGE);
+    }
+    /**
+     * Same as {@link #apkAligner()} but native libraries are aligned to the given page size,
+     * e.g. {@link #PAGE_16K} for devices with 16 KB memory pages
+     * */
+    public static ZipAligner apkAligner(int pageAlignment){
         ZipAligner zipAligner = new ZipAligner();
         zipAligner.setDefaultAlignment(ALIGNMENT_4);
         Pattern patternNativeLib = Pattern.compile("^lib/.+\\.so$");
-        zipAligner.setFileAlignment(patternNativeLib, ALIGNMENT_PAGE);
+        zipAligner.setFileAlignment(patternNativeLib, pageAlignment);
         return zipAligner;
     }
     public static ZipAligner noAlignment(){
@@ -98,7 +119,10 @@ public class ZipAligner {
         return zipAligner;
     }
 
+    public static final int PAGE_4K = 4096;
+    public static final int PAGE_16K = 16384;
+
     private static final int NO_ALIGNMENT = 1;
     private static final int ALIGNMENT_4 = 4;
-    private static final int ALIGNMENT_PAGE = 4096;
+    private static final int ALIGNMENT_PAGE = PAGE_4K;
 }
@@ -15,9 +15,12 @@
   */
 package com.reandroid.arsc.array;
 
+import com.reandroid.arsc.base.BlockCounter;
 import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.TypeBlock;
 import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.IntegerItem;
 import com.reandroid.arsc.pool.SpecStringPool;
 import com.reandroid.arsc.pool.TableStringPool;
@@ -28,13 +31,77 @@ import com.reandroid.json.JSONArray;
 import com.reandroid.json.JSONConvert;
 import com.reandroid.json.JSONObject;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Iterator;
 
 public class EntryArray extends OffsetBlockArray<Entry> implements JSONConvert<JSONArray> {
 
+    private volatile byte[] mUnloadedBytes;
+    private volatile Thread mLoadingThread;
+
     public EntryArray(OffsetArray offsets, IntegerItem itemCount, IntegerItem itemStart){
         super(offsets, itemCount, itemStart);
     }
+
+    /**
+     * Returns false while entries are kept as raw bytes, see {@link TableBlock#setLazyEntries(boolean)}
+     * */
+    public boolean isLoaded(){
+        return getUnloadedBytes() == null;
+    }
+    /**
+     * Parses the raw entries and links their strings. Linking mutates string pools
+     * shared by the whole table, thus all types of a table load under one table wide lock.
+     * */
+    public void ensureLoaded(){
+        if(mUnloadedBytes == null && mLoadingThread == null){
+            return;
+        }
+        synchronized (getLoadLock()){
+            byte[] bytes = mUnloadedBytes;
+            if(bytes == null || mLoadingThread != null){
+                return;
+            }
+            mLoadingThread = Thread.currentThread();
+            try {
+                readItems(new BlockReader(bytes), 0);
+                linkStringsOnLoad();
+                mUnloadedBytes = null;
+            } catch (IOException exception) {
+                throw new IllegalArgumentException(exception);
+            } finally {
+                mLoadingThread = null;
+            }
+        }
+    }
+    private Object getLoadLock(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            return tableBlock.getTableStringPool();
+        }
+        return this;
+    }
+    private void linkStringsOnLoad(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            linkTableStringsInternal(tableBlock.getTableStringPool());
+        }
+        PackageBlock packageBlock = getParentInstance(PackageBlock.class);
+        if(packageBlock != null){
+            linkSpecStringsInternal(packageBlock.getSpecStringPool());
+        }
+    }
+    private byte[] getUnloadedBytes(){
+        if(mLoadingThread == Thread.currentThread()){
+            return null;
+        }
+        return mUnloadedBytes;
+    }
+    private boolean isLazyLoad(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        return tableBlock != null && tableBlock.isLazyEntries();
+    }
     public void linkTableStringsInternal(TableStringPool tableStringPool){
         Iterator<Entry> itr = iterator(true);
         while (itr.hasNext()){
@@ -99,8 +166,91 @@ public class EntryArray extends OffsetBlockArray<Entry> implements JSONConvert<J
     }
     @Override
     public boolean isEmpty(){
+        if(!isLoaded()){
+            int noEntry = OffsetArray.NO_ENTRY;
+            int[] offsets = getOffsetArray().getOffsets();
+            int size = size();
+            for(int i = 0; i < size; i++){
+                if(offsets[i] != noEntry){
+                    return false;
+                }
+            }
+            return true;
+        }
         return !iterator(true).hasNext();
     }
+    @Override
+    public void clear(){
+        mUnloadedBytes = null;
+        super.clear();
+    }
+    @Override
+    public int countBytes(){
+        byte[] bytes = getUnloadedBytes();
+        if(bytes != null){
+            return bytes.length;
+        }
+        return super.countBytes();
+    }
+    @Override
+    public void onCountUpTo(BlockCounter counter){
+        byte[] bytes = getUnloadedBytes();
+        if(bytes == null){
+            super.onCountUpTo(counter);
+            return;
+        }
+        if(counter.FOUND){
+            return;
+        }
+        if(counter.END == this){
+            counter.FOUND = true;
+            return;
+        }
+        counter.setCurrent(this);
+        counter.addCount(bytes.length);
+    }
+    @Override
+    public byte[] getBytes(){
+        byte[] bytes = getUnloadedBytes();
+        if(bytes != null){
+            return bytes.clone();
+        }
+        return super.getBytes();
+    }
+    @Override
+    public int onWriteBytes(OutputStream stream) throws IOException {
+        byte[] bytes = getUnloadedBytes();
+        if(bytes != null){
+            stream.write(bytes);
+            return bytes.length;
+        }
+        return super.onWriteBytes(stream);
+    }
+    @Override
+    protected void onRefreshed() {
+        if(!isLoaded()){
+            refreshCountAndStart();
+            return;
+        }
+        super.onRefreshed();
+    }
+    /**
+     * On lazy mode, the entries region (including alignment) is kept as it is until first access,
+     * thus untouched types are written back unchanged
+     * */
+    @Override
+    public void onReadBytes(BlockReader reader) throws IOException{
+        int start = getZeroPosition();
+        int length = reader.length() - start;
+        if(size() == 0 || length <= 0 || !isLazyLoad()){
+            super.onReadBytes(reader);
+            return;
+        }
+        reader.seek(start);
+        byte[] bytes = new byte[length];
+        reader.readFully(bytes);
+        mUnloadedBytes = bytes;
+    }
 
     public Entry getOrCreate(short entryId){
         int id = 0xffff & entryId;
@@ -155,13 +155,15 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
 
     @Override
     public void onReadBytes(BlockReader reader) throws IOException{
+        readItems(reader, getZeroPosition());
+    }
+    void readItems(BlockReader reader, int zeroPosition) throws IOException{
         int size = size();
         if(size == 0){
             return;
         }
         int noEntry = OffsetArray.NO_ENTRY;
         int[] offsetArray = mOffsetArray.getOffsets();
-        int zeroPosition = getZeroPosition();
         reader.seek(zeroPosition);
         int maximumPosition = zeroPosition;
         for(int i = 0; i < size; i++){
@@ -184,7 +186,7 @@ public abstract class OffsetBlockArray<T extends Block> extends BlockArray<T> im
             refreshAlignment(reader, getAlignItem());
         }
     }
-    private int getZeroPosition(){
+    int getZeroPosition(){
         int start = startReference.get();
         if(start < 0){
             start = 0;
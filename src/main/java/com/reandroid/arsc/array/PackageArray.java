@@ -18,6 +18,7 @@ package com.reandroid.arsc.array;
 import com.reandroid.arsc.base.Block;
 import com.reandroid.arsc.base.BlockArray;
 import com.reandroid.arsc.chunk.PackageBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.io.BlockLoad;
 import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.item.IntegerItem;
@@ -129,6 +130,14 @@ public class PackageArray extends BlockArray<PackageBlock>
     protected void onRefreshed() {
         refreshPackageCount();
     }
+    @Override
+    public void onChanged() {
+        super.onChanged();
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            tableBlock.onStructureChanged();
+        }
+    }
     private void refreshPackageCount(){
         mPackageCount.set(size());
     }
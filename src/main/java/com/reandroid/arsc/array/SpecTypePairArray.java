@@ -18,6 +18,7 @@ package com.reandroid.arsc.array;
 import com.reandroid.arsc.base.BlockArray;
 import com.reandroid.arsc.chunk.PackageBlock;
 import com.reandroid.arsc.chunk.SpecBlock;
+import com.reandroid.arsc.chunk.TableBlock;
 import com.reandroid.arsc.chunk.TypeBlock;
 import com.reandroid.arsc.container.SpecTypePair;
 import com.reandroid.arsc.item.TypeString;
@@ -222,6 +223,14 @@ public class SpecTypePairArray extends BlockArray<SpecTypePair>
     protected void onPreRefresh(){
         validateEntryCounts();
     }
+    @Override
+    public void onChanged() {
+        super.onChanged();
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null){
+            tableBlock.onStructureChanged();
+        }
+    }
 
     private void validateEntryCounts(){
         Map<Byte, Integer> entryCountMap=mapHighestEntryCount();
@@ -40,6 +40,7 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
     private byte mTypeId;
     private Boolean mHasComplexEntry;
     private Map<String, TypeBlock> mQualifiersMap;
+    private volatile int mModCount;
 
     public TypeBlockArray(){
         super();
@@ -336,6 +337,13 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
     public void onChanged() {
         super.onChanged();
         mQualifiersMap = null;
+        mModCount ++;
+    }
+    /**
+     * Incremented whenever configs are added, removed, replaced or reordered
+     * */
+    public int getModCount(){
+        return mModCount;
     }
 
     @Override
@@ -382,7 +390,7 @@ public class TypeBlockArray extends BlockArray<TypeBlock>
         Iterator<TypeBlock> iterator = iterator();
         while (iterator.hasNext()){
             TypeBlock typeBlock = iterator.next();
-            int count = typeBlock.getEntryArray().size();
+            int count = typeBlock.size();
             if(count > result){
                 result = count;
             }
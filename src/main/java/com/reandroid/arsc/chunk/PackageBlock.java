@@ -422,6 +422,10 @@ public class PackageBlock extends Chunk<PackageHeader>
         getHeaderBlock().getPackageId().set(id);
         mPrefix = null;
         mHasValidPrefix = false;
+        TableBlock tableBlock = getTableBlock();
+        if(tableBlock != null){
+            tableBlock.onStructureChanged();
+        }
     }
     @Override
     public String getName(){
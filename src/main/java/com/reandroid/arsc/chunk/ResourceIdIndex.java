@@ -0,0 +1,232 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.arsc.array.EntryArray;
+import com.reandroid.arsc.array.TypeBlockArray;
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.utils.collection.ArrayIterator;
+import com.reandroid.utils.collection.EmptyIterator;
+
+import java.util.Iterator;
+
+/**
+ * Dense resource id lookup over the packages of a single TableBlock. Packages and types
+ * are addressed by id through plain arrays, entries of each type are kept in one flat
+ * array laid out as [entryId * configCount + configIndex] thus all configs of a resource
+ * are contiguous. Entries of a type are collected on first lookup of the type.
+ * <br/>
+ * Changes of packages and types stale the index through a modification counter of the
+ * table, changes of configs stale the index of the type through the counter of its
+ * TypeBlockArray. Entries added to or removed from an existing config are picked up
+ * after TableBlock.refresh() or TableBlock.invalidateResourceIdIndex().
+ * */
+public class ResourceIdIndex {
+
+    private final TableBlock tableBlock;
+    private final int structureModCount;
+    private final PackageBlock[] packageBlocks;
+    private final boolean[] ambiguous;
+    private final TypeIndex[][] typeIndexes;
+
+    ResourceIdIndex(TableBlock tableBlock){
+        this.tableBlock = tableBlock;
+        this.structureModCount = tableBlock.getStructureModCount();
+        this.packageBlocks = new PackageBlock[MAX_ID];
+        this.ambiguous = new boolean[MAX_ID];
+        this.typeIndexes = new TypeIndex[MAX_ID][];
+        for(PackageBlock packageBlock : tableBlock){
+            int id = packageBlock.getId() & 0xff;
+            if(packageBlocks[id] != null){
+                ambiguous[id] = true;
+                continue;
+            }
+            packageBlocks[id] = packageBlock;
+            typeIndexes[id] = new TypeIndex[MAX_ID];
+        }
+    }
+
+    /**
+     * Returns true when more than one package of the table has the given id, lookups
+     * for such ids should go through package iteration.
+     * */
+    public boolean isAmbiguous(int packageId){
+        return ambiguous[packageId & 0xff];
+    }
+    public PackageBlock getPackageBlock(int packageId){
+        return packageBlocks[packageId & 0xff];
+    }
+    public ResourceEntry getResource(int resourceId){
+        Entry entry = getAnyEntry(resourceId);
+        if(entry == null){
+            return null;
+        }
+        return new ResourceEntry(getPackageBlock(resourceId >>> 24), resourceId);
+    }
+    /**
+     * Same as SpecTypePair.getAnyEntry, the first non-null entry otherwise the first entry
+     * */
+    public Entry getAnyEntry(int resourceId){
+        TypeIndex typeIndex = getTypeIndex(resourceId, true);
+        if(typeIndex == null){
+            return null;
+        }
+        Entry[] entries = typeIndex.entries;
+        int configCount = typeIndex.configCount;
+        int start = (resourceId & 0xffff) * configCount;
+        Entry result = null;
+        for(int i = 0; i < configCount; i++){
+            Entry entry = entries[start + i];
+            if(entry == null){
+                continue;
+            }
+            if(!entry.isNull()){
+                return entry;
+            }
+            if(result == null){
+                result = entry;
+            }
+        }
+        return result;
+    }
+    public Iterator<Entry> getEntries(int resourceId, boolean skipNull){
+        TypeIndex typeIndex = getTypeIndex(resourceId, true);
+        if(typeIndex == null){
+            return EmptyIterator.of();
+        }
+        int configCount = typeIndex.configCount;
+        int start = (resourceId & 0xffff) * configCount;
+        if(skipNull){
+            return new ArrayIterator<>(typeIndex.entries, start, configCount,
+                    (Entry entry) -> !entry.isNull());
+        }
+        return new ArrayIterator<>(typeIndex.entries, start, configCount);
+    }
+    /**
+     * Returns the entry of the given resource id at the given TypeBlock index of its
+     * TypeBlockArray
+     * */
+    public Entry getEntry(int resourceId, int configIndex){
+        TypeIndex typeIndex = getTypeIndex(resourceId, true);
+        if(typeIndex == null || configIndex < 0 || configIndex >= typeIndex.configCount){
+            return null;
+        }
+        return typeIndex.entries[(resourceId & 0xffff) * typeIndex.configCount + configIndex];
+    }
+    public int countConfigs(int resourceId){
+        TypeIndex typeIndex = getTypeIndex(resourceId, false);
+        if(typeIndex == null){
+            return 0;
+        }
+        return typeIndex.configCount;
+    }
+    boolean isStale(){
+        return structureModCount != tableBlock.getStructureModCount();
+    }
+    private TypeIndex getTypeIndex(int resourceId, boolean checkEntryId){
+        int packageId = (resourceId >>> 24) & 0xff;
+        TypeIndex[] types = typeIndexes[packageId];
+        if(types == null){
+            return null;
+        }
+        int typeId = (resourceId >>> 16) & 0xff;
+        TypeIndex typeIndex = types[typeId];
+        if(typeIndex == null || typeIndex.isStale()){
+            typeIndex = buildTypeIndex(packageId, typeId);
+        }
+        if(typeIndex.configCount == 0){
+            return null;
+        }
+        if(checkEntryId && (resourceId & 0xffff) >= typeIndex.entryCount){
+            if(typeIndex.specTypePair.getTypeBlockArray().getHighestEntryCount()
+                    <= typeIndex.entryCount){
+                return null;
+            }
+            typeIndex = buildTypeIndex(packageId, typeId);
+            if((resourceId & 0xffff) >= typeIndex.entryCount){
+                return null;
+            }
+        }
+        return typeIndex;
+    }
+    private synchronized TypeIndex buildTypeIndex(int packageId, int typeId){
+        TypeIndex[] types = typeIndexes[packageId];
+        TypeIndex typeIndex = types[typeId];
+        if(typeIndex != null && !typeIndex.isStale() && !typeIndex.isGrown()){
+            return typeIndex;
+        }
+        typeIndex = new TypeIndex(packageBlocks[packageId].getSpecTypePair(typeId));
+        types[typeId] = typeIndex;
+        return typeIndex;
+    }
+
+    static final class TypeIndex {
+
+        final SpecTypePair specTypePair;
+        final int modCount;
+        final int configCount;
+        final int entryCount;
+        final Entry[] entries;
+
+        TypeIndex(SpecTypePair specTypePair){
+            this.specTypePair = specTypePair;
+            if(specTypePair == null){
+                this.modCount = 0;
+                this.configCount = 0;
+                this.entryCount = 0;
+                this.entries = EMPTY;
+                return;
+            }
+            TypeBlockArray typeBlockArray = specTypePair.getTypeBlockArray();
+            this.modCount = typeBlockArray.getModCount();
+            int configCount = typeBlockArray.size();
+            int entryCount = 0;
+            for(int i = 0; i < configCount; i++){
+                int count = typeBlockArray.get(i).getEntryArray().getHighestEntryId() + 1;
+                if(count > entryCount){
+                    entryCount = count;
+                }
+            }
+            Entry[] entries = new Entry[entryCount * configCount];
+            for(int i = 0; i < configCount; i++){
+                EntryArray entryArray = typeBlockArray.get(i).getEntryArray();
+                int size = entryArray.size();
+                for(int index = 0; index < size; index++){
+                    Entry entry = entryArray.get(index);
+                    if(entry != null){
+                        entries[entryArray.getEntryId(index) * configCount + i] = entry;
+                    }
+                }
+            }
+            this.configCount = configCount;
+            this.entryCount = entryCount;
+            this.entries = entries;
+        }
+        boolean isStale(){
+            return specTypePair != null
+                    && specTypePair.getTypeBlockArray().getModCount() != modCount;
+        }
+        boolean isGrown(){
+            return specTypePair != null
+                    && specTypePair.getTypeBlockArray().getHighestEntryCount() > entryCount;
+        }
+    }
+
+    private static final int MAX_ID = 0x100;
+    private static final Entry[] EMPTY = new Entry[0];
+}
@@ -39,9 +39,11 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Predicate;
 
 public class TableBlock extends Chunk<TableHeader>
@@ -54,6 +56,11 @@ public class TableBlock extends Chunk<TableHeader>
     private ReferenceResolver referenceResolver;
     private PackageBlock mCurrentPackage;
     private PackageBlock mEmptyTablePackage;
+    private boolean mLazyEntries;
+    private ExecutorService mReadExecutor;
+    private boolean mIndexResources;
+    private volatile ResourceIdIndex mResourceIdIndex;
+    private volatile int mStructureModCount;
 
     public TableBlock() {
         super(new TableHeader(), 2);
@@ -76,6 +83,109 @@ public class TableBlock extends Chunk<TableHeader>
                 PackageBlock::allValues));
     }
 
+    /**
+     * When enabled before reading, entries of each type chunk are parsed on first access
+     * of the type's entries instead of at load time. Types never accessed are written back
+     * byte for byte. Types may be loaded from several threads, but the table must not be
+     * modified while other threads access it.
+     * */
+    public void setLazyEntries(boolean lazyEntries){
+        this.mLazyEntries = lazyEntries;
+    }
+    public boolean isLazyEntries(){
+        return mLazyEntries;
+    }
+    /**
+     * When set before reading, type chunks of each package are parsed in parallel on the
+     * given executor (e.g. a ForkJoinPool), strings are linked afterwards in a single
+     * sequential pass. A null executor (the default) reads sequentially.
+     * */
+    public void setReadExecutor(ExecutorService executorService){
+        this.mReadExecutor = executorService;
+    }
+    public ExecutorService getReadExecutor(){
+        return mReadExecutor;
+    }
+    /**
+     * When enabled, getResource(int) and getEntries(int, boolean) are answered from
+     * ResourceIdIndex of this table and of its frameworks instead of iterating packages
+     * */
+    public void setIndexResources(boolean indexResources){
+        this.mIndexResources = indexResources;
+    }
+    public boolean isIndexResources(){
+        return mIndexResources;
+    }
+    /**
+     * Returns resource id index of this table's own packages, built on first call and
+     * rebuilt after packages or types are changed, see {@link #onStructureChanged()}
+     * */
+    public ResourceIdIndex getResourceIdIndex(){
+        ResourceIdIndex resourceIdIndex = this.mResourceIdIndex;
+        if(resourceIdIndex == null || resourceIdIndex.isStale()){
+            resourceIdIndex = new ResourceIdIndex(this);
+            this.mResourceIdIndex = resourceIdIndex;
+        }
+        return resourceIdIndex;
+    }
+    /**
+     * Drops the resource id index, call after adding or removing entries of existing
+     * types without refresh()
+     * */
+    public void invalidateResourceIdIndex(){
+        this.mResourceIdIndex = null;
+    }
+    /**
+     * Called when packages or types of this table are added, removed, replaced or
+     * reordered, or a package id changes
+     * */
+    public void onStructureChanged(){
+        mStructureModCount ++;
+    }
+    int getStructureModCount(){
+        return mStructureModCount;
+    }
+    private boolean canUseResourceIdIndex(int resourceId){
+        if(!isIndexResources()){
+            return false;
+        }
+        int packageId = (resourceId >>> 24) & 0xff;
+        if(getResourceIdIndex().isAmbiguous(packageId)){
+            return false;
+        }
+        for(TableBlock framework : getFrameWorks()){
+            if(framework.getResourceIdIndex().isAmbiguous(packageId)){
+                return false;
+            }
+        }
+        return true;
+    }
+    private ResourceEntry getIndexedResource(int resourceId){
+        ResourceEntry resourceEntry = getResourceIdIndex().getResource(resourceId);
+        if(resourceEntry != null){
+            return resourceEntry;
+        }
+        for(TableBlock framework : getFrameWorks()){
+            resourceEntry = framework.getResourceIdIndex().getResource(resourceId);
+            if(resourceEntry != null){
+                return resourceEntry;
+            }
+        }
+        return null;
+    }
+    private Iterator<Entry> getIndexedEntries(int resourceId, boolean skipNull){
+        Iterator<Entry> iterator = getResourceIdIndex().getEntries(resourceId, skipNull);
+        if(iterator.hasNext()){
+            return iterator;
+        }
+        for(TableBlock framework : getFrameWorks()){
+            iterator = framework.getResourceIdIndex().getEntries(resourceId, skipNull);
+            if(iterator.hasNext()){
+                return iterator;
+            }
+        }
+        return EmptyIterator.of();
+    }
     public PackageBlock getCurrentPackage(){
         return mCurrentPackage;
     }
@@ -102,6 +212,19 @@ public class TableBlock extends Chunk<TableHeader>
         if(resourceId == 0){
             return null;
         }
+        if(canUseResourceIdIndex(resourceId)){
+            ResourceEntry resourceEntry = getIndexedResource(resourceId);
+            if(resourceEntry != null){
+                return resourceEntry;
+            }
+            int staged = resolveStagedAlias(resourceId, 0);
+            if(staged == 0 || staged == resourceId){
+                return null;
+            }
+            if(canUseResourceIdIndex(staged)){
+                return getIndexedResource(staged);
+            }
+        }
         Iterator<PackageBlock> iterator = getAllPackages();
         while (iterator.hasNext()){
             PackageBlock packageBlock = iterator.next();
@@ -310,7 +433,9 @@ public class TableBlock extends Chunk<TableHeader>
         return getEntries(resourceId, true);
     }
     public Iterator<Entry> getEntries(int resourceId, boolean skipNull){
-
+        if(canUseResourceIdIndex(resourceId)){
+            return getIndexedEntries(resourceId, skipNull);
+        }
         final int packageId = (resourceId >> 24) & 0xff;
         final int typeId = (resourceId >> 16) & 0xff;
         final int entryId = resourceId & 0xffff;
@@ -639,6 +764,7 @@ public class TableBlock extends Chunk<TableHeader>
     }
     @Override
     protected void onPreRefresh() {
+        invalidateResourceIdIndex();
         getPackageArray().removeIf(PackageBlock::isEmpty);
         super.onPreRefresh();
     }
@@ -676,6 +802,7 @@ public class TableBlock extends Chunk<TableHeader>
             infoHeader=reader.readHeaderBlock();
         }
         reader.close();
+        invalidateResourceIdIndex();
         linkStringsInternal();
     }
 
@@ -851,6 +978,11 @@ public class TableBlock extends Chunk<TableHeader>
         tableBlock.readBytes(inputStream);
         return tableBlock;
     }
+    public static TableBlock load(ByteBuffer byteBuffer) throws IOException{
+        TableBlock tableBlock=new TableBlock();
+        tableBlock.readBytes(new BlockReader(byteBuffer));
+        return tableBlock;
+    }
     public static TableBlock createEmpty() {
         TableBlock tableBlock = new TableBlock();
         tableBlock.initializeAsEmpty();
@@ -96,10 +96,17 @@ public class TypeBlock extends Chunk<TypeHeader>
                 + getResConfig().getQualifiers();
     }
     public void linkTableStringsInternal(TableStringPool tableStringPool){
+        if(!mEntryArray.isLoaded() && tableStringPool.isStringLinkLocked()){
+            // linked on first access
+            return;
+        }
         EntryArray entryArray = getEntryArray();
         entryArray.linkTableStringsInternal(tableStringPool);
     }
     public void linkSpecStringsInternal(SpecStringPool specStringPool){
+        if(!mEntryArray.isLoaded() && specStringPool.isStringLinkLocked()){
+            return;
+        }
         EntryArray entryArray = getEntryArray();
         entryArray.linkSpecStringsInternal(specStringPool);
     }
@@ -186,7 +193,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         onSetEntryCount(count);
     }
     public boolean isEmpty(){
-        return getEntryArray().isEmpty();
+        return mEntryArray.isEmpty();
     }
     public boolean isDefault(){
         return getResConfig().isDefault();
@@ -255,7 +262,7 @@ public class TypeBlock extends Chunk<TypeHeader>
         return getEntryArray().countNonNull();
     }
     public int size() {
-        return getEntryArray().size();
+        return mEntryArray.size();
     }
     @Override
     public Iterator<Entry> iterator(){
@@ -283,8 +290,16 @@ public class TypeBlock extends Chunk<TypeHeader>
     public ResConfig getResConfig(){
         return getHeaderBlock().getConfig();
     }
+    /**
+     * Returns false if entries are not yet parsed, see {@link TableBlock#setLazyEntries(boolean)}
+     * */
+    public boolean isEntriesLoaded(){
+        return mEntryArray.isLoaded();
+    }
     public EntryArray getEntryArray(){
-        return mEntryArray;
+        EntryArray entryArray = this.mEntryArray;
+        entryArray.ensureLoaded();
+        return entryArray;
     }
     public void ensureEntriesCount(int count){
         EntryArray entryArray = getEntryArray();
@@ -303,7 +318,7 @@ public class TypeBlock extends Chunk<TypeHeader>
     }
     @Override
     protected void onChunkRefreshed() {
-        getEntryArray().refreshCountAndStart();
+        mEntryArray.refreshCountAndStart();
     }
     @Override
     protected void onPreRefresh(){
@@ -21,6 +21,7 @@ import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlSerializer;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 public class ResXmlDocument extends ResXmlDocumentOrElement implements
@@ -121,6 +122,10 @@ public class ResXmlDocument extends ResXmlDocumentOrElement implements
         BlockReader reader=new BlockReader(inputStream);
         super.readBytes(reader);
     }
+    public void readBytes(ByteBuffer byteBuffer) throws IOException{
+        BlockReader reader=new BlockReader(byteBuffer);
+        super.readBytes(reader);
+    }
     public final int writeBytes(File file) throws IOException{
         if(isNull()){
             throw new IOException("Can NOT save null block");
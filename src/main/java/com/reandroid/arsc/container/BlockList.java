@@ -59,12 +59,16 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         }
     }
     public void setSize(int size){
+        int previous = size();
         if(size == 0){
             lockList();
-        }else if(mCreator != null || size < size()){
+        }else if(mCreator != null || size < previous){
             unlockList();
             mItems.setSize(size);
         }
+        if(size() != previous){
+            onChanged();
+        }
     }
     public void setElements(T[] elements){
         if(elements == null || elements.length == 0){
@@ -201,6 +205,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         });
         if(sorted) {
             updateIndex();
+            onChanged();
         }
         return sorted;
     }
@@ -209,7 +214,9 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
             return false;
         }
         if(mItems.sort(comparator, swappable)){
-            return updateIndex();
+            boolean result = updateIndex();
+            onChanged();
+            return result;
         }
         return false;
     }
@@ -262,6 +269,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         Object lock = onRemoveRequestStarted();
         mItems.removeAllIndexes(indexes);
         updateIndex();
+        onChanged();
         onRemoveRequestCompleted(lock);
         return true;
     }
@@ -270,6 +278,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         boolean removed = mItems.removeIf(filter);
         if(removed) {
             updateIndex();
+            onChanged();
         }
         onRemoveRequestCompleted(lock);
         return removed;
@@ -355,6 +364,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         mItems.swap(i1, i2);
         item1.setIndex(i2);
         item2.setIndex(i1);
+        onChanged();
         return true;
     }
     public void moveTo(T item, int index){
@@ -365,6 +375,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         Object lock = onRemoveRequestStarted();
         mItems.move(item, index);
         updateIndex(i, index);
+        onChanged();
         onRemoveRequestCompleted(lock);
     }
     public boolean transferTo(T item, BlockList<? super T> destination) {
@@ -377,6 +388,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         }
         Object lock = onRemoveRequestStarted();
         mItems.removeSilent(i);
+        onChanged();
         boolean moved = destination.add(item);
         onRemoveRequestCompleted(lock);
         return moved;
@@ -387,6 +399,7 @@ public class BlockList<T extends Block> extends Block implements BlockRefresh, S
         }
         Object lock = onRemoveRequestStarted();
         T item = mItems.removeSilent(index);
+        onChanged();
         boolean moved = destination.add(item);
         onRemoveRequestCompleted(lock);
         return moved;
@@ -23,8 +23,13 @@ import com.reandroid.arsc.header.TypeHeader;
 import com.reandroid.arsc.io.BlockReader;
 import com.reandroid.arsc.list.OverlayableList;
 import com.reandroid.arsc.list.StagedAliasList;
+import com.reandroid.utils.FutureUtil;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 public class PackageBody extends FixedBlockContainer {
 
@@ -85,12 +90,62 @@ public class PackageBody extends FixedBlockContainer {
 
     @Override
     public void onReadBytes(BlockReader reader) throws IOException{
+        ExecutorService executorService = getReadExecutor();
+        List<TypeBlockReader> typeBlockReaders = null;
+        if(executorService != null){
+            typeBlockReaders = new ArrayList<>();
+        }
         boolean readOk=true;
         while (readOk){
-            readOk=readNextBlock(reader);
+            readOk=readNextBlock(reader, typeBlockReaders);
+        }
+        if(typeBlockReaders != null){
+            readTypeBlocks(executorService, typeBlockReaders);
+        }
+    }
+    /**
+     * Parallel read is safe only while string pools are link locked, otherwise values
+     * would link to shared string items as they are read.
+     * */
+    private ExecutorService getReadExecutor(){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock == null){
+            return null;
+        }
+        ExecutorService executorService = tableBlock.getReadExecutor();
+        if(executorService == null || !tableBlock.getTableStringPool().isStringLinkLocked()){
+            return null;
+        }
+        PackageBlock packageBlock = getParentInstance(PackageBlock.class);
+        if(packageBlock == null || !packageBlock.getSpecStringPool().isStringLinkLocked()){
+            return null;
+        }
+        return executorService;
+    }
+    private void readTypeBlocks(ExecutorService executorService,
+                                List<TypeBlockReader> typeBlockReaders) throws IOException {
+        int count = typeBlockReaders.size();
+        if(count < 2){
+            for(TypeBlockReader typeBlockReader : typeBlockReaders){
+                typeBlockReader.read();
+            }
+            return;
+        }
+        Future<?>[] futures = new Future<?>[count];
+        try{
+            for(int i = 0; i < count; i++){
+                TypeBlockReader typeBlockReader = typeBlockReaders.get(i);
+                futures[i] = executorService.submit(() -> {
+                    typeBlockReader.read();
+                    return null;
+                });
+            }
+            FutureUtil.awaitAll(futures);
+        }finally {
+            FutureUtil.cancelAll(futures);
         }
     }
-    private boolean readNextBlock(BlockReader reader) throws IOException {
+    private boolean readNextBlock(BlockReader reader, List<TypeBlockReader> typeBlockReaders) throws IOException {
         HeaderBlock headerBlock = reader.readHeaderBlock();
         if(headerBlock==null){
             return false;
@@ -100,7 +155,7 @@ public class PackageBody extends FixedBlockContainer {
         if(chunkType==ChunkType.SPEC){
             readSpecBlock(reader);
         }else if(chunkType==ChunkType.TYPE){
-            readTypeBlock(reader);
+            readTypeBlock(reader, typeBlockReaders);
         }else if(chunkType==ChunkType.LIBRARY){
             readLibraryBlock(reader);
         }else if(chunkType==ChunkType.OVERLAYABLE){
@@ -119,12 +174,18 @@ public class PackageBody extends FixedBlockContainer {
         SpecTypePair specTypePair = mSpecTypePairArray.getOrCreate(specHeader.getId().getByte());
         specTypePair.getSpecBlock().readBytes(reader);
     }
-    private void readTypeBlock(BlockReader reader) throws IOException{
+    private void readTypeBlock(BlockReader reader, List<TypeBlockReader> typeBlockReaders) throws IOException{
         TypeHeader typeHeader = TypeHeader.read(reader);
         SpecTypePair specTypePair = mSpecTypePairArray.getOrCreate(typeHeader.getId().getByte());
         TypeBlock typeBlock = specTypePair.getTypeBlockArray().createNext(
                 typeHeader.isSparse(), typeHeader.isOffset16());
-        typeBlock.readBytes(reader);
+        if(typeBlockReaders == null){
+            typeBlock.readBytes(reader);
+            return;
+        }
+        int chunkSize = typeHeader.getChunkSize();
+        typeBlockReaders.add(new TypeBlockReader(typeBlock, reader.create(chunkSize)));
+        reader.offset(chunkSize);
     }
     private void readLibraryBlock(BlockReader reader) throws IOException{
         LibraryBlock libraryBlock=new LibraryBlock();
@@ -150,4 +211,18 @@ public class PackageBody extends FixedBlockContainer {
         unknownChunk.readBytes(reader);
         mUnknownChunkList.add(unknownChunk);
     }
+
+    static class TypeBlockReader {
+        private final TypeBlock typeBlock;
+        private final BlockReader reader;
+
+        TypeBlockReader(TypeBlock typeBlock, BlockReader reader){
+            this.typeBlock = typeBlock;
+            this.reader = reader;
+        }
+        void read() throws IOException {
+            typeBlock.readBytes(reader);
+            reader.close();
+        }
+    }
 }
@@ -20,26 +20,40 @@ import com.reandroid.arsc.header.SpecHeader;
 import com.reandroid.arsc.header.TypeHeader;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 
 public class BlockReader extends InputStream {
     private final Object mLock = new Object();
 
-    private byte[] BUFFER;
+    private ByteBuffer BUFFER;
+    private ByteBuffer mCursor;
     private final int mStart;
     private final int mLength;
     private int mPosition;
     private boolean mIsClosed;
     private int mMark;
 
-    public BlockReader(byte[] buffer, int start, int length) {
+    private BlockReader(ByteBuffer buffer, int start, int length) {
         this.BUFFER = buffer;
         this.mStart = start;
         this.mLength = length;
         this.mPosition = 0;
     }
+    public BlockReader(byte[] buffer, int start, int length) {
+        this(ByteBuffer.wrap(buffer), start, length);
+    }
     public BlockReader(byte[] buffer) {
         this(buffer, 0, buffer.length);
     }
+    /**
+     * Reads the remaining bytes of the given buffer (heap, direct or mapped) without copying,
+     * the position and limit of the buffer are not modified
+     * */
+    public BlockReader(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.remaining());
+    }
     public BlockReader(InputStream in) throws IOException {
         this(loadBuffer(in));
     }
@@ -52,19 +66,34 @@ public class BlockReader extends InputStream {
     public int readUnsignedShort() throws IOException {
         return 0x0000ffff & readShort();
     }
+    /**
+     * Peeks little-endian short at current position, position is not advanced
+     * */
     public short readShort() throws IOException {
-        int pos = getPosition();
-        byte[] bts = new byte[2];
-        readFully(bts);
-        seek(pos);
-        return toShort(bts);
+        return (short) (peekByte(0) | peekByte(1) << 8);
     }
+    /**
+     * Peeks little-endian integer at current position, position is not advanced
+     * */
     public int readInteger() throws IOException {
-        int pos = getPosition();
-        byte[] bytes = new byte[4];
-        readFully(bytes);
-        seek(pos);
-        return toInt(bytes);
+        return peekByte(0) |
+                peekByte(1) << 8 |
+                peekByte(2) << 16 |
+                peekByte(3) << 24;
+    }
+    private int peekByte(int offset) throws IOException {
+        if(mIsClosed){
+            throw new IOException("Stream is closed");
+        }
+        int position = mPosition;
+        if(position >= mLength){
+            throw new EOFException("Finished reading: " + position);
+        }
+        position = position + offset;
+        if(position >= mLength){
+            return 0;
+        }
+        return BUFFER.get(mStart + position) & 0xff;
     }
     /**
      * Use SpecHeader#read(BlockReader)
@@ -83,31 +112,54 @@ public class BlockReader extends InputStream {
     public InfoHeader readHeaderBlock() throws IOException {
         return InfoHeader.read(this);
     }
-    private int toInt(byte[] bytes){
-        return bytes[0] & 0xff |
-                (bytes[1] & 0xff) << 8 |
-                (bytes[2] & 0xff) << 16 |
-                (bytes[3] & 0xff) << 24;
-    }
-    private short toShort(byte[] bytes){
-        return (short) (bytes[0] & 0xff |
-                (bytes[1] & 0xff) << 8);
-    }
+    /**
+     * Returns the backing array if any, otherwise a copy of this reader's bytes
+     * */
     public byte[] getBuffer(){
-        return BUFFER;
+        ByteBuffer buffer = this.BUFFER;
+        if(buffer.hasArray() && buffer.arrayOffset() == 0){
+            return buffer.array();
+        }
+        return getBytes();
+    }
+    public ByteBuffer getByteBuffer(){
+        ByteBuffer buffer = this.BUFFER.duplicate();
+        buffer.limit(mStart + mLength);
+        buffer.position(mStart);
+        return buffer.slice();
     }
     public byte[] getBytes(){
         int len = length();
-        if(this.BUFFER.length == len){
-            return BUFFER;
+        ByteBuffer buffer = this.BUFFER;
+        if(mStart == 0 && buffer.hasArray() && buffer.arrayOffset() == 0
+                && buffer.array().length == len){
+            return buffer.array();
         }
         byte[] bytes = new byte[len];
         if(len==0){
             return bytes;
         }
-        System.arraycopy(BUFFER, mStart, bytes, 0, len);
+        synchronized (mLock){
+            copyTo(mStart, bytes, 0, len);
+        }
         return bytes;
     }
+    private void copyTo(int index, byte[] bytes, int start, int length){
+        ByteBuffer buffer = this.BUFFER;
+        if(buffer.hasArray()){
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + index,
+                    bytes, start, length);
+            return;
+        }
+        ByteBuffer cursor = this.mCursor;
+        if(cursor == null){
+            cursor = buffer.duplicate();
+            this.mCursor = cursor;
+        }
+        cursor.limit(index + length);
+        cursor.position(index);
+        cursor.get(bytes, start, length);
+    }
     public BlockReader create(int len){
         return create(getPosition(), len);
     }
@@ -184,17 +236,13 @@ public class BlockReader extends InputStream {
             length = bytes.length;
         }
         synchronized (mLock){
-            int actualPosition = mStart + mPosition;
-            int i;
-            for(i = 0; i < length; i++){
-                bytes[start + i] = BUFFER[actualPosition + i];
-                mPosition ++;
-                if(mPosition >= mLength){
-                    i++;
-                    break;
-                }
+            int available = mLength - mPosition;
+            if(length > available){
+                length = available;
             }
-            return i;
+            copyTo(mStart + mPosition, bytes, start, length);
+            mPosition += length;
+            return length;
         }
     }
     public int getPosition(){
@@ -214,7 +262,7 @@ public class BlockReader extends InputStream {
         }
         synchronized (mLock){
             int actPos = mStart + i;
-            int val = BUFFER[actPos] & 0xff;
+            int val = BUFFER.get(actPos) & 0xff;
             mPosition ++;
             return val;
         }
@@ -243,6 +291,7 @@ public class BlockReader extends InputStream {
     public void close(){
         mIsClosed=true;
         BUFFER=null;
+        mCursor=null;
         mMark=0;
     }
     @Override
@@ -275,6 +324,22 @@ public class BlockReader extends InputStream {
     }
 
 
+    /**
+     * Maps the file read-only, chunks are read directly from the mapped pages
+     * without loading the whole file to heap
+     * */
+    public static BlockReader map(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE){
+                throw new IOException("File too large to map: " + size + ", " + file);
+            }
+            return new BlockReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } finally {
+            channel.close();
+        }
+    }
     private static byte[] loadBuffer(File file) throws IOException {
         FileInputStream in=new FileInputStream(file);
         byte[] result = loadBuffer(in);
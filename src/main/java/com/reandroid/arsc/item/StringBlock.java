@@ -29,7 +29,12 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         mCache = StringsUtil.EMPTY;
     }
     public String get(){
-        return mCache;
+        String cache = this.mCache;
+        if(cache == NOT_DECODED){
+            cache = decodeString(getBytesInternal());
+            this.mCache = cache;
+        }
+        return cache;
     }
     public void set(String text){
         set(text, true);
@@ -38,7 +43,7 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         if(text == null || text.length() == 0){
             text = StringsUtil.EMPTY;
         }
-        String old = this.mCache;
+        String old = get();
         boolean firstTime = countBytes() == 0;
         if(firstTime) {
             old = null;
@@ -52,8 +57,12 @@ public abstract class StringBlock extends BlockItem implements StringReference {
             onStringChanged(old, text);
         }
     }
+    /**
+     * Decoding is deferred to the first call of get(), most strings of a loaded
+     * pool are never read and decoding all of them dominates the load time.
+     * */
     protected void onBytesChanged(){
-        mCache = decodeString(getBytesInternal());
+        mCache = NOT_DECODED;
     }
     protected void onStringChanged(String old, String text){
     }
@@ -71,5 +80,12 @@ public abstract class StringBlock extends BlockItem implements StringReference {
         return get();
     }
 
+    private static final String NOT_DECODED = new String(new char[0]);
+
+    /**
+     * Shared decoder instance, not thread safe and no longer used for decoding strings.
+     * Use {@link StandardCharsets#UTF_8} newDecoder() instead
+     * */
+    @Deprecated
     public static final CharsetDecoder UTF8_DECODER = StandardCharsets.UTF_8.newDecoder();
 }
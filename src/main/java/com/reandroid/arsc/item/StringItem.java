@@ -304,9 +304,9 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
         }
         CharsetDecoder charsetDecoder;
         if(isUtf8){
-            charsetDecoder=UTF8_DECODER;
+            charsetDecoder=UTF8_DECODER_LOCAL.get();
         }else {
-            charsetDecoder=UTF16LE_DECODER;
+            charsetDecoder=UTF16LE_DECODER_LOCAL.get();
         }
         try {
             ByteBuffer buf=ByteBuffer.wrap(allStringBytes, offLen[0], offLen[1]);
@@ -322,7 +322,7 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
     private String tryThreeByteDecoder(byte[] bytes, int offset, int length){
         try {
             ByteBuffer byteBuffer = ByteBuffer.wrap(bytes, offset, length);
-            CharBuffer charBuffer = DECODER_3B.decode(byteBuffer);
+            CharBuffer charBuffer = DECODER_3B_LOCAL.get().decode(byteBuffer);
             return charBuffer.toString();
         } catch (CharacterCodingException e) {
             return new String(bytes, offset, length, StandardCharsets.UTF_8);
@@ -602,8 +602,13 @@ public class StringItem extends StringBlock implements JSONConvert<JSONObject>,
         return result;
     }
 
-    private static final CharsetDecoder UTF16LE_DECODER = StandardCharsets.UTF_16LE.newDecoder();
-    private static final CharsetDecoder DECODER_3B = ThreeByteCharsetDecoder.INSTANCE;
+    // strings are decoded lazily and possibly from several threads, decoders are not thread safe
+    private static final ThreadLocal<CharsetDecoder> UTF8_DECODER_LOCAL =
+            ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+    private static final ThreadLocal<CharsetDecoder> UTF16LE_DECODER_LOCAL =
+            ThreadLocal.withInitial(StandardCharsets.UTF_16LE::newDecoder);
+    private static final ThreadLocal<CharsetDecoder> DECODER_3B_LOCAL =
+            ThreadLocal.withInitial(ThreeByteCharsetDecoder::new);
 
     public static final String NAME_string = ObjectsUtil.of("string");
     public static final String NAME_style = ObjectsUtil.of("style");
@@ -52,6 +52,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     private final StyleArray mArrayStyles;
 
     private final MultiMap<String, T> poolMap;
+    private volatile boolean poolMapLoaded;
     private boolean stringLinkLocked;
 
     StringPool(boolean is_utf8, boolean stringLinkLocked){
@@ -113,7 +114,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     public void clear(){
         getStyleArray().clear();
         getStringsArray().clear();
-        poolMap.clear();
+        invalidatePoolMap();
     }
     /**
      * Use clear()
@@ -136,7 +137,6 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
             }
             stringLinkLocked = false;
             linkStrings();
-            reloadPoolMap();
         }
     }
     void linkStrings(){
@@ -174,16 +174,32 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
             createNewString(str);
         }
     }
-    private void reloadPoolMap() {
-        if(poolMap.size() == 0) {
+    /**
+     * The lookup map is built on first use, building it decodes every string of the pool
+     * */
+    private MultiMap<String, T> getPoolMap() {
+        if(!poolMapLoaded) {
+            synchronized (mLock) {
+                if(!poolMapLoaded) {
+                    MultiMap<String, T> poolMap = this.poolMap;
+                    poolMap.clear();
+                    poolMap.setInitialSize(size());
+                    poolMap.putAll(StringItem::getXml, iterator());
+                    poolMapLoaded = true;
+                }
+            }
+        }
+        return poolMap;
+    }
+    private void invalidatePoolMap() {
+        synchronized (mLock) {
+            poolMapLoaded = false;
             poolMap.clear();
-            poolMap.setInitialSize(size());
-            poolMap.putAll(StringItem::getXml, iterator());
         }
     }
     public void compressDuplicates(){
         ensureStringLinkUnlockedInternal();
-        poolMap.findDuplicates(CompareUtil.getComparableComparator(), list -> {
+        getPoolMap().findDuplicates(CompareUtil.getComparableComparator(), list -> {
             T first = list.get(0);
             for(int i = 1; i < list.size(); i++) {
                 T item = list.get(i);
@@ -218,15 +234,15 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
         return null;
     }
     public boolean contains(String str){
-        return poolMap.containsKey(str);
+        return getPoolMap().containsKey(str);
     }
     public void onStringChanged(String old, T stringItem) {
-        if(!stringLinkLocked){
+        if(!stringLinkLocked && poolMapLoaded){
             poolMap.updateKey(old, stringItem.getXml(), stringItem);
         }
     }
     public void onStringRemoved(T stringItem) {
-        if(!stringLinkLocked) {
+        if(!stringLinkLocked && poolMapLoaded) {
             poolMap.remove(stringItem.getXml(), stringItem);
         }
     }
@@ -243,11 +259,11 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     }
     public final Iterator<T> getAll(String str){
         ensureStringLinkUnlockedInternal();
-        return poolMap.getAll(str);
+        return getPoolMap().getAll(str);
     }
     public final T get(String str, Predicate<? super T> predicate){
         ensureStringLinkUnlockedInternal();
-        return poolMap.get(str, predicate);
+        return getPoolMap().get(str, predicate);
     }
     public final T getString(String str){
         return CollectionUtil.getFirst(getAll(str));
@@ -262,7 +278,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
         T item = get(str, stringItem -> key.equals(stringItem.getXml()));
         if(item == null) {
             item = createNewString(str);
-            poolMap.put(str, item);
+            getPoolMap().put(str, item);
         }
         return item;
     }
@@ -350,7 +366,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     @Override
     public void onChunkLoaded() {
         linkStylesInternal();
-        reloadPoolMap();
+        invalidatePoolMap();
     }
 
     @Override
@@ -386,7 +402,7 @@ public abstract class StringPool<T extends StringItem> extends Chunk<StringPoolH
     }
 
     boolean containsInternal(T item) {
-        return poolMap.containsValue(item.getXml(),
+        return getPoolMap().containsValue(item.getXml(),
                 stringItem -> stringItem.compareTo(item) == 0);
     }
     public void merge(StringPool<T> stringPool){
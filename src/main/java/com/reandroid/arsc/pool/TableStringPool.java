@@ -53,6 +53,15 @@ public class TableStringPool extends StringPool<TableString> {
         }
     }
     @Override
+    public void removeString(TableString item){
+        TableBlock tableBlock = getParentInstance(TableBlock.class);
+        if(tableBlock != null && tableBlock.isLazyEntries()){
+            // entries not yet loaded must be linked to follow the index change
+            ensureStringLinkUnlockedInternal();
+        }
+        super.removeString(item);
+    }
+    @Override
     StringArray<TableString> newInstance(OffsetArray offsets, IntegerItem itemCount, IntegerItem itemStart, boolean is_utf8) {
         return new TableStringArray(offsets, itemCount, itemStart, is_utf8);
     }
@@ -16,9 +16,9 @@
 package com.reandroid.common;
 
 import java.io.*;
+import java.util.Arrays;
 
 public class BytesOutputStream extends ByteArrayOutputStream {
-    private int mLastGrow;
     public BytesOutputStream(int initialCapacity){
         super(check(initialCapacity));
     }
@@ -50,7 +50,6 @@ public class BytesOutputStream extends ByteArrayOutputStream {
     public void write(byte[] b) throws IOException {
         this.write(b, 0, b.length);
     }
-
     private void ensureCapacity(int minCapacity) {
         if (minCapacity - this.buf.length > 0) {
             this.grow(minCapacity);
@@ -58,25 +57,18 @@ public class BytesOutputStream extends ByteArrayOutputStream {
     }
 
     private void grow(int minCapacity) {
-        if(mLastGrow == 0){
-            mLastGrow = 1;
-            mLastGrow = mLastGrow << 1;
-        }
-        mLastGrow = mLastGrow << 1;
-        if(mLastGrow > 0xffff){
-            mLastGrow = 0xffff;
-        }
-        byte[] buf = this.buf;
-        int oldCapacity = buf.length;
-        int newCapacity = minCapacity + mLastGrow;
+        int oldCapacity = this.buf.length;
+        int newCapacity = oldCapacity << 1;
         if (newCapacity - minCapacity < 0) {
             newCapacity = minCapacity;
         }
-        byte[] bytes = new byte[newCapacity];
-        for(int i = 0; i < oldCapacity; i ++){
-            bytes[i] = buf[i];
+        if (newCapacity < 0) {
+            if (minCapacity < 0) {
+                throw new OutOfMemoryError();
+            }
+            newCapacity = Integer.MAX_VALUE - 8;
         }
-        this.buf = bytes;
+        this.buf = Arrays.copyOf(this.buf, newCapacity);
     }
 
     public void write(InputStream inputStream) throws IOException{
@@ -113,10 +105,7 @@ public class BytesOutputStream extends ByteArrayOutputStream {
             this.buf = buf;
             return buf;
         }
-        byte[] results = new byte[count];
-        for(int i = 0; i < count; i++){
-            results[i] = buf[i];
-        }
+        byte[] results = Arrays.copyOf(buf, count);
         this.buf = results;
         return results;
     }
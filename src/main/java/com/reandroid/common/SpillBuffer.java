@@ -0,0 +1,403 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.common;
+
+import com.reandroid.utils.io.FileUtil;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only byte buffer which keeps content in memory chunks up to the given memory
+ * limit, once the limit is exceeded the whole content is moved to a temp file and the
+ * rest is written there. Chunks grow geometrically and are never copied on growth.
+ * In memory chunks of all buffers are also bounded by a shared total limit, a buffer
+ * whose next chunk does not fit the total spills to temp file regardless of its own limit.
+ * Written bytes can be read back and overwritten at any position.
+ * {@link #close()} only ends writing, call {@link #dispose()} to release memory and
+ * delete the temp file.
+ * */
+public class SpillBuffer extends OutputStream {
+    private final long memoryLimit;
+    private byte[][] chunks;
+    private long[] chunkOffsets;
+    private int chunkCount;
+    private long size;
+    private long reserved;
+    private final byte[] singleByte = new byte[1];
+    private File spillFile;
+    private FileChannel spillChannel;
+
+    public SpillBuffer(long memoryLimit){
+        if(memoryLimit < 0){
+            throw new IllegalArgumentException("Negative memory limit: " + memoryLimit);
+        }
+        this.memoryLimit = memoryLimit;
+        this.chunks = new byte[4][];
+        this.chunkOffsets = new long[4];
+    }
+    public SpillBuffer(){
+        this(getDefaultMemoryLimit());
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+    public synchronized long size() {
+        return size;
+    }
+    public synchronized boolean isSpilled() {
+        return spillChannel != null;
+    }
+
+    @Override
+    public synchronized void write(int b) throws IOException {
+        byte[] singleByte = this.singleByte;
+        singleByte[0] = (byte) b;
+        write(singleByte, 0, 1);
+    }
+    @Override
+    public synchronized void write(byte[] b, int off, int len) throws IOException {
+        if(off < 0 || len < 0 || off + len > b.length){
+            throw new IndexOutOfBoundsException("offset = " + off + ", length = " + len);
+        }
+        if(len == 0){
+            return;
+        }
+        if(spillChannel == null && size + len > memoryLimit){
+            spill();
+        }
+        while (len > 0){
+            FileChannel channel = this.spillChannel;
+            if(channel != null){
+                writeFully(channel, ByteBuffer.wrap(b, off, len), size);
+                size += len;
+                return;
+            }
+            int index = chunkCount - 1;
+            int position = 0;
+            if(index >= 0){
+                position = (int) (size - chunkOffsets[index]);
+            }
+            if(index < 0 || position == chunks[index].length){
+                index = addChunk(len);
+                if(index < 0){
+                    spill();
+                    continue;
+                }
+                position = 0;
+            }
+            byte[] chunk = chunks[index];
+            int count = Math.min(len, chunk.length - position);
+            System.arraycopy(b, off, chunk, position, count);
+            off += count;
+            len -= count;
+            size += count;
+        }
+    }
+    public void write(InputStream inputStream) throws IOException {
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer, 0, buffer.length)) >= 0){
+            write(buffer, 0, read);
+        }
+        inputStream.close();
+    }
+    /**
+     * Returns number of bytes read or -1 if position is at or beyond end
+     * */
+    public synchronized int read(long position, byte[] b, int off, int len) throws IOException {
+        if(position < 0 || len < 0){
+            throw new IndexOutOfBoundsException("position = " + position + ", length = " + len);
+        }
+        if(position >= size){
+            return -1;
+        }
+        len = (int) Math.min(len, size - position);
+        FileChannel channel = this.spillChannel;
+        if(channel != null){
+            readFully(channel, ByteBuffer.wrap(b, off, len), position);
+            return len;
+        }
+        copyChunks(position, b, off, len, false);
+        return len;
+    }
+    public synchronized void overwrite(long position, byte[] b, int off, int len) throws IOException {
+        if(position < 0 || len < 0 || position + len > size){
+            throw new IndexOutOfBoundsException("position = " + position
+                    + ", length = " + len + ", size = " + size);
+        }
+        FileChannel channel = this.spillChannel;
+        if(channel != null){
+            writeFully(channel, ByteBuffer.wrap(b, off, len), position);
+            return;
+        }
+        copyChunks(position, b, off, len, true);
+    }
+    public void writeTo(OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(size(), MAX_CHUNK_SIZE)];
+        long position = 0;
+        int read;
+        while ((read = read(position, buffer, 0, buffer.length)) > 0){
+            outputStream.write(buffer, 0, read);
+            position += read;
+        }
+    }
+    public InputStream openStream() {
+        return new InputStream() {
+            private long position;
+            private long mark;
+            private final byte[] bytes = new byte[1];
+            @Override
+            public int read() throws IOException {
+                byte[] bytes = this.bytes;
+                if(read(bytes, 0, 1) < 0){
+                    return -1;
+                }
+                return bytes[0] & 0xff;
+            }
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if(len == 0){
+                    return 0;
+                }
+                int read = SpillBuffer.this.read(position, b, off, len);
+                if(read > 0){
+                    position += read;
+                }
+                return read;
+            }
+            @Override
+            public long skip(long n) {
+                long available = size() - position;
+                n = Math.max(0, Math.min(n, available));
+                position += n;
+                return n;
+            }
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, size() - position);
+            }
+            @Override
+            public boolean markSupported() {
+                return true;
+            }
+            @Override
+            public synchronized void mark(int readLimit) {
+                mark = position;
+            }
+            @Override
+            public synchronized void reset() {
+                position = mark;
+            }
+        };
+    }
+    public byte[] toByteArray() throws IOException {
+        long size = size();
+        if(size > Integer.MAX_VALUE - 8){
+            throw new IOException("Too large for byte array: " + size);
+        }
+        byte[] bytes = new byte[(int) size];
+        read(0, bytes, 0, bytes.length);
+        return bytes;
+    }
+    /**
+     * Ends writing, content remains readable until {@link #dispose()}
+     * */
+    @Override
+    public void close() {
+    }
+    public synchronized void dispose() {
+        this.chunks = new byte[4][];
+        this.chunkOffsets = new long[4];
+        this.chunkCount = 0;
+        this.size = 0;
+        releaseMemory();
+        closeSpill();
+    }
+
+    /**
+     * Returns index of the added chunk or -1 if the shared total memory limit is reached
+     * */
+    private int addChunk(int required) {
+        int count = this.chunkCount;
+        if(count == chunks.length){
+            byte[][] chunks = new byte[count * 2][];
+            long[] offsets = new long[count * 2];
+            System.arraycopy(this.chunks, 0, chunks, 0, count);
+            System.arraycopy(this.chunkOffsets, 0, offsets, 0, count);
+            this.chunks = chunks;
+            this.chunkOffsets = offsets;
+        }
+        int length = MIN_CHUNK_SIZE;
+        if(count > 0){
+            length = Math.min(MAX_CHUNK_SIZE, chunks[count - 1].length * 2);
+        }
+        if(length < required){
+            length = Math.min(MAX_CHUNK_SIZE, Math.max(length, required));
+        }
+        long remaining = memoryLimit - size;
+        if(length > remaining){
+            length = (int) Math.max(1, remaining);
+        }
+        if(!reserveMemory(length)){
+            return -1;
+        }
+        this.reserved += length;
+        chunks[count] = new byte[length];
+        chunkOffsets[count] = size;
+        this.chunkCount = count + 1;
+        return count;
+    }
+    private void copyChunks(long position, byte[] b, int off, int len, boolean overwrite) {
+        int index = chunkIndexOf(position);
+        while (len > 0){
+            byte[] chunk = chunks[index];
+            int chunkPosition = (int) (position - chunkOffsets[index]);
+            int count = Math.min(len, chunk.length - chunkPosition);
+            if(overwrite){
+                System.arraycopy(b, off, chunk, chunkPosition, count);
+            }else {
+                System.arraycopy(chunk, chunkPosition, b, off, count);
+            }
+            position += count;
+            off += count;
+            len -= count;
+            index ++;
+        }
+    }
+    private int chunkIndexOf(long position) {
+        long[] offsets = this.chunkOffsets;
+        int low = 0;
+        int high = chunkCount - 1;
+        while (low < high){
+            int mid = (low + high + 1) >>> 1;
+            if(offsets[mid] <= position){
+                low = mid;
+            }else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+    private void spill() throws IOException {
+        File file = File.createTempFile("spill", ".bin", FileUtil.getTempDir());
+        FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+        long position = 0;
+        for(int i = 0; i < chunkCount; i++){
+            byte[] chunk = chunks[i];
+            int length = (int) Math.min(chunk.length, size - position);
+            writeFully(channel, ByteBuffer.wrap(chunk, 0, length), position);
+            position += length;
+        }
+        this.chunks = new byte[4][];
+        this.chunkOffsets = new long[4];
+        this.chunkCount = 0;
+        releaseMemory();
+        this.spillFile = file;
+        this.spillChannel = channel;
+    }
+    private void closeSpill() {
+        FileChannel channel = this.spillChannel;
+        if(channel == null){
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        spillFile.delete();
+        this.spillChannel = null;
+        this.spillFile = null;
+    }
+    private void releaseMemory() {
+        long reserved = this.reserved;
+        if(reserved != 0){
+            this.reserved = 0;
+            TOTAL_MEMORY_USED.addAndGet(-reserved);
+        }
+    }
+    private static boolean reserveMemory(long length) {
+        while (true){
+            long used = TOTAL_MEMORY_USED.get();
+            long update = used + length;
+            if(update > sTotalMemoryLimit){
+                return false;
+            }
+            if(TOTAL_MEMORY_USED.compareAndSet(used, update)){
+                return true;
+            }
+        }
+    }
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            position += channel.write(buffer, position);
+        }
+    }
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()){
+            int read = channel.read(buffer, position);
+            if(read < 0){
+                throw new EOFException("Spill file ended at " + position);
+            }
+            position += read;
+        }
+    }
+
+    public static long getDefaultMemoryLimit() {
+        return sDefaultMemoryLimit;
+    }
+    /**
+     * Sets memory limit of each buffer created after this call, default is 256MB or the
+     * value of system property "reandroid.buffer.memory.limit" in bytes
+     * */
+    public static void setDefaultMemoryLimit(long memoryLimit) {
+        if(memoryLimit < 0){
+            throw new IllegalArgumentException("Negative memory limit: " + memoryLimit);
+        }
+        sDefaultMemoryLimit = memoryLimit;
+    }
+    public static long getTotalMemoryLimit() {
+        return sTotalMemoryLimit;
+    }
+    /**
+     * Sets the limit of in memory chunks shared by all buffers, default is 512MB or the
+     * value of system property "reandroid.buffer.memory.total" in bytes
+     * */
+    public static void setTotalMemoryLimit(long totalMemoryLimit) {
+        if(totalMemoryLimit < 0){
+            throw new IllegalArgumentException("Negative memory limit: " + totalMemoryLimit);
+        }
+        sTotalMemoryLimit = totalMemoryLimit;
+    }
+    /**
+     * Returns bytes held in memory chunks by all buffers not yet disposed or spilled
+     * */
+    public static long getTotalMemoryUsed() {
+        return TOTAL_MEMORY_USED.get();
+    }
+
+    private static final int MIN_CHUNK_SIZE = 4096;
+    private static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    private static volatile long sDefaultMemoryLimit =
+            Long.getLong("reandroid.buffer.memory.limit", 256L * 1024 * 1024);
+    private static volatile long sTotalMemoryLimit =
+            Long.getLong("reandroid.buffer.memory.total", 512L * 1024 * 1024);
+    private static final AtomicLong TOTAL_MEMORY_USED = new AtomicLong();
+}
@@ -26,6 +26,7 @@ import com.reandroid.utils.collection.IterableIterator;
 import com.reandroid.utils.io.FileUtil;
 
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.List;
 import java.util.function.Predicate;
@@ -482,6 +483,9 @@ public class DexFile implements Closeable, DexClassRepository, Iterable<DexLayou
     public static DexFile read(InputStream inputStream, Predicate<SectionType<?>> filter) throws IOException {
         return read(new BlockReader(inputStream), filter);
     }
+    public static DexFile read(ByteBuffer byteBuffer, Predicate<SectionType<?>> filter) throws IOException {
+        return read(new BlockReader(byteBuffer), filter);
+    }
     public static DexFile read(BlockReader reader, Predicate<SectionType<?>> filter) throws IOException {
         DexFile dexFile = new DexFile(new DexContainerBlock());
         dexFile.readBytes(reader, filter);
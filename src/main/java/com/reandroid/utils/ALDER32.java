@@ -15,46 +15,39 @@
  */
 package com.reandroid.utils;
 
-public class ALDER32 extends Checksum {
+import java.util.zip.Adler32;
 
-    private static final int MOD_ADLER = 0xfff1;
+/**
+ * Delegates to {@link Adler32}, which is backed by native zlib or JVM intrinsics
+ * */
+public class ALDER32 extends Checksum {
 
-    private int a;
-    private int b;
+    private final Adler32 adler32;
 
     public ALDER32() {
         super();
-        this.a = 1;
-        this.b = 0;
+        this.adler32 = new Adler32();
     }
 
+    @Override
+    public void update(byte data) {
+        this.adler32.update(data);
+    }
     @Override
     public void update(byte[] data, int offset, int length) {
         if (length != 0) {
-            int mod = MOD_ADLER;
-            int a = this.a;
-            int b = this.b;
-            int end = offset + length;
-            for (int i = offset; i < end; i++) {
-                int v = data[i] & 0xFF;
-                a = (a + v) % mod;
-                b = (b + a) % mod;
-            }
-            this.a = a;
-            this.b = b;
+            this.adler32.update(data, offset, length);
         }
     }
 
     @Override
     public long getValue() {
-        int i = (this.b << 16) | this.a;
-        return (long) i & 0xffffffffL;
+        return adler32.getValue();
     }
 
     @Override
     public void reset() {
-        this.a = 1;
-        this.b = 0;
+        this.adler32.reset();
     }
 
     @Override
@@ -15,39 +15,25 @@
  */
 package com.reandroid.utils;
 
-// implemented from http://www.libpng.org/pub/png/spec/1.2/PNG-CRCAppendix.html
+import java.util.zip.CRC32;
 
+/**
+ * Delegates to {@link CRC32}, which is backed by native zlib or JVM intrinsics and thus
+ * several times faster than a table lookup per byte.
+ * */
 public class Crc32 extends Checksum {
 
-    private static final long[] CRC_TABLE;
-
-    static {
-        long[] table = new long[256];
-        CRC_TABLE = table;
-        for (int i = 0; i < 256; i++) {
-            long c = i;
-            for (int j = 0; j < 8; j++) {
-                if ((c & 1) == 1) {
-                    c = 0xedb88320L ^ (c >> 1);
-                } else {
-                    c = c >> 1;
-                }
-            }
-            table[i] = c;
-        }
-    }
-
-    private long mCrc;
+    private final CRC32 crc32;
     private long mLength;
 
     public Crc32() {
         super();
-        this.mCrc = 0xffffffffL;
+        this.crc32 = new CRC32();
     }
 
     @Override
     public long getValue() {
-        return mCrc ^ 0xffffffffL;
+        return crc32.getValue();
     }
 
     public long getLength() {
@@ -56,20 +42,18 @@ public class Crc32 extends Checksum {
 
     @Override
     public void reset() {
-        this.mCrc = 0xffffffffL;
+        this.crc32.reset();
         this.mLength = 0;
     }
 
+    @Override
+    public void update(byte data) {
+        this.crc32.update(data);
+        this.mLength ++;
+    }
     @Override
     public void update(byte[] data, int offset, int length) {
-        long c = mCrc;
-        int end = offset + length;
-        long[] table = CRC_TABLE;
-        for (int i = offset; i < end; i++) {
-            int b = data[i] & 0xff;
-            c = table[(int)((c ^ b) & 0xff)] ^ (c >> 8);
-        }
-        this.mCrc = c;
+        this.crc32.update(data, offset, length);
         this.mLength += length;
     }
 }
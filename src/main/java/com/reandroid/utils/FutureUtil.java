@@ -0,0 +1,81 @@
+/*
+ *  Copyright (C) 2022 github.com/REAndroid
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.reandroid.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+public class FutureUtil {
+
+    /**
+     * Waits for the given task and returns its result. A failure of the task is rethrown
+     * as it is if it is IOException, RuntimeException or Error, otherwise wrapped
+     * in IOException. Interruption restores the interrupt flag and throws
+     * {@link InterruptedIOException}.
+     * */
+    public static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+    /**
+     * Waits for all tasks in order, each awaited element is set to null thus
+     * {@link #cancelAll(Future[])} cancels the remaining ones only
+     * */
+    public static void awaitAll(Future<?>[] futures) throws IOException {
+        for(int i = 0; i < futures.length; i++){
+            Future<?> future = futures[i];
+            if(future != null){
+                await(future);
+                futures[i] = null;
+            }
+        }
+    }
+    /**
+     * Cancels tasks not yet started, running tasks are not interrupted
+     * */
+    public static void cancelAll(Future<?>[] futures){
+        for(Future<?> future : futures){
+            if(future != null){
+                future.cancel(false);
+            }
+        }
+    }
+    public static void cancelAll(Iterable<? extends Future<?>> futures){
+        for(Future<?> future : futures){
+            if(future != null){
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -15,6 +15,14 @@
  */
 package com.reandroid.utils;
 
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Delegates to platform "SHA-1" {@link MessageDigest} (intrinsified on most JVMs), the
+ * pure java implementation is used only when the platform has no such provider.
+ * */
 public class SHA1 extends ByteDigest {
 
     private static final int round1_kt = 0x5A827999;
@@ -28,9 +36,21 @@ public class SHA1 extends ByteDigest {
     private final byte[] buffer;
     private int bufferOffset;
     private long bytesProcessed;
+    private final MessageDigest messageDigest;
 
     public SHA1() {
+        this(newMessageDigest());
+    }
+    SHA1(MessageDigest messageDigest) {
         super();
+        this.messageDigest = messageDigest;
+        if (messageDigest != null) {
+            this.padding = null;
+            this.buffer = null;
+            this.WORD = null;
+            this.state = null;
+            return;
+        }
         this.padding = new byte[136];
         this.buffer = new byte[64];
         this.WORD = new int[80];
@@ -41,6 +61,11 @@ public class SHA1 extends ByteDigest {
 
     @Override
     public void update(byte[] bytes, int offset, int length) {
+        MessageDigest messageDigest = this.messageDigest;
+        if (messageDigest != null) {
+            messageDigest.update(bytes, offset, length);
+            return;
+        }
         if (this.bytesProcessed < 0L) {
             this.reset();
         }
@@ -77,6 +102,11 @@ public class SHA1 extends ByteDigest {
     }
     @Override
     public void reset() {
+        MessageDigest messageDigest = this.messageDigest;
+        if (messageDigest != null) {
+            messageDigest.reset();
+            return;
+        }
         if (this.bytesProcessed != 0L) {
             this.resetState();
             fillZero(this.WORD);
@@ -87,6 +117,15 @@ public class SHA1 extends ByteDigest {
     }
     @Override
     public void digest(byte[] out, int offset) {
+        MessageDigest messageDigest = this.messageDigest;
+        if (messageDigest != null) {
+            try {
+                messageDigest.digest(out, offset, getDigestLength());
+            } catch (DigestException ex) {
+                throw new IllegalArgumentException(ex.getMessage(), ex);
+            }
+            return;
+        }
         if (this.bytesProcessed < 0L) {
             this.reset();
         }
@@ -194,4 +233,12 @@ public class SHA1 extends ByteDigest {
             i ++;
         }
     }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ignored) {
+            return null;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+package com.reandroid.apk;
+
+import com.reandroid.TestUtils;
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.InputSource;
+import com.reandroid.json.JSONArray;
+import com.reandroid.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class CompressionPolicyTest {
+
+    @Test
+    public void testDecisions() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        Random random = new Random(7);
+        byte[] noise = new byte[100 * 1024];
+        random.nextBytes(noise);
+        byte[] png = new byte[20000];
+        random.nextBytes(png);
+        System.arraycopy(new byte[]{(byte) 137, 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a}, 0, png, 0, 8);
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 2000; i++){
+            builder.append("line ").append(i).append(" of some compressible text\n");
+        }
+        byte[] text = builder.toString().getBytes();
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(zipBytes);
+        zipOutputStream.putNextEntry(new ZipEntry("a.txt"));
+        zipOutputStream.write(text);
+        zipOutputStream.close();
+
+        apkModule.add(deflated("assets/noise.bin", noise));
+        apkModule.add(deflated("res/raw/image.dat", png));
+        apkModule.add(deflated("assets/text.txt", text));
+        apkModule.add(deflated("assets/nested.jar", zipBytes.toByteArray()));
+        apkModule.add(deflated("assets/tiny.bin", new byte[]{1, 2, 3}));
+
+        CompressionPolicy policy = apkModule.uncompressIncompressibleFiles();
+        TestUtils.log(policy.toJson().toString(2));
+
+        assertDecision(policy, "assets/noise.bin", true, CompressionPolicy.REASON_DEFLATE);
+        assertDecision(policy, "res/raw/image.dat", true, CompressionPolicy.REASON_MAGIC + "png");
+        assertDecision(policy, "assets/text.txt", false, CompressionPolicy.REASON_ENTROPY);
+        assertDecision(policy, "assets/nested.jar", true, CompressionPolicy.REASON_MAGIC + "zip");
+        Assert.assertNull(findDecision(policy, "assets/tiny.bin"));
+        Assert.assertEquals(3, policy.countStored());
+
+        UncompressedFiles uncompressedFiles = apkModule.getUncompressedFiles();
+        Assert.assertTrue(uncompressedFiles.containsPath("assets/noise.bin"));
+        Assert.assertFalse(uncompressedFiles.containsPath("assets/text.txt"));
+
+        File file = new File(TestUtils.getTempDir(), "compression_policy.apk");
+        apkModule.writeApk(file);
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        Assert.assertEquals(Archive.STORED, archiveFile.getEntry("assets/noise.bin").getMethod());
+        Assert.assertEquals(Archive.STORED, archiveFile.getEntry("assets/nested.jar").getMethod());
+        Assert.assertEquals(Archive.DEFLATED, archiveFile.getEntry("assets/text.txt").getMethod());
+        Assert.assertEquals(Archive.DEFLATED, archiveFile.getEntry("assets/tiny.bin").getMethod());
+        archiveFile.close();
+
+        JSONArray decisions = policy.toJson().getJSONArray("decisions");
+        Assert.assertEquals(policy.getDecisions().size(), decisions.length());
+    }
+    @Test
+    public void testEntropy() {
+        Assert.assertEquals(0.0, CompressionPolicy.entropy(new byte[100]), 0.0001);
+        byte[] bytes = new byte[256 * 4];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = (byte) i;
+        }
+        Assert.assertEquals(8.0, CompressionPolicy.entropy(bytes), 0.0001);
+        CompressionPolicy policy = new CompressionPolicy();
+        policy.setMaxRatio(0.5);
+        JSONObject json = policy.toJson();
+        CompressionPolicy restored = new CompressionPolicy();
+        restored.fromJson(json);
+        Assert.assertEquals(0.5, restored.getMaxRatio(), 0.0);
+    }
+    private static void assertDecision(CompressionPolicy policy, String path, boolean stored, String reason){
+        CompressionPolicy.Decision decision = findDecision(policy, path);
+        Assert.assertNotNull(path, decision);
+        Assert.assertEquals(path, stored, decision.isStored());
+        Assert.assertEquals(path, reason, decision.getReason());
+    }
+    private static CompressionPolicy.Decision findDecision(CompressionPolicy policy, String path){
+        for(CompressionPolicy.Decision decision : policy.getDecisions()){
+            if(path.equals(decision.getPath())){
+                return decision;
+            }
+        }
+        return null;
+    }
+    private static InputSource deflated(String path, byte[] bytes){
+        ByteInputSource inputSource = new ByteInputSource(bytes, path);
+        inputSource.setMethod(Archive.DEFLATED);
+        return inputSource;
+    }
+}
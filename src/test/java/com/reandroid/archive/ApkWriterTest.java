@@ -1,14 +1,47 @@
 package com.reandroid.archive;
 
+import com.reandroid.TestUtils;
 import com.reandroid.apk.ApkModule;
 import com.reandroid.apk.ApkModuleTest;
 import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.archive.writer.ApkByteWriter;
+import com.reandroid.archive.block.CentralEntryHeader;
+import com.reandroid.archive.block.DataDescriptor;
+import com.reandroid.archive.block.LocalFileHeader;
+import com.reandroid.archive.writer.ApkFileWriter;
+import com.reandroid.archive.writer.ApkUpdateWriter;
+import com.reandroid.archive.writer.HeaderInterceptor;
+import com.reandroid.archive.writer.DuplicateReport;
+import com.reandroid.common.SpillBuffer;
+import com.reandroid.utils.io.IOUtil;
 import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class ApkWriterTest {
     @Test
@@ -40,6 +73,460 @@ public class ApkWriterTest {
         InputSource inputSource = apkModule2.getInputSource("classes.dex");
         Assert.assertNotNull("Missing classes.dex", inputSource);
     }
+    @Test
+    public void testParallelWriterOutputIdentical() throws IOException {
+        ApkModule apkModule = getApkModule();
+        byte[] serial = apkModule.writeApkBytes();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            ApkByteWriter writer = apkModule.createApkByteWriter();
+            writer.setExecutorService(executorService);
+            writer.write();
+            Assert.assertArrayEquals("Parallel output differs", serial, writer.toByteArray());
+        }finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testIncrementalUpdate() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "incremental_update.apk");
+        getApkModule().writeApk(file);
+        long originalLength = file.length();
+
+        ApkModule apkModule = ApkModule.loadApkFile(file);
+        InputSource removed = apkModule.removeInputSource("classes.dex");
+        Assert.assertNotNull("Missing classes.dex", removed);
+        byte[] added = new byte[5000];
+        for(int i = 0; i < added.length; i++){
+            added[i] = (byte) (i % 7);
+        }
+        apkModule.add(new ByteInputSource(added, "assets/added.bin"));
+        Map<String, byte[]> expected = readAll(apkModule);
+        apkModule.updateApkFile();
+        apkModule.close();
+
+        ApkModule updated = ApkModule.loadApkFile(file);
+        Map<String, byte[]> actual = readAll(updated);
+        updated.close();
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for(Map.Entry<String, byte[]> entry : expected.entrySet()){
+            Assert.assertArrayEquals("Content differs: " + entry.getKey(),
+                    entry.getValue(), actual.get(entry.getKey()));
+        }
+        TestUtils.log("Incremental update: " + originalLength + " -> " + file.length());
+    }
+    @Test
+    public void testUpdateClearsShortLeftover() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "update_leftover.zip");
+        byte[] removed = new byte[400];
+        Arrays.fill(removed, (byte) 'Q');
+        byte[] kept = new byte[100];
+        Arrays.fill(kept, (byte) 'K');
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file));
+        putStored(zipOutputStream, "assets/old.bin", removed);
+        putStored(zipOutputStream, "assets/keep.bin", kept);
+        zipOutputStream.close();
+
+        // fits the space of the removed entry leaving 15 bytes, too short for any entry
+        byte[] added = new byte[385];
+        Arrays.fill(added, (byte) 'N');
+        ByteInputSource addedSource = new ByteInputSource(added, "assets/new.bin");
+        addedSource.setMethod(Archive.STORED);
+
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        InputSource[] sources = new InputSource[]{
+                archiveFile.getEntrySource("assets/keep.bin"), addedSource};
+        ApkUpdateWriter writer = new ApkUpdateWriter(archiveFile, sources);
+        writer.setZipAligner(null);
+        List<String> centralNames = new ArrayList<>();
+        writer.setHeaderInterceptor(new HeaderInterceptor() {
+            @Override
+            public void onWriteLfh(LocalFileHeader localFileHeader) {
+            }
+            @Override
+            public void onWriteDD(DataDescriptor dataDescriptor) {
+            }
+            @Override
+            public void onWriteCeh(CentralEntryHeader header) {
+                centralNames.add(header.getFileName());
+            }
+        });
+        writer.write();
+        archiveFile.close();
+        Assert.assertEquals(Arrays.asList("assets/keep.bin", "assets/new.bin"), centralNames);
+
+        byte[] bytes = IOUtil.readFully(file);
+        byte[] leftover = new byte[8];
+        Arrays.fill(leftover, (byte) 'Q');
+        Assert.assertEquals("Removed content remains", -1, indexOf(bytes, leftover));
+        archiveFile = new ArchiveFile(file);
+        Map<String, byte[]> actual = new HashMap<>();
+        for(InputSource inputSource : archiveFile.getInputSources()){
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            inputSource.write(outputStream);
+            actual.put(inputSource.getAlias(), outputStream.toByteArray());
+        }
+        archiveFile.close();
+        Assert.assertEquals(2, actual.size());
+        Assert.assertArrayEquals(kept, actual.get("assets/keep.bin"));
+        Assert.assertArrayEquals(added, actual.get("assets/new.bin"));
+    }
+    private static void putStored(ZipOutputStream zipOutputStream, String name, byte[] data) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(data.length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        zipEntry.setCrc(crc32.getValue());
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(data);
+        zipOutputStream.closeEntry();
+    }
+    private static int indexOf(byte[] bytes, byte[] search){
+        int end = bytes.length - search.length;
+        for(int i = 0; i <= end; i++){
+            int j = 0;
+            while (j < search.length && bytes[i + j] == search[j]){
+                j ++;
+            }
+            if(j == search.length){
+                return i;
+            }
+        }
+        return -1;
+    }
+    @Test
+    public void testWriteMetrics() throws IOException {
+        ApkModule apkModule = getApkModule();
+        byte[] added = new byte[50000];
+        for(int i = 0; i < added.length; i++){
+            added[i] = (byte) (i % 13);
+        }
+        ByteInputSource addedSource = new ByteInputSource(added, "assets/metrics.bin");
+        addedSource.setMethod(Archive.DEFLATED);
+        apkModule.add(addedSource);
+        WriteStatistics statistics = new WriteStatistics();
+        apkModule.setWriteMetrics(statistics);
+        File file = new File(TestUtils.getTempDir(), "write_metrics.apk");
+        apkModule.writeApk(file);
+        TestUtils.log(statistics.toString());
+
+        Assert.assertEquals(apkModule.getInputSources().length, statistics.getEntries().size());
+        long bytesOut = 0;
+        for(WriteStatistics.Entry entry : statistics.getEntries()){
+            Assert.assertTrue(entry.getPath(), entry.getCompressNanos() >= 0);
+            Assert.assertTrue(entry.getPath(), entry.getCrcNanos() >= 0);
+            if(entry.getMethod() == Archive.STORED){
+                Assert.assertEquals(entry.getPath(), entry.getBytesIn(), entry.getBytesOut());
+            }
+            bytesOut += entry.getBytesOut();
+        }
+        Assert.assertEquals(bytesOut, statistics.getBytesOut());
+        WriteStatistics.Entry slowest = statistics.getSlowest(1).get(0);
+        Assert.assertEquals("assets/metrics.bin", slowest.getPath());
+        Assert.assertEquals(added.length, slowest.getBytesIn());
+        Assert.assertTrue(slowest.getRatio() < 0.1);
+        Assert.assertTrue(slowest.getCrcNanos() > 0);
+        Assert.assertTrue(statistics.getPhaseNanos(WriteMetrics.PHASE_WRITE_ENTRIES) > 0);
+        Assert.assertTrue(statistics.getPhaseNanos(WriteMetrics.PHASE_CENTRAL_DIRECTORY) > 0);
+        Assert.assertEquals(3, statistics.getSlowest(3).size());
+    }
+    @Test
+    public void testDeduplicateEntries() throws IOException {
+        byte[] expected = createDuplicatesModule().writeApkBytes();
+
+        ApkByteWriter writer = createDuplicatesModule().createApkByteWriter();
+        writer.setDeduplicateEntries(true);
+        WriteStatistics statistics = new WriteStatistics();
+        writer.setWriteMetrics(statistics);
+        writer.write();
+        Assert.assertArrayEquals("Deduplicated output differs", expected, writer.toByteArray());
+        DuplicateReport report = writer.getDuplicateReport();
+        TestUtils.log("Dedup: " + report + "\n" + report.toJson().toString(2));
+        Assert.assertEquals(2, report.getGroups().size());
+        Assert.assertEquals(3, report.countDuplicates());
+        DuplicateReport.Group group = report.getGroups().get(0);
+        Assert.assertArrayEquals(new String[]{"res/drawable-hdpi/icon.bin",
+                "res/drawable-xhdpi/icon.bin", "res/drawable-xxhdpi/icon.bin"}, group.getPaths());
+        int compressed = 0;
+        for(WriteStatistics.Entry entry : statistics.getEntries()){
+            if(entry.getPath().endsWith("icon.bin") && entry.getCompressNanos() > 0){
+                compressed ++;
+            }
+        }
+        Assert.assertEquals("Duplicates compressed more than once", 1, compressed);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            File file = new File(TestUtils.getTempDir(), "dedup_parallel.apk");
+            ApkFileWriter fileWriter = createDuplicatesModule().createApkFileWriter(file);
+            fileWriter.setDeduplicateEntries(true);
+            fileWriter.setExecutorService(executorService);
+            fileWriter.write();
+            Assert.assertArrayEquals("Parallel deduplicated output differs", expected,
+                    IOUtil.readFully(file));
+        }finally {
+            executorService.shutdown();
+        }
+    }
+    @Test
+    public void testDeduplicateHashesSameSizeOnly() throws IOException {
+        ApkModule apkModule = createDuplicatesModule();
+        int[] openCount = new int[1];
+        ByteInputSource unique = new ByteInputSource(new byte[12345], "assets/unique_size.bin"){
+            @Override
+            public InputStream openStream() throws IOException {
+                openCount[0] ++;
+                return super.openStream();
+            }
+        };
+        unique.setMethod(Archive.DEFLATED);
+        apkModule.add(unique);
+        ApkByteWriter writer = apkModule.createApkByteWriter();
+        writer.setDeduplicateEntries(true);
+        writer.write();
+        writer.getBuffer().dispose();
+        Assert.assertEquals("Unique size source hashed", 0, openCount[0]);
+        Assert.assertEquals(2, writer.getDuplicateReport().getGroups().size());
+    }
+    @Test
+    public void testDeduplicateAbortDisposesPayload() throws IOException {
+        byte[] bytes = new byte[30000];
+        for(int i = 0; i < bytes.length; i++){
+            bytes[i] = (byte) (i % 31);
+        }
+        ByteInputSource first = new ByteInputSource(bytes.clone(), "assets/first.bin");
+        ByteInputSource failing = new ByteInputSource(new byte[100], "assets/failing.bin"){
+            @Override
+            public long write(OutputStream outputStream) throws IOException {
+                throw new IOException("Write failed");
+            }
+        };
+        ByteInputSource second = new ByteInputSource(bytes.clone(), "assets/second.bin");
+        first.setMethod(Archive.DEFLATED);
+        second.setMethod(Archive.DEFLATED);
+        long used = SpillBuffer.getTotalMemoryUsed();
+        ApkByteWriter writer = new ApkByteWriter(new InputSource[]{first, failing, second});
+        writer.setDeduplicateEntries(true);
+        try{
+            writer.write();
+            Assert.fail("Expecting IOException");
+        }catch (IOException ex){
+            Assert.assertEquals("Write failed", ex.getMessage());
+        }
+        writer.getBuffer().dispose();
+        Assert.assertEquals("Shared payload not disposed", used, SpillBuffer.getTotalMemoryUsed());
+    }
+    @Test
+    public void testParallelAbortDisposesPreparedBuffers() throws Exception {
+        int count = 8;
+        CountDownLatch prepared = new CountDownLatch(count);
+        InputSource[] sources = new InputSource[count + 1];
+        sources[0] = new ByteInputSource(new byte[100], "assets/failing.bin"){
+            @Override
+            public long write(OutputStream outputStream) throws IOException {
+                try{
+                    prepared.await(10, TimeUnit.SECONDS);
+                }catch (InterruptedException ignored){
+                }
+                throw new IOException("Write failed");
+            }
+            @Override
+            public boolean isConcurrentWriteSafe() {
+                return false;
+            }
+        };
+        for(int i = 1; i <= count; i++){
+            byte[] bytes = new byte[200000];
+            new Random(i).nextBytes(bytes);
+            ByteInputSource inputSource = new ByteInputSource(bytes, "assets/large_" + i + ".bin"){
+                @Override
+                public long write(OutputStream outputStream) throws IOException {
+                    long result = super.write(outputStream);
+                    prepared.countDown();
+                    return result;
+                }
+            };
+            inputSource.setMethod(Archive.DEFLATED);
+            sources[i] = inputSource;
+        }
+        long used = SpillBuffer.getTotalMemoryUsed();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        ApkByteWriter writer = new ApkByteWriter(sources);
+        writer.setExecutorService(executorService);
+        try{
+            writer.write();
+            Assert.fail("Expecting IOException");
+        }catch (IOException ex){
+            Assert.assertEquals("Write failed", ex.getMessage());
+        }finally {
+            executorService.shutdown();
+            executorService.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        writer.getBuffer().dispose();
+        Assert.assertEquals("Prepared buffers not disposed", used, SpillBuffer.getTotalMemoryUsed());
+    }
+    @Test
+    public void testParallelFileWriterOutputIdentical() throws IOException {
+        File serialFile = new File(TestUtils.getTempDir(), "serial_file_writer.apk");
+        createUnsafeSourceModule(new ArrayList<>()).writeApk(serialFile);
+        byte[] expected = IOUtil.readFully(serialFile);
+
+        List<Thread> writerThreads = new ArrayList<>();
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            File file = new File(TestUtils.getTempDir(), "parallel_file_writer.apk");
+            ApkFileWriter fileWriter = createUnsafeSourceModule(writerThreads)
+                    .createApkFileWriter(file);
+            fileWriter.setExecutorService(executorService);
+            fileWriter.write();
+            Assert.assertArrayEquals("Parallel file output differs", expected,
+                    IOUtil.readFully(file));
+        }finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(3, writerThreads.size());
+        for(Thread thread : writerThreads){
+            Assert.assertSame(Thread.currentThread(), thread);
+        }
+    }
+    @Test
+    public void testBlockSourceSinglePass() throws IOException {
+        ApkModule apkModule = getApkModule();
+        TableBlock tableBlock = apkModule.getTableBlock();
+        int[] serializeCount = new int[1];
+        BlockInputSource<TableBlock> inputSource = new BlockInputSource<TableBlock>(
+                "res/raw/table_copy.bin", tableBlock){
+            @Override
+            public TableBlock getBlock() {
+                serializeCount[0] ++;
+                return super.getBlock();
+            }
+        };
+        apkModule.add(inputSource);
+        ApkByteWriter writer = apkModule.createApkByteWriter();
+        writer.write();
+        Assert.assertEquals("Block serialized more than once", 1, serializeCount[0]);
+
+        // the block is edited after written, crc and length must follow
+        tableBlock.pickOne().setName(tableBlock.pickOne().getName() + ".edited");
+        byte[] expected = tableBlock.getBytes();
+        CRC32 crc32 = new CRC32();
+        crc32.update(expected);
+        Assert.assertEquals(crc32.getValue(), inputSource.getCrc());
+        Assert.assertEquals(expected.length, inputSource.getLength());
+    }
+    @Test
+    public void testInPlaceHeaderPatching() throws IOException {
+        ApkModule apkModule = createDuplicatesModule();
+        Map<String, byte[]> expected = readAll(apkModule);
+        byte[] bytes = apkModule.writeApkBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        int offset = 0;
+        int count = 0;
+        while(offset + 30 <= bytes.length && buffer.getInt(offset) == 0x04034b50){
+            int flags = buffer.getShort(offset + 6) & 0xffff;
+            int method = buffer.getShort(offset + 8) & 0xffff;
+            long crc = buffer.getInt(offset + 14) & 0xffffffffL;
+            int compressedSize = buffer.getInt(offset + 18);
+            int size = buffer.getInt(offset + 22);
+            int nameLength = buffer.getShort(offset + 26) & 0xffff;
+            int extraLength = buffer.getShort(offset + 28) & 0xffff;
+            String name = new String(bytes, offset + 30, nameLength, StandardCharsets.UTF_8);
+            int dataOffset = offset + 30 + nameLength + extraLength;
+            Assert.assertEquals("Unexpected data descriptor: " + name, 0, flags & 0x08);
+            byte[] content = expected.get(name);
+            Assert.assertNotNull("Unexpected entry: " + name, content);
+            Assert.assertEquals("Size not patched: " + name, content.length, size);
+            CRC32 crc32 = new CRC32();
+            crc32.update(content);
+            Assert.assertEquals("Crc not patched: " + name, crc32.getValue(), crc);
+            byte[] data = new byte[compressedSize];
+            System.arraycopy(bytes, dataOffset, data, 0, compressedSize);
+            if(method == Archive.DEFLATED){
+                data = inflate(data, size);
+            }
+            Assert.assertArrayEquals("Content differs: " + name, content, data);
+            offset = dataOffset + compressedSize;
+            count ++;
+        }
+        Assert.assertEquals(expected.size(), count);
+    }
+    private static byte[] inflate(byte[] data, int size) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try{
+            inflater.setInput(data);
+            byte[] result = new byte[size];
+            int length = inflater.inflate(result);
+            Assert.assertEquals(size, length);
+            return result;
+        }catch (DataFormatException ex){
+            throw new IOException(ex);
+        }finally {
+            inflater.end();
+        }
+    }
+    private ApkModule createUnsafeSourceModule(List<Thread> writerThreads) throws IOException {
+        ApkModule apkModule = createDuplicatesModule();
+        for(int i = 0; i < 3; i++){
+            byte[] bytes = new byte[10000 + i];
+            for(int j = 0; j < bytes.length; j++){
+                bytes[j] = (byte) (j % (7 + i));
+            }
+            ByteInputSource inputSource = new ByteInputSource(bytes, "res/raw/unsafe" + i + ".bin"){
+                @Override
+                public long write(OutputStream outputStream) throws IOException {
+                    synchronized (writerThreads){
+                        writerThreads.add(Thread.currentThread());
+                    }
+                    return super.write(outputStream);
+                }
+                @Override
+                public boolean isConcurrentWriteSafe() {
+                    return false;
+                }
+            };
+            inputSource.setMethod(Archive.DEFLATED);
+            apkModule.add(inputSource);
+        }
+        return apkModule;
+    }
+    private ApkModule createDuplicatesModule() throws IOException {
+        ApkModule apkModule = getApkModule();
+        byte[] icon = new byte[30000];
+        byte[] other = new byte[20000];
+        for(int i = 0; i < icon.length; i++){
+            icon[i] = (byte) (i % 31);
+        }
+        for(int i = 0; i < other.length; i++){
+            other[i] = (byte) (i % 17);
+        }
+        String[] densities = new String[]{"hdpi", "xhdpi", "xxhdpi"};
+        for(String density : densities){
+            ByteInputSource inputSource = new ByteInputSource(icon.clone(),
+                    "res/drawable-" + density + "/icon.bin");
+            inputSource.setMethod(Archive.DEFLATED);
+            apkModule.add(inputSource);
+        }
+        for(int i = 0; i < 2; i++){
+            ByteInputSource inputSource = new ByteInputSource(other.clone(), "assets/other" + i + ".bin");
+            inputSource.setMethod(Archive.DEFLATED);
+            apkModule.add(inputSource);
+        }
+        ByteInputSource unique = new ByteInputSource(new byte[]{1, 2, 3}, "assets/unique.bin");
+        apkModule.add(unique);
+        return apkModule;
+    }
+    private static Map<String, byte[]> readAll(ApkModule apkModule) throws IOException {
+        Map<String, byte[]> results = new HashMap<>();
+        for(InputSource inputSource : apkModule.getInputSources()){
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            inputSource.write(outputStream);
+            results.put(inputSource.getAlias(), outputStream.toByteArray());
+        }
+        return results;
+    }
 
     private ApkModule getApkModule() throws IOException {
         ApkModuleTest apkModuleTest = new ApkModuleTest();
@@ -0,0 +1,80 @@
+package com.reandroid.archive;
+
+import com.reandroid.archive.writer.ApkByteWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+public class ArchiveEntryIndexTest {
+
+    @Test
+    public void testIndexLookup() throws IOException {
+        int count = 2000;
+        ArchiveBytes archive = createArchive(count);
+        List<String> paths = new ArrayList<>(count);
+        for(int i = 0; i < count; i++){
+            paths.add(toPath(i));
+        }
+        for(String path : paths){
+            InputSource inputSource = archive.getEntrySource(path);
+            Assert.assertNotNull("Missing entry: " + path, inputSource);
+            Assert.assertEquals(path, inputSource.getAlias());
+            Assert.assertSame(findLinear(archive, path), archive.getEntry(path));
+        }
+        Assert.assertNull(archive.getEntrySource("res/missing.xml"));
+        Assert.assertNull(archive.getEntry(null));
+        Assert.assertEquals(count, archive.getEntrySources(paths).size());
+    }
+    @Test
+    public void testIndexLookupAfterRename() throws IOException {
+        ArchiveBytes archive = createArchive(100);
+        String path = toPath(10);
+        ArchiveEntry entry = archive.getEntry(path);
+        Assert.assertNotNull(entry);
+
+        String newName = "res/raw/renamed.bin";
+        entry.setName(newName);
+        Assert.assertSame(entry, archive.getEntry(newName));
+        Assert.assertNull(archive.getEntry(path));
+
+        // rename to a name that was already indexed, first entry wins
+        ArchiveEntry other = archive.getEntry(toPath(20));
+        other.setName(toPath(30));
+        Assert.assertSame(findLinear(archive, toPath(30)), archive.getEntry(toPath(30)));
+        Assert.assertNull(archive.getEntry(toPath(20)));
+
+        // rename back
+        entry.setName(path);
+        Assert.assertSame(entry, archive.getEntry(path));
+        Assert.assertNull(archive.getEntry(newName));
+    }
+
+    private static ArchiveEntry findLinear(Archive<?> archive, String path){
+        Iterator<ArchiveEntry> iterator = archive.getFiles();
+        while (iterator.hasNext()){
+            ArchiveEntry entry = iterator.next();
+            if(path.equals(entry.getName())){
+                return entry;
+            }
+        }
+        return null;
+    }
+    private static ArchiveBytes createArchive(int count) throws IOException {
+        InputSource[] sources = new InputSource[count];
+        for(int i = 0; i < count; i++){
+            ByteInputSource inputSource = new ByteInputSource(new byte[]{(byte) i}, toPath(i));
+            inputSource.setMethod(Archive.STORED);
+            sources[i] = inputSource;
+        }
+        ApkByteWriter writer = new ApkByteWriter(sources);
+        writer.write();
+        return new ArchiveBytes(writer.toByteArray());
+    }
+    private static String toPath(int i){
+        return "res/drawable-" + (i % 7) + "/image_" + i + ".png";
+    }
+}
@@ -0,0 +1,340 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkBundle;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.io.ZipFileInput;
+import com.reandroid.archive.model.ArchiveIndex;
+import com.reandroid.archive.writer.ApkUpdateWriter;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ArchiveFileTest {
+
+    @Test
+    public void testCentralDirectoryOnlyOpen() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "central_directory_only.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+
+        ArchiveFile full = new ArchiveFile(file);
+        ArchiveFile lazy = new ArchiveFile(file, true);
+        Assert.assertEquals(full.size(), lazy.size());
+        Assert.assertNotNull(lazy.getEntrySource("classes.dex"));
+
+        List<ArchiveEntry> expectedEntries = listEntries(full);
+        List<ArchiveEntry> entries = listEntries(lazy);
+        int size = entries.size();
+        for(int i = 0; i < size; i++){
+            ArchiveEntry expected = expectedEntries.get(i);
+            ArchiveEntry entry = entries.get(i);
+            Assert.assertEquals(expected.getName(), entry.getName());
+            Assert.assertEquals(expected.getMethod(), entry.getMethod());
+            Assert.assertEquals(expected.getCrc(), entry.getCrc());
+            Assert.assertEquals(expected.getSize(), entry.getSize());
+            Assert.assertEquals(expected.getCompressedSize(), entry.getCompressedSize());
+            Assert.assertFalse("Local header loaded on metadata query: " + entry.getName(),
+                    entry.isLocalHeaderLoaded());
+        }
+        InputSource[] expectedSources = full.getInputSources();
+        InputSource[] sources = lazy.getInputSources();
+        for(int i = 0; i < size; i++){
+            Assert.assertArrayEquals(expectedSources[i].getAlias(),
+                    readBytes(expectedSources[i]), readBytes(sources[i]));
+            ArchiveEntry entry = entries.get(i);
+            Assert.assertTrue(entry.isLocalHeaderLoaded());
+            Assert.assertEquals(expectedEntries.get(i).getFileOffset(), entry.getFileOffset());
+        }
+        full.close();
+        lazy.close();
+    }
+    @Test
+    public void testOpenNested() throws IOException {
+        File dir = TestUtils.getTempDir();
+        File apk = new File(dir, "nested_inner.apk");
+        new ApkModuleTest().createApkModule().writeApk(apk);
+        byte[] apkBytes = IOUtil.readFully(apk);
+        File bundle = new File(dir, "nested_bundle.apks");
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(bundle));
+        zipOutputStream.putNextEntry(new ZipEntry("toc.pb"));
+        zipOutputStream.write(new byte[]{1, 2, 3});
+        ZipEntry stored = new ZipEntry("splits/base-master.apk");
+        stored.setMethod(ZipEntry.STORED);
+        stored.setSize(apkBytes.length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(apkBytes);
+        stored.setCrc(crc32.getValue());
+        zipOutputStream.putNextEntry(stored);
+        zipOutputStream.write(apkBytes);
+        zipOutputStream.putNextEntry(new ZipEntry("splits/base-en.apk"));
+        zipOutputStream.write(apkBytes);
+        zipOutputStream.close();
+
+        ArchiveFile expected = new ArchiveFile(apk);
+        ArchiveFile outer = new ArchiveFile(bundle);
+        ArchiveFile sliced = outer.openNested("splits/base-master.apk");
+        Assert.assertTrue(sliced.isNested());
+        ArchiveFile spilled = outer.openNested("splits/base-en.apk");
+        Assert.assertTrue(spilled.isNested());
+        for(ArchiveFile nested : new ArchiveFile[]{sliced, spilled}){
+            try{
+                new ApkUpdateWriter(nested, nested.getInputSources());
+                Assert.fail("Nested archive update not refused: " + nested.getZipInput());
+            }catch (IOException ignored){
+            }
+        }
+        ZipFileInput sliceInput = sliced.getZipInput();
+        ByteBuffer byteBuffer = ByteBuffer.allocate(64);
+        byteBuffer.position(10);
+        Assert.assertEquals(54, sliceInput.read(byteBuffer, 0));
+        Assert.assertEquals(64, byteBuffer.position());
+        byte[] head = new byte[54];
+        System.arraycopy(apkBytes, 0, head, 0, head.length);
+        Assert.assertArrayEquals(head, Arrays.copyOfRange(byteBuffer.array(), 10, 64));
+        byteBuffer.clear();
+        Assert.assertEquals(5, sliceInput.read(byteBuffer, apkBytes.length - 5));
+        Assert.assertEquals(-1, sliceInput.read(byteBuffer, apkBytes.length));
+        try{
+            sliceInput.read(byteBuffer, apkBytes.length + 1);
+            Assert.fail("Read beyond slice");
+        }catch (IOException ignored){
+        }
+        InputSource[] expectedSources = expected.getInputSources();
+        for(ArchiveFile nested : new ArchiveFile[]{sliced, spilled}){
+            InputSource[] sources = nested.getInputSources();
+            Assert.assertEquals(expectedSources.length, sources.length);
+            for(int i = 0; i < sources.length; i++){
+                Assert.assertEquals(expectedSources[i].getAlias(), sources[i].getAlias());
+                Assert.assertArrayEquals(expectedSources[i].getAlias(),
+                        readBytes(expectedSources[i]), readBytes(sources[i]));
+            }
+        }
+        File spilledFile = spilled.getZipInput().getFile();
+        sliced.close();
+        spilled.close();
+        Assert.assertFalse("Spilled file not deleted", spilledFile.exists());
+        // closing nested must not close outer
+        Assert.assertNotNull(outer.getEntrySource("toc.pb"));
+        Assert.assertEquals(3, readBytes(outer.getEntrySource("toc.pb")).length);
+        outer.close();
+        expected.close();
+
+        ApkBundle apkBundle = new ApkBundle();
+        apkBundle.loadBundleFile(bundle);
+        Assert.assertEquals(2, apkBundle.countModules());
+        ApkModule apkModule = apkBundle.getApkModule("base-master");
+        Assert.assertNotNull(apkModule);
+        Assert.assertNotNull(apkModule.getAndroidManifest());
+        Assert.assertNotNull(apkModule.getTableBlock());
+        apkBundle.close();
+    }
+    @Test
+    public void testArchiveIndex() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "archive_index.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        File indexFile = new File(file.getParentFile(), file.getName() + ArchiveIndex.EXTENSION);
+        indexFile.delete();
+
+        ArchiveFile cold = ArchiveFile.openIndexed(file);
+        Assert.assertTrue("Index not written", indexFile.isFile());
+        ArchiveFile warm = ArchiveFile.openIndexed(file);
+        List<ArchiveEntry> expectedEntries = listEntries(cold);
+        List<ArchiveEntry> entries = listEntries(warm);
+        Assert.assertEquals(expectedEntries.size(), entries.size());
+        InputSource[] expectedSources = cold.getInputSources();
+        InputSource[] sources = warm.getInputSources();
+        for(int i = 0; i < entries.size(); i++){
+            ArchiveEntry expected = expectedEntries.get(i);
+            ArchiveEntry entry = entries.get(i);
+            Assert.assertEquals(expected.getName(), entry.getName());
+            Assert.assertEquals(expected.getCrc(), entry.getCrc());
+            Assert.assertEquals(expected.getFileOffset(), entry.getFileOffset());
+            Assert.assertFalse("Local header read from indexed archive: " + entry.getName(),
+                    entry.isLocalHeaderLoaded());
+        }
+        for(int i = 0; i < sources.length; i++){
+            Assert.assertArrayEquals(expectedSources[i].getAlias(),
+                    readBytes(expectedSources[i]), readBytes(sources[i]));
+        }
+        Assert.assertFalse(entries.get(0).isLocalHeaderLoaded());
+        cold.close();
+        warm.close();
+
+        // stale index must be ignored and rewritten
+        Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+        ArchiveFile stale = ArchiveFile.openIndexed(file);
+        Assert.assertTrue(stale.iterator().next().isLocalHeaderLoaded());
+        stale.close();
+        ArchiveIndex archiveIndex = ArchiveIndex.sidecarOf(file);
+        ArchiveFile reindexed = new ArchiveFile(new ZipFileInput(file), archiveIndex);
+        Assert.assertFalse(reindexed.iterator().next().isLocalHeaderLoaded());
+        reindexed.close();
+
+        // corrupted index must be ignored
+        byte[] bytes = IOUtil.readFully(indexFile);
+        bytes[bytes.length / 2] ^= 0x7f;
+        FileOutputStream outputStream = new FileOutputStream(indexFile);
+        outputStream.write(bytes);
+        outputStream.close();
+        ArchiveFile corrupted = ArchiveFile.openIndexed(file);
+        Assert.assertTrue(corrupted.iterator().next().isLocalHeaderLoaded());
+        Assert.assertEquals(expectedEntries.size(), corrupted.size());
+        corrupted.close();
+        TestUtils.log("Index: " + indexFile.length() + " bytes");
+    }
+    private static List<ArchiveEntry> listEntries(Archive<?> archive){
+        List<ArchiveEntry> results = new ArrayList<>();
+        Iterator<ArchiveEntry> iterator = archive.iterator();
+        while (iterator.hasNext()){
+            results.add(iterator.next());
+        }
+        return results;
+    }
+    @Test
+    public void testInterruptedReaderDoesNotCloseOthers() throws Exception {
+        File file = new File(TestUtils.getTempDir(), "interrupted_reader.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        ArchiveFile expected = new ArchiveFile(file);
+        InputSource[] expectedSources = expected.getInputSources();
+
+        ZipFileInput zipInput = new ZipFileInput(file);
+        ArchiveFile archiveFile = new ArchiveFile(zipInput);
+        InputSource[] sources = archiveFile.getInputSources();
+        InputStream openedBefore = sources[0].openStream();
+        FileChannel channel = zipInput.getFileChannel();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            CountDownLatch started = new CountDownLatch(1);
+            Future<?> reader = executorService.submit(() -> {
+                byte[] buffer = new byte[64];
+                started.countDown();
+                while (!Thread.currentThread().isInterrupted()){
+                    zipInput.read(0, buffer, 0, buffer.length);
+                }
+                return null;
+            });
+            started.await();
+            reader.cancel(true);
+            Future<?> interrupted = executorService.submit(() -> {
+                Thread.currentThread().interrupt();
+                zipInput.read(0, new byte[16], 0, 16);
+                return null;
+            });
+            try{
+                interrupted.get();
+                Assert.fail("Interrupted read succeeded");
+            }catch (ExecutionException ex){
+                Assert.assertTrue(ex.getCause() instanceof ClosedByInterruptException);
+            }
+            Assert.assertFalse(channel.isOpen());
+
+            List<Future<byte[]>> futureList = new ArrayList<>();
+            for(InputSource inputSource : sources){
+                futureList.add(executorService.submit(() -> readBytes(inputSource)));
+            }
+            for(int i = 0; i < sources.length; i++){
+                Assert.assertArrayEquals(sources[i].getAlias(),
+                        readBytes(expectedSources[i]), futureList.get(i).get());
+            }
+        }finally {
+            executorService.shutdown();
+        }
+        Assert.assertArrayEquals(readBytes(expectedSources[0]), IOUtil.readFully(openedBefore));
+        Assert.assertTrue(zipInput.isOpen());
+        archiveFile.close();
+        expected.close();
+    }
+    @Test
+    public void testParallelExtractAll() throws IOException {
+        File dir = TestUtils.getTempDir();
+        File file = new File(dir, "parallel_extract.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        File serialDir = new File(dir, "extract_serial");
+        File parallelDir = new File(dir, "extract_parallel");
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        int serialCount = archiveFile.extractAll(serialDir);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            int count = archiveFile.extractAll(parallelDir, null, null, executorService);
+            Assert.assertEquals(serialCount, count);
+            Iterator<ArchiveEntry> iterator = archiveFile.getFiles();
+            int files = 0;
+            while (iterator.hasNext()){
+                ArchiveEntry archiveEntry = iterator.next();
+                File expected = archiveFile.toFile(serialDir, archiveEntry);
+                File extracted = archiveFile.toFile(parallelDir, archiveEntry);
+                Assert.assertTrue(extracted.getPath(), extracted.isFile());
+                Assert.assertArrayEquals(archiveEntry.getName(),
+                        IOUtil.readFully(expected), IOUtil.readFully(extracted));
+                files ++;
+            }
+            Assert.assertTrue(files > 0);
+        }finally {
+            executorService.shutdown();
+            archiveFile.close();
+        }
+    }
+    @Test
+    public void testParallelExtractRejectsUnknownMethod() throws IOException {
+        File dir = TestUtils.getTempDir();
+        File file = new File(dir, "unknown_method.zip");
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file));
+        ZipEntry zipEntry = new ZipEntry("data.bin");
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(new byte[]{1, 2, 3, 4});
+        zipOutputStream.close();
+        byte[] bytes = IOUtil.readFully(file);
+        // replace deflate (8) by bzip2 (12) in local and central headers
+        bytes[8] = 12;
+        for(int i = 0; i < bytes.length - 4; i++){
+            if(bytes[i] == 0x50 && bytes[i + 1] == 0x4b && bytes[i + 2] == 0x01 && bytes[i + 3] == 0x02){
+                bytes[i + 10] = 12;
+            }
+        }
+        FileOutputStream outputStream = new FileOutputStream(file);
+        outputStream.write(bytes);
+        outputStream.close();
+
+        ArchiveFile archiveFile = new ArchiveFile(file);
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        File extractDir = new File(dir, "extract_unknown_method");
+        try{
+            archiveFile.extractAll(extractDir, null, null, executorService);
+            Assert.fail("Unsupported method extracted");
+        }catch (IOException ex){
+            Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("Unsupported compression method"));
+        }finally {
+            executorService.shutdown();
+            archiveFile.close();
+        }
+        Assert.assertFalse(new File(extractDir, "data.bin").exists());
+    }
+    private static byte[] readBytes(InputSource inputSource) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        inputSource.write(outputStream);
+        return outputStream.toByteArray();
+    }
+}
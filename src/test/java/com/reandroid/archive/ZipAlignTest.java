@@ -0,0 +1,100 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.archive.writer.ZipAligner;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class ZipAlignTest {
+
+    @Test
+    public void testRealign() throws IOException {
+        File dir = TestUtils.getTempDir();
+        File file = new File(dir, "realign_input.apk");
+        Random random = new Random(3);
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file));
+        writeEntry(zipOutputStream, "AndroidManifest.xml", randomBytes(random, 1001), false);
+        writeEntry(zipOutputStream, "lib/arm64-v8a/liba.so", randomBytes(random, 20000), true);
+        writeEntry(zipOutputStream, "assets/b.bin", randomBytes(random, 777), true);
+        writeEntry(zipOutputStream, "lib/x86_64/libb.so", randomBytes(random, 5000), true);
+        zipOutputStream.close();
+
+        ZipAligner zipAligner = ZipAligner.apkAligner(ZipAligner.PAGE_16K);
+        Assert.assertFalse(ZipAlign.isAligned(file, zipAligner));
+        File aligned = new File(dir, "realign_output.apk");
+        aligned.delete();
+        Assert.assertTrue(ZipAlign.realign(file, aligned, zipAligner));
+        Assert.assertTrue(ZipAlign.isAligned(aligned, zipAligner));
+
+        ArchiveFile archiveFile = new ArchiveFile(aligned);
+        Iterator<ArchiveEntry> iterator = archiveFile.iterator();
+        while (iterator.hasNext()){
+            ArchiveEntry entry = iterator.next();
+            if(entry.getName().endsWith(".so")){
+                Assert.assertEquals(entry.getName(), 0, entry.getFileOffset() % ZipAligner.PAGE_16K);
+            }else if(!entry.isCompressed()){
+                Assert.assertEquals(entry.getName(), 0, entry.getFileOffset() % 4);
+            }
+        }
+        archiveFile.close();
+        assertSameContent(file, aligned);
+
+        // already aligned, nothing must be written
+        File skipped = new File(dir, "realign_skipped.apk");
+        skipped.delete();
+        Assert.assertFalse(ZipAlign.realign(aligned, skipped, zipAligner));
+        Assert.assertFalse(skipped.exists());
+        long modified = aligned.lastModified();
+        Assert.assertFalse(ZipAlign.realignApk(aligned, ZipAligner.PAGE_16K));
+        Assert.assertEquals(modified, aligned.lastModified());
+        // 16K alignment satisfies 4K
+        Assert.assertFalse(ZipAlign.realignApk(aligned, ZipAligner.PAGE_4K));
+    }
+    private static void assertSameContent(File expected, File actual) throws IOException {
+        ZipFile expectedZip = new ZipFile(expected);
+        ZipFile actualZip = new ZipFile(actual);
+        Assert.assertEquals(expectedZip.size(), actualZip.size());
+        Enumeration<? extends ZipEntry> entries = expectedZip.entries();
+        while (entries.hasMoreElements()){
+            ZipEntry zipEntry = entries.nextElement();
+            ZipEntry actualEntry = actualZip.getEntry(zipEntry.getName());
+            Assert.assertNotNull(zipEntry.getName(), actualEntry);
+            Assert.assertEquals(zipEntry.getMethod(), actualEntry.getMethod());
+            Assert.assertArrayEquals(zipEntry.getName(),
+                    IOUtil.readFully(expectedZip.getInputStream(zipEntry)),
+                    IOUtil.readFully(actualZip.getInputStream(actualEntry)));
+        }
+        expectedZip.close();
+        actualZip.close();
+    }
+    private static void writeEntry(ZipOutputStream zipOutputStream, String name,
+                                   byte[] bytes, boolean stored) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(name);
+        if(stored){
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(bytes.length);
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes);
+            zipEntry.setCrc(crc32.getValue());
+        }
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(bytes);
+    }
+    private static byte[] randomBytes(Random random, int length){
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
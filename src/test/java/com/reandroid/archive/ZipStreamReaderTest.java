@@ -0,0 +1,156 @@
+package com.reandroid.archive;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.arsc.chunk.TableBlock;
+import com.reandroid.arsc.chunk.xml.AndroidManifestBlock;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ZipStreamReaderTest {
+
+    @Test
+    public void testStreamApk() throws IOException {
+        byte[] apk = new ApkModuleTest().createApkModule().writeApkBytes();
+        Map<String, byte[]> expected = readArchive(apk);
+
+        Map<String, byte[]> actual = new LinkedHashMap<>();
+        ZipStreamReader reader = new ZipStreamReader(new TrickleInputStream(apk));
+        int count = reader.visit((entry, inputStream) -> {
+            actual.put(entry.getName(), IOUtil.readFully(inputStream));
+            return true;
+        });
+        reader.close();
+        Assert.assertEquals(expected.size(), count);
+        assertEquals(expected, actual);
+    }
+    @Test
+    public void testInspectWithoutReadingAll() throws IOException {
+        byte[] apk = new ApkModuleTest().createApkModule().writeApkBytes();
+        AndroidManifestBlock[] manifest = new AndroidManifestBlock[1];
+        TableBlock[] tableBlock = new TableBlock[1];
+        ZipStreamReader reader = new ZipStreamReader(new TrickleInputStream(apk));
+        reader.visit((entry, inputStream) -> {
+            String name = entry.getName();
+            if(AndroidManifestBlock.FILE_NAME.equals(name)){
+                manifest[0] = AndroidManifestBlock.load(inputStream);
+            }else if(TableBlock.FILE_NAME.equals(name)){
+                tableBlock[0] = TableBlock.load(inputStream);
+            }
+            return manifest[0] == null || tableBlock[0] == null;
+        });
+        reader.close();
+        Assert.assertNotNull(manifest[0]);
+        Assert.assertNotNull(tableBlock[0]);
+        Assert.assertNotNull(manifest[0].getPackageName());
+        TestUtils.log("Streamed: " + manifest[0].getPackageName()
+                + ", packages = " + tableBlock[0].size());
+    }
+    @Test
+    public void testDataDescriptorAndSkip() throws IOException {
+        Random random = new Random(11);
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(zipBytes);
+        for(int i = 0; i < 20; i++){
+            byte[] bytes = new byte[random.nextInt(40000)];
+            if(i % 2 == 0){
+                random.nextBytes(bytes);
+            }
+            String name = "entry_" + i;
+            ZipEntry zipEntry = new ZipEntry(name);
+            if(i % 3 == 0){
+                zipEntry.setMethod(ZipEntry.STORED);
+                zipEntry.setSize(bytes.length);
+                CRC32 crc32 = new CRC32();
+                crc32.update(bytes);
+                zipEntry.setCrc(crc32.getValue());
+            }
+            zipOutputStream.putNextEntry(zipEntry);
+            zipOutputStream.write(bytes);
+            expected.put(name, bytes);
+        }
+        zipOutputStream.close();
+        byte[] zip = zipBytes.toByteArray();
+
+        // read only odd entries, the rest are skipped by reader
+        Map<String, byte[]> actual = new LinkedHashMap<>();
+        ZipStreamReader reader = new ZipStreamReader(new TrickleInputStream(zip));
+        ArchiveEntry entry;
+        int index = 0;
+        while ((entry = reader.nextEntry()) != null){
+            if(index % 2 == 1){
+                actual.put(entry.getName(), IOUtil.readFully(reader.getInputStream()));
+                Assert.assertEquals(expected.get(entry.getName()).length, entry.getSize());
+            }
+            index ++;
+        }
+        reader.close();
+        Assert.assertEquals(expected.size(), index);
+        Assert.assertEquals(expected.size() / 2, actual.size());
+        for(Map.Entry<String, byte[]> item : actual.entrySet()){
+            Assert.assertArrayEquals(item.getKey(), expected.get(item.getKey()), item.getValue());
+        }
+
+        zip[zip.length / 3] ^= 0x55;
+        ZipStreamReader corrupted = new ZipStreamReader(new ByteArrayInputStream(zip));
+        try {
+            corrupted.visit((archiveEntry, inputStream) -> {
+                IOUtil.readFully(inputStream);
+                return true;
+            });
+            Assert.fail("Corrupted data not detected");
+        }catch (IOException ex){
+            TestUtils.log("Corrupted: " + ex.getMessage());
+        }
+        corrupted.close();
+    }
+    private static void assertEquals(Map<String, byte[]> expected, Map<String, byte[]> actual){
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        for(Map.Entry<String, byte[]> entry : expected.entrySet()){
+            Assert.assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+        }
+    }
+    private static Map<String, byte[]> readArchive(byte[] zip) throws IOException {
+        ArchiveBytes archiveBytes = new ArchiveBytes(zip);
+        Map<String, byte[]> results = new LinkedHashMap<>();
+        for(InputSource inputSource : archiveBytes.getInputSources()){
+            results.put(inputSource.getAlias(), IOUtil.readFully(inputSource.openStream()));
+        }
+        archiveBytes.close();
+        return results;
+    }
+    /**
+     * Simulates network stream with short reads
+     * */
+    static class TrickleInputStream extends FilterInputStream {
+        TrickleInputStream(byte[] bytes){
+            super(new ByteArrayInputStream(bytes));
+        }
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return super.read(bytes, offset, Math.min(length, 7));
+        }
+        @Override
+        public int available(){
+            return 0;
+        }
+        @Override
+        public boolean markSupported(){
+            return false;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.reandroid.archive.block;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.writer.ApkByteWriter;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+
+public class ApkSignerTest {
+
+    @Test
+    public void testSignV2V3() throws Exception {
+        ApkSigner apkSigner = loadSigner();
+        ApkModule apkModule = createApkModule();
+        apkModule.setApkSigner(apkSigner);
+
+        File file = new File(TestUtils.getTempDir(), "signed.apk");
+        apkModule.writeApk(file);
+        byte[] fileBytes = IOUtil.readFully(file);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        byte[] parallelBytes;
+        try{
+            // byte sources are disposed once written, thus fresh module
+            apkModule = createApkModule();
+            apkModule.setApkSigner(apkSigner);
+            ApkByteWriter writer = apkModule.createApkByteWriter();
+            writer.setExecutorService(executorService);
+            writer.write();
+            parallelBytes = writer.toByteArray();
+        }finally {
+            executorService.shutdown();
+        }
+        Assert.assertArrayEquals("Parallel signed output differs", fileBytes, parallelBytes);
+
+        ApkModule signed = ApkModule.loadApkFile(file);
+        ApkSignatureBlock signatureBlock = signed.getApkSignatureBlock();
+        Assert.assertNotNull("Missing signature block", signatureBlock);
+        Assert.assertTrue(signatureBlock.getCertificates().hasNext());
+        X509Certificate certificate = apkSigner.getCertificates().get(0);
+
+        byte[] expectedDigest = computeDigest(fileBytes);
+        SignatureInfo v2 = signatureBlock.getSignature(SignatureId.V2);
+        Assert.assertNotNull("Missing v2", v2);
+        verifySigner(v2, false, expectedDigest, certificate);
+        SignatureInfo v3 = signatureBlock.getSignature(SignatureId.V3);
+        Assert.assertNotNull("Missing v3", v3);
+        verifySigner(v3, true, expectedDigest, certificate);
+        signed.close();
+    }
+
+    private static void verifySigner(SignatureInfo info, boolean v3,
+                                     byte[] expectedDigest, X509Certificate certificate) throws Exception {
+        byte[] bytes = info.getBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 12, bytes.length - 12).slice()
+                .order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer signers = prefixed(buffer);
+        ByteBuffer signer = prefixed(signers);
+        ByteBuffer signedData = prefixed(signer);
+        byte[] signedDataBytes = toArray(signedData.duplicate());
+        ByteBuffer digests = prefixed(signedData);
+        ByteBuffer digest = prefixed(digests);
+        int algorithmId = digest.getInt();
+        Assert.assertEquals(SignatureAlgorithm.RSA_PKCS1_SHA256.getId(), algorithmId);
+        Assert.assertArrayEquals("Content digest", expectedDigest, toArray(prefixed(digest)));
+        ByteBuffer certificates = prefixed(signedData);
+        Assert.assertArrayEquals(certificate.getEncoded(), toArray(prefixed(certificates)));
+        if(v3){
+            Assert.assertEquals(ApkSigner.MIN_SDK_V3, signedData.getInt());
+            Assert.assertEquals(Integer.MAX_VALUE, signedData.getInt());
+            Assert.assertEquals(ApkSigner.MIN_SDK_V3, signer.getInt());
+            Assert.assertEquals(Integer.MAX_VALUE, signer.getInt());
+        }else {
+            ByteBuffer attributes = prefixed(signedData);
+            ByteBuffer attribute = prefixed(attributes);
+            Assert.assertEquals(0xbeeff00d, attribute.getInt());
+            Assert.assertEquals(3, attribute.getInt());
+        }
+        ByteBuffer signatures = prefixed(signer);
+        ByteBuffer signature = prefixed(signatures);
+        Assert.assertEquals(algorithmId, signature.getInt());
+        byte[] signatureBytes = toArray(prefixed(signature));
+        PublicKey publicKey = certificate.getPublicKey();
+        Assert.assertArrayEquals(publicKey.getEncoded(), toArray(prefixed(signer)));
+        Signature jcaSignature = Signature.getInstance("SHA256withRSA");
+        jcaSignature.initVerify(publicKey);
+        jcaSignature.update(signedDataBytes);
+        Assert.assertTrue("Invalid signature", jcaSignature.verify(signatureBytes));
+    }
+    /**
+     * Simple serial implementation of v2 content digest, independent of ChunkedDigest
+     * */
+    private static byte[] computeDigest(byte[] apk) throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(apk).order(ByteOrder.LITTLE_ENDIAN);
+        int eocd = apk.length - 22;
+        Assert.assertEquals(0x06054b50, buffer.getInt(eocd));
+        int cedLength = buffer.getInt(eocd + 12);
+        int cedOffset = buffer.getInt(eocd + 16);
+        long blockSize = buffer.getLong(cedOffset - 24);
+        Assert.assertEquals("APK Sig Block 42",
+                new String(apk, cedOffset - 16, 16, "US-ASCII"));
+        int blockOffset = (int) (cedOffset - blockSize - 8);
+        Assert.assertEquals(0, blockOffset % 4096);
+        byte[] endRecord = Arrays.copyOfRange(apk, eocd, apk.length);
+        ByteBuffer.wrap(endRecord).order(ByteOrder.LITTLE_ENDIAN).putInt(16, blockOffset);
+        byte[][] sections = new byte[][]{
+                Arrays.copyOfRange(apk, 0, blockOffset),
+                Arrays.copyOfRange(apk, cedOffset, cedOffset + cedLength),
+                endRecord
+        };
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer chunkDigests = ByteBuffer.allocate(apk.length / 1024 + 1024);
+        int count = 0;
+        for(byte[] section : sections){
+            int offset = 0;
+            while (offset < section.length){
+                int length = Math.min(ChunkedDigest.CHUNK_SIZE, section.length - offset);
+                messageDigest.update((byte) 0xa5);
+                messageDigest.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN)
+                        .putInt(length).array());
+                messageDigest.update(section, offset, length);
+                chunkDigests.put(messageDigest.digest());
+                offset += length;
+                count ++;
+            }
+        }
+        Assert.assertTrue("Expecting multiple chunks", count > 3);
+        messageDigest.update((byte) 0x5a);
+        messageDigest.update(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(count).array());
+        messageDigest.update(chunkDigests.array(), 0, chunkDigests.position());
+        return messageDigest.digest();
+    }
+    private static ByteBuffer prefixed(ByteBuffer buffer){
+        int length = buffer.getInt();
+        ByteBuffer result = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        result.limit(length);
+        buffer.position(buffer.position() + length);
+        return result;
+    }
+    private static byte[] toArray(ByteBuffer buffer){
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+    private static ApkModule createApkModule() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        byte[] large = new byte[3 * 1024 * 1024 + 123];
+        new Random(large.length).nextBytes(large);
+        ByteInputSource inputSource = new ByteInputSource(large, "assets/large.bin");
+        inputSource.setMethod(ZipEntry.STORED);
+        apkModule.add(inputSource);
+        return apkModule;
+    }
+    static ApkSigner loadSigner() throws IOException {
+        File dir = TestUtils.getTempDir();
+        File key = copyResource("testkey.pk8.pem", dir);
+        File certificate = copyResource("testkey.x509.pem", dir);
+        return ApkSigner.fromPem(key, certificate);
+    }
+    private static File copyResource(String name, File dir) throws IOException {
+        InputStream inputStream = ApkSignerTest.class.getResourceAsStream("/" + name);
+        Assert.assertNotNull("Missing resource: " + name, inputStream);
+        File file = new File(dir, name);
+        IOUtil.writeAll(inputStream, file);
+        return file;
+    }
+}
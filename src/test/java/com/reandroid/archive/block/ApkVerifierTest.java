@@ -0,0 +1,97 @@
+package com.reandroid.archive.block;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ByteInputSource;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+
+public class ApkVerifierTest {
+
+    @Test
+    public void testVerify() throws IOException {
+        ApkSigner apkSigner = ApkSignerTest.loadSigner();
+        File dir = TestUtils.getTempDir();
+        File signed = new File(dir, "verify_signed.apk");
+        File tampered = new File(dir, "verify_tampered.apk");
+        File unsigned = new File(dir, "verify_unsigned.apk");
+        File v2Only = new File(dir, "verify_v2_only.apk");
+        writeApk(signed, apkSigner);
+        writeApk(tampered, apkSigner);
+        writeApk(unsigned, null);
+        apkSigner.setV3Enabled(false);
+        writeApk(v2Only, apkSigner);
+        apkSigner.setV3Enabled(true);
+        flipByte(tampered, 2 * 1024 * 1024);
+
+        ApkVerifier apkVerifier = new ApkVerifier();
+        VerificationResult result = apkVerifier.verify(signed);
+        Assert.assertTrue(result.toString(), result.isVerified());
+        Assert.assertTrue(result.isV2Verified());
+        Assert.assertTrue(result.isV3Verified());
+        Assert.assertFalse(result.isV1Signed());
+        Assert.assertEquals(apkSigner.getCertificates(), result.getCertificates());
+
+        result = apkVerifier.verify(v2Only);
+        Assert.assertTrue(result.toString(), result.isVerified());
+        Assert.assertTrue(result.isV2Verified());
+        Assert.assertFalse(result.isV3Signed());
+
+        result = apkVerifier.verify(tampered);
+        Assert.assertFalse(result.isVerified());
+        Assert.assertTrue(result.getError(), result.getError().contains("content digest mismatch"));
+
+        result = apkVerifier.verify(unsigned);
+        Assert.assertFalse(result.isVerified());
+        Assert.assertFalse(result.hasError());
+
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            apkVerifier.setExecutorService(executorService);
+            Assert.assertTrue(apkVerifier.verify(signed).isVerified());
+            List<File> files = Arrays.asList(signed, tampered, unsigned, v2Only,
+                    signed, tampered, unsigned, v2Only);
+            List<VerificationResult> results = apkVerifier.verify(files);
+            Assert.assertEquals(files.size(), results.size());
+            for(int i = 0; i < files.size(); i++){
+                VerificationResult verificationResult = results.get(i);
+                Assert.assertEquals(files.get(i).getName(), verificationResult.getName());
+                boolean expected = i % 4 == 0 || i % 4 == 3;
+                Assert.assertEquals(verificationResult.toString(), expected,
+                        verificationResult.isVerified());
+            }
+        }finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static void writeApk(File file, ApkSigner apkSigner) throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        byte[] large = new byte[3 * 1024 * 1024];
+        new Random(large.length).nextBytes(large);
+        ByteInputSource inputSource = new ByteInputSource(large, "assets/large.bin");
+        inputSource.setMethod(ZipEntry.STORED);
+        apkModule.add(inputSource);
+        apkModule.setApkSigner(apkSigner);
+        apkModule.writeApk(file);
+    }
+    private static void flipByte(File file, long position) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(position);
+        int value = randomAccessFile.read();
+        randomAccessFile.seek(position);
+        randomAccessFile.write(value ^ 0xff);
+        randomAccessFile.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.reandroid.archive.io;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CodecPoolTest {
+
+    @Test
+    public void testDeflaterReusedPerLevel() {
+        CodecPool pool = new CodecPool(2);
+        Deflater fast = pool.acquireDeflater(Deflater.BEST_SPEED);
+        pool.releaseDeflater(fast, Deflater.BEST_SPEED);
+        Deflater best = pool.acquireDeflater(Deflater.BEST_COMPRESSION);
+        Assert.assertNotSame("Deflater shared across levels", fast, best);
+        Assert.assertSame(fast, pool.acquireDeflater(Deflater.BEST_SPEED));
+        Assert.assertEquals(1, pool.getReuseCount());
+        Assert.assertEquals(2, pool.getLiveDeflaters());
+        pool.releaseDeflater(fast, Deflater.BEST_SPEED);
+        pool.releaseDeflater(best, Deflater.BEST_COMPRESSION);
+        pool.trim();
+        Assert.assertEquals(0, pool.getLiveDeflaters());
+        Assert.assertEquals(2 * CodecPool.DEFLATER_NATIVE_SIZE, pool.getPeakNativeMemory());
+    }
+    @Test
+    public void testIdleCodecsBounded() {
+        CodecPool pool = new CodecPool(2);
+        Inflater[] inflaters = new Inflater[4];
+        for(int i = 0; i < inflaters.length; i++){
+            inflaters[i] = pool.acquireInflater();
+        }
+        Assert.assertEquals(4, pool.getLiveInflaters());
+        for(Inflater inflater : inflaters){
+            pool.releaseInflater(inflater);
+        }
+        Assert.assertEquals("Idle inflaters above max idle not ended", 2, pool.getLiveInflaters());
+        Inflater reused = pool.acquireInflater();
+        Assert.assertTrue(reused == inflaters[0] || reused == inflaters[1]);
+        pool.releaseInflater(reused);
+        pool.trim();
+        Assert.assertEquals(0, pool.getNativeMemory());
+    }
+    @Test
+    public void testInvalidLevel() {
+        try{
+            new CodecPool().acquireDeflater(10);
+            Assert.fail("Invalid level accepted");
+        }catch (IllegalArgumentException ignored){
+        }
+    }
+}
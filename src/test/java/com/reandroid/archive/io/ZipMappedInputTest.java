@@ -0,0 +1,109 @@
+package com.reandroid.archive.io;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.InputSource;
+import com.reandroid.utils.io.IOUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class ZipMappedInputTest {
+
+    @Test
+    public void testReadAcrossSegments() throws IOException {
+        File file = new File(TestUtils.getTempDir(), "mapped_segments.apk");
+        new ApkModuleTest().createApkModule().writeApk(file);
+        byte[] fileBytes = IOUtil.readFully(file);
+        int segmentSize = 1 << SEGMENT_SHIFT;
+        Assert.assertTrue(fileBytes.length > segmentSize * 3);
+
+        ZipMappedInput zipInput = new ZipMappedInput(file, SEGMENT_SHIFT);
+        try{
+            int offset = segmentSize - 7;
+            int length = segmentSize * 2 + 20;
+            byte[] bytes = new byte[length];
+            zipInput.read(offset, bytes, 0, length);
+            assertRange(fileBytes, offset, bytes);
+
+            ByteBuffer crossing = zipInput.getByteBuffer(offset, length);
+            Assert.assertEquals(length, crossing.remaining());
+            assertRange(fileBytes, offset, toBytes(crossing));
+            ByteBuffer within = zipInput.getByteBuffer(segmentSize + 10, 100);
+            Assert.assertTrue(within.isDirect());
+            assertRange(fileBytes, segmentSize + 10, toBytes(within));
+
+            InputStream inputStream = zipInput.getInputStream(offset, length);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[300];
+            int count;
+            while ((count = inputStream.read(buffer)) > 0){
+                outputStream.write(buffer, 0, count);
+            }
+            inputStream.close();
+            assertRange(fileBytes, offset, outputStream.toByteArray());
+
+            inputStream = zipInput.getInputStream(offset, length);
+            outputStream = new ByteArrayOutputStream();
+            int i;
+            while ((i = inputStream.read()) >= 0){
+                outputStream.write(i);
+                if(outputStream.size() == 5){
+                    inputStream.mark(0);
+                }
+            }
+            assertRange(fileBytes, offset, outputStream.toByteArray());
+            inputStream.reset();
+            Assert.assertEquals(fileBytes[offset + 5] & 0xff, inputStream.read());
+            Assert.assertEquals(segmentSize, inputStream.skip(segmentSize));
+            Assert.assertEquals(fileBytes[offset + 6 + segmentSize] & 0xff, inputStream.read());
+            inputStream.close();
+
+            MappedInputStream mappedStream = (MappedInputStream) zipInput
+                    .getInputStream(offset, length);
+            outputStream = new ByteArrayOutputStream();
+            Assert.assertEquals(length, mappedStream.transferTo(outputStream));
+            assertRange(fileBytes, offset, outputStream.toByteArray());
+
+            byte[] footer = zipInput.getFooter(segmentSize + 5);
+            assertRange(fileBytes, fileBytes.length - footer.length, footer);
+        }finally {
+            zipInput.close();
+        }
+
+        ArchiveFile expected = new ArchiveFile(file);
+        ArchiveFile mapped = new ArchiveFile(new ZipMappedInput(file, SEGMENT_SHIFT));
+        InputSource[] expectedSources = expected.getInputSources();
+        InputSource[] sources = mapped.getInputSources();
+        Assert.assertEquals(expectedSources.length, sources.length);
+        for(int i = 0; i < sources.length; i++){
+            Assert.assertArrayEquals(expectedSources[i].getAlias(),
+                    readBytes(expectedSources[i]), readBytes(sources[i]));
+        }
+        expected.close();
+        mapped.close();
+    }
+    private static void assertRange(byte[] expected, int offset, byte[] bytes){
+        byte[] range = new byte[bytes.length];
+        System.arraycopy(expected, offset, range, 0, range.length);
+        Assert.assertArrayEquals(range, bytes);
+    }
+    private static byte[] toBytes(ByteBuffer byteBuffer){
+        byte[] bytes = new byte[byteBuffer.remaining()];
+        byteBuffer.get(bytes);
+        return bytes;
+    }
+    private static byte[] readBytes(InputSource inputSource) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        inputSource.write(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    private static final int SEGMENT_SHIFT = 10;
+}
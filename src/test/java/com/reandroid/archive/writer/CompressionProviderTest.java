@@ -0,0 +1,74 @@
+package com.reandroid.archive.writer;
+
+import com.reandroid.archive.Archive;
+import com.reandroid.archive.ArchiveBytes;
+import com.reandroid.archive.ArchiveEntry;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.io.CodecPool;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+public class CompressionProviderTest {
+
+    @Test
+    public void testLevelByPattern() {
+        CompressionProvider provider = new CompressionProvider(new CodecPool());
+        provider.setDefaultLevel(Deflater.BEST_SPEED);
+        provider.setLevel(Pattern.compile("^res/raw/.+"), Deflater.NO_COMPRESSION);
+        provider.setLevel(Pattern.compile(".+\\.txt"), Deflater.BEST_COMPRESSION);
+        Assert.assertEquals(Deflater.NO_COMPRESSION, provider.getLevel("res/raw/a.txt"));
+        Assert.assertEquals(Deflater.BEST_COMPRESSION, provider.getLevel("assets/a.txt"));
+        Assert.assertEquals(Deflater.BEST_SPEED, provider.getLevel("classes.dex"));
+        provider.clearLevels();
+        Assert.assertEquals(Deflater.BEST_SPEED, provider.getLevel("res/raw/a.txt"));
+        try{
+            provider.setDefaultLevel(12);
+            Assert.fail("Invalid level accepted");
+        }catch (IllegalArgumentException ignored){
+        }
+    }
+    @Test
+    public void testWriterUsesLevelAndPool() throws IOException {
+        byte[] data = new byte[40000];
+        for(int i = 0; i < data.length; i++){
+            data[i] = (byte) (i % 13);
+        }
+        CodecPool codecPool = new CodecPool();
+        CompressionProvider provider = new CompressionProvider(codecPool);
+        provider.setLevel(Pattern.compile("^assets/stored/.+"), Deflater.NO_COMPRESSION);
+        int count = 6;
+        InputSource[] sources = new InputSource[count];
+        for(int i = 0; i < count; i++){
+            String name = (i % 2 == 0 ? "assets/stored/" : "assets/packed/") + i + ".bin";
+            ByteInputSource inputSource = new ByteInputSource(data.clone(), name);
+            inputSource.setMethod(Archive.DEFLATED);
+            sources[i] = inputSource;
+        }
+        ApkByteWriter writer = new ApkByteWriter(sources);
+        writer.setCompressionProvider(provider);
+        writer.write();
+        ArchiveBytes archive = new ArchiveBytes(writer.toByteArray());
+        for(int i = 0; i < count; i++){
+            ArchiveEntry archiveEntry = archive.getEntry(sources[i].getAlias());
+            Assert.assertEquals(Archive.DEFLATED, archiveEntry.getMethod());
+            if(i % 2 == 0){
+                Assert.assertTrue(archiveEntry.getName(),
+                        archiveEntry.getCompressedSize() > data.length);
+            }else {
+                Assert.assertTrue(archiveEntry.getName(),
+                        archiveEntry.getCompressedSize() < data.length / 10);
+            }
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            archive.getEntrySource(archiveEntry.getName()).write(outputStream);
+            Assert.assertArrayEquals(data, outputStream.toByteArray());
+        }
+        Assert.assertEquals("Deflaters not reused", count - 2, codecPool.getReuseCount());
+        Assert.assertEquals(2, codecPool.getLiveDeflaters());
+    }
+}
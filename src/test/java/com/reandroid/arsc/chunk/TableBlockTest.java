@@ -0,0 +1,286 @@
+package com.reandroid.arsc.chunk;
+
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.arsc.array.TypeBlockArray;
+import com.reandroid.arsc.container.SpecTypePair;
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.model.ResourceEntry;
+import com.reandroid.arsc.pool.TableStringPool;
+import com.reandroid.arsc.value.Entry;
+import com.reandroid.arsc.value.ResValue;
+import com.reandroid.arsc.value.ValueType;
+import com.reandroid.json.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+public class TableBlockTest {
+
+    @Test
+    public void testLazyEntries() throws IOException {
+        TableBlock sample = new ApkModuleTest().createApkModule().getTableBlock();
+        sample.refresh();
+        byte[] tableBytes = sample.getBytes();
+
+        TableBlock eager = new TableBlock();
+        eager.readBytes(new BlockReader(tableBytes));
+        byte[] expected = eager.getBytes();
+
+        TableBlock lazy = new TableBlock();
+        lazy.setLazyEntries(true);
+        lazy.readBytes(new BlockReader(tableBytes));
+        Assert.assertTrue(countTypes(lazy, false) > 0);
+        Assert.assertEquals(0, countTypes(lazy, true));
+
+        Assert.assertArrayEquals(expected, lazy.getBytes());
+        eager.refresh();
+        lazy.refresh();
+        Assert.assertEquals(0, countTypes(lazy, true));
+        expected = eager.getBytes();
+        Assert.assertArrayEquals(expected, lazy.getBytes());
+
+        ResourceEntry appName = null;
+        int resources = 0;
+        Iterator<ResourceEntry> iterator = eager.getResources();
+        while (iterator.hasNext()){
+            ResourceEntry resourceEntry = iterator.next();
+            ResourceEntry lazyEntry = lazy.getResource(resourceEntry.getResourceId());
+            Assert.assertNotNull(resourceEntry.getHexId(), lazyEntry);
+            Assert.assertEquals(resourceEntry.getName(), lazyEntry.getName());
+            Entry entry = resourceEntry.get();
+            Entry lazyValue = lazyEntry.get();
+            if(entry != null){
+                Assert.assertEquals(toString(entry), toString(lazyValue));
+                if("app_name".equals(resourceEntry.getName())){
+                    appName = resourceEntry;
+                }
+            }
+            resources ++;
+        }
+        Assert.assertTrue(resources > 0);
+        Assert.assertNotNull(appName);
+        // only default configs are accessed
+        Assert.assertTrue(countTypes(lazy, true) > 0);
+        Assert.assertTrue(countTypes(lazy, false) > 0);
+        Assert.assertArrayEquals(expected, lazy.getBytes());
+
+        setString(eager, appName.getResourceId(), "Lazy app");
+        setString(lazy, appName.getResourceId(), "Lazy app");
+        eager.refresh();
+        lazy.refresh();
+        Assert.assertArrayEquals(eager.getBytes(), lazy.getBytes());
+    }
+    @Test
+    public void testLazyEntriesConcurrentLoad() throws Exception {
+        TableBlock sample = new ApkModuleTest().createApkModule().getTableBlock();
+        sample.refresh();
+        byte[] tableBytes = sample.getBytes();
+
+        TableBlock eager = new TableBlock();
+        eager.readBytes(new BlockReader(tableBytes));
+        TableBlock lazy = new TableBlock();
+        lazy.setLazyEntries(true);
+        lazy.readBytes(new BlockReader(tableBytes));
+
+        List<TypeBlock> typeBlocks = listTypes(lazy);
+        Assert.assertTrue(typeBlocks.size() > 1);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try{
+            List<Future<?>> futures = new ArrayList<>();
+            for(int i = 0; i < 4; i++){
+                List<TypeBlock> shuffled = new ArrayList<>(typeBlocks);
+                Collections.shuffle(shuffled, new Random(i));
+                futures.add(executorService.submit(() -> {
+                    for(TypeBlock typeBlock : shuffled){
+                        typeBlock.getEntryArray().ensureLoaded();
+                    }
+                }));
+            }
+            for(Future<?> future : futures){
+                future.get();
+            }
+        }finally {
+            executorService.shutdown();
+        }
+        Assert.assertEquals(0, countTypes(lazy, false));
+        TableStringPool expectedPool = eager.getTableStringPool();
+        TableStringPool lazyPool = lazy.getTableStringPool();
+        Assert.assertEquals(expectedPool.size(), lazyPool.size());
+        for(int i = 0; i < expectedPool.size(); i++){
+            Assert.assertEquals("References of string " + i,
+                    expectedPool.get(i).getReferencesSize(), lazyPool.get(i).getReferencesSize());
+        }
+        eager.refresh();
+        lazy.refresh();
+        Assert.assertArrayEquals(eager.getBytes(), lazy.getBytes());
+    }
+    @Test
+    public void testParallelLoad() throws IOException {
+        TableBlock sample = new ApkModuleTest().createApkModule().getTableBlock();
+        sample.refresh();
+        byte[] tableBytes = sample.getBytes();
+
+        TableBlock eager = new TableBlock();
+        eager.readBytes(new BlockReader(tableBytes));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        TableBlock parallel = new TableBlock();
+        parallel.setReadExecutor(pool);
+        try{
+            parallel.readBytes(new BlockReader(tableBytes));
+        }finally {
+            pool.shutdown();
+        }
+        Assert.assertEquals(countTypes(eager, true), countTypes(parallel, true));
+        Assert.assertArrayEquals(eager.getBytes(), parallel.getBytes());
+
+        int resources = 0;
+        Iterator<ResourceEntry> iterator = eager.getResources();
+        while (iterator.hasNext()){
+            ResourceEntry resourceEntry = iterator.next();
+            ResourceEntry parallelEntry = parallel.getResource(resourceEntry.getResourceId());
+            Assert.assertNotNull(resourceEntry.getHexId(), parallelEntry);
+            Assert.assertEquals(resourceEntry.getName(), parallelEntry.getName());
+            Entry entry = resourceEntry.get();
+            if(entry != null){
+                Assert.assertEquals(toString(entry), toString(parallelEntry.get()));
+            }
+            resources ++;
+        }
+        Assert.assertTrue(resources > 0);
+        eager.refresh();
+        parallel.refresh();
+        Assert.assertArrayEquals(eager.getBytes(), parallel.getBytes());
+    }
+    @Test
+    public void testResourceIdIndex() throws IOException {
+        TableBlock sample = new ApkModuleTest().createApkModule().getTableBlock();
+        sample.refresh();
+        byte[] tableBytes = sample.getBytes();
+
+        TableBlock plain = new TableBlock();
+        plain.readBytes(new BlockReader(tableBytes));
+        TableBlock indexed = new TableBlock();
+        indexed.readBytes(new BlockReader(tableBytes));
+        indexed.setIndexResources(true);
+
+        int resources = 0;
+        Iterator<ResourceEntry> iterator = plain.getResources();
+        while (iterator.hasNext()){
+            int resourceId = iterator.next().getResourceId();
+            assertSameResource(plain, indexed, resourceId);
+            assertSameResource(plain, indexed, resourceId + 0x1000);
+            resources ++;
+        }
+        Assert.assertTrue(resources > 0);
+        assertSameResource(plain, indexed, 0x7f7f0000);
+        assertSameResource(plain, indexed, 0x01010000);
+
+        PackageBlock packageBlock = indexed.pickOne();
+        ResourceIdIndex resourceIdIndex = indexed.getResourceIdIndex();
+        Entry entry = packageBlock.getOrCreate("", "string", "index_added");
+        entry.setValueAsString("Index");
+        int resourceId = entry.getResourceId();
+        Assert.assertNotNull(indexed.getResource(resourceId));
+        Entry land = packageBlock.getOrCreate("-land", "string", "index_added");
+        land.setValueAsString("Index land");
+        Assert.assertEquals(resourceId, land.getResourceId());
+        Assert.assertSame(resourceIdIndex, indexed.getResourceIdIndex());
+        Assert.assertTrue(listEntries(indexed.getEntries(resourceId, false)).contains(land));
+        indexed.refresh();
+        Assert.assertNotSame(resourceIdIndex, indexed.getResourceIdIndex());
+        Assert.assertSame(land, indexed.getResourceIdIndex()
+                .getEntry(resourceId, packageBlock.getSpecTypePair("string")
+                        .getTypeBlockArray().indexOf(land.getTypeBlock())));
+
+        // same counts but reordered or replaced configs
+        TypeBlockArray typeBlockArray = packageBlock.getSpecTypePair("string").getTypeBlockArray();
+        Assert.assertTrue(typeBlockArray.size() > 1);
+        int entryId = resourceId & 0xffff;
+        resourceIdIndex = indexed.getResourceIdIndex();
+        Assert.assertSame(typeBlockArray.get(0).getEntry(entryId), resourceIdIndex.getEntry(resourceId, 0));
+        typeBlockArray.swap(0, 1);
+        Assert.assertSame(typeBlockArray.get(0).getEntry(entryId), resourceIdIndex.getEntry(resourceId, 0));
+        Assert.assertSame(typeBlockArray.get(1).getEntry(entryId), resourceIdIndex.getEntry(resourceId, 1));
+        TypeBlock replacement = new TypeBlock(false, false);
+        replacement.setTypeId(typeBlockArray.get(1).getTypeId());
+        typeBlockArray.set(1, replacement);
+        Assert.assertNull(resourceIdIndex.getEntry(resourceId, 1));
+        Assert.assertSame(resourceIdIndex, indexed.getResourceIdIndex());
+        // same count but reordered types
+        packageBlock.getSpecTypePairArray().swap(0, 1);
+        Assert.assertNotSame(resourceIdIndex, indexed.getResourceIdIndex());
+        resourceIdIndex = indexed.getResourceIdIndex();
+        Assert.assertSame(resourceIdIndex, indexed.getResourceIdIndex());
+        Assert.assertSame(typeBlockArray.get(0).getEntry(entryId), resourceIdIndex.getEntry(resourceId, 0));
+    }
+    private static void assertSameResource(TableBlock expected, TableBlock indexed, int resourceId){
+        ResourceEntry expectedEntry = expected.getResource(resourceId);
+        ResourceEntry indexedEntry = indexed.getResource(resourceId);
+        String hex = String.format("0x%08x", resourceId);
+        if(expectedEntry == null){
+            Assert.assertNull(hex, indexedEntry);
+        }else {
+            Assert.assertNotNull(hex, indexedEntry);
+            Assert.assertEquals(hex, expectedEntry.getName(), indexedEntry.getName());
+        }
+        Assert.assertEquals(hex, listEntries(expected.getEntries(resourceId, true)).toString(),
+                listEntries(indexed.getEntries(resourceId, true)).toString());
+        Assert.assertEquals(hex, listEntries(expected.getEntries(resourceId, false)).toString(),
+                listEntries(indexed.getEntries(resourceId, false)).toString());
+    }
+    private static List<Entry> listEntries(Iterator<Entry> iterator){
+        List<Entry> results = new ArrayList<>();
+        while (iterator.hasNext()){
+            results.add(iterator.next());
+        }
+        return results;
+    }
+    private static void setString(TableBlock tableBlock, int resourceId, String value){
+        ResValue resValue = tableBlock.getResource(resourceId).get().getResValue();
+        Assert.assertEquals(ValueType.STRING, resValue.getValueType());
+        resValue.setValueAsString(value);
+    }
+    private static String toString(Entry entry){
+        JSONObject jsonObject = entry.toJson();
+        return jsonObject == null ? null : jsonObject.toString();
+    }
+    private static List<TypeBlock> listTypes(TableBlock tableBlock){
+        List<TypeBlock> results = new ArrayList<>();
+        for(PackageBlock packageBlock : tableBlock){
+            Iterator<SpecTypePair> pairs = packageBlock.getSpecTypePairs();
+            while (pairs.hasNext()){
+                Iterator<TypeBlock> iterator = pairs.next().getTypeBlocks();
+                while (iterator.hasNext()){
+                    results.add(iterator.next());
+                }
+            }
+        }
+        return results;
+    }
+    private static int countTypes(TableBlock tableBlock, boolean loaded){
+        int result = 0;
+        for(PackageBlock packageBlock : tableBlock){
+            Iterator<SpecTypePair> pairs = packageBlock.getSpecTypePairs();
+            while (pairs.hasNext()){
+                Iterator<TypeBlock> iterator = pairs.next().getTypeBlocks();
+                while (iterator.hasNext()){
+                    if(iterator.next().isEntriesLoaded() == loaded){
+                        result ++;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
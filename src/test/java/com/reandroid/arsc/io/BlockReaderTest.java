@@ -0,0 +1,88 @@
+package com.reandroid.arsc.io;
+
+import com.reandroid.TestUtils;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ArchiveFile;
+import com.reandroid.archive.InputSource;
+import com.reandroid.archive.io.ZipMappedInput;
+import com.reandroid.arsc.chunk.TableBlock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class BlockReaderTest {
+
+    @Test
+    public void testByteBufferReader() throws IOException {
+        byte[] bytes = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, (byte) 0x88};
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.put((byte) 0x7f);
+        direct.put(bytes);
+        direct.flip();
+        direct.position(1);
+
+        BlockReader heapReader = new BlockReader(bytes);
+        BlockReader directReader = new BlockReader(direct);
+        Assert.assertEquals(1, direct.position());
+        Assert.assertEquals(heapReader.length(), directReader.length());
+        Assert.assertEquals(0x04030201, directReader.readInteger());
+        Assert.assertEquals(0x0201, directReader.readShort());
+        Assert.assertEquals(0, directReader.getPosition());
+
+        directReader.offset(4);
+        BlockReader slice = directReader.create(4);
+        Assert.assertEquals(0x88070605, slice.readInteger());
+        Assert.assertArrayEquals(heapReader.create(4, 4).getBytes(), slice.getBytes());
+
+        byte[] buffer = new byte[6];
+        Assert.assertEquals(4, directReader.readFully(buffer));
+        Assert.assertEquals((byte) 0x88, buffer[3]);
+        Assert.assertFalse(directReader.isAvailable());
+    }
+    @Test
+    public void testLoadTableFromMappedEntry() throws IOException {
+        TableBlock tableBlock = new ApkModuleTest().createApkModule().getTableBlock();
+        tableBlock.refresh();
+        byte[] tableBytes = tableBlock.getBytes();
+        TableBlock heap = new TableBlock();
+        heap.readBytes(new BlockReader(tableBytes));
+        byte[] expected = heap.getBytes();
+
+        File file = new File(TestUtils.getTempDir(), "mapped_table.apk");
+        ZipOutputStream zipOutputStream = new ZipOutputStream(new FileOutputStream(file));
+        ZipEntry zipEntry = new ZipEntry(TableBlock.FILE_NAME);
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(tableBytes.length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(tableBytes);
+        zipEntry.setCrc(crc32.getValue());
+        zipOutputStream.putNextEntry(zipEntry);
+        zipOutputStream.write(tableBytes);
+        zipOutputStream.closeEntry();
+        zipOutputStream.close();
+
+        ArchiveFile archiveFile = new ArchiveFile(new ZipMappedInput(file));
+        InputSource inputSource = archiveFile.getEntrySource(TableBlock.FILE_NAME);
+        BlockReader reader = inputSource.openBlockReader();
+        Assert.assertFalse(reader.getByteBuffer().hasArray());
+        TableBlock mapped = new TableBlock();
+        mapped.readBytes(reader);
+        archiveFile.close();
+        Assert.assertArrayEquals(expected, mapped.getBytes());
+
+        TableBlock fromFile = new TableBlock();
+        File arsc = new File(TestUtils.getTempDir(), "mapped_" + TableBlock.FILE_NAME);
+        FileOutputStream outputStream = new FileOutputStream(arsc);
+        outputStream.write(tableBytes);
+        outputStream.close();
+        fromFile.readBytes(BlockReader.map(arsc));
+        Assert.assertArrayEquals(expected, fromFile.getBytes());
+    }
+}
@@ -0,0 +1,53 @@
+package com.reandroid.arsc.pool;
+
+import com.reandroid.arsc.io.BlockReader;
+import com.reandroid.arsc.item.TableString;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class StringPoolTest {
+
+    @Test
+    public void testLazyDecodeUtf8() throws IOException {
+        testLazyDecode(true);
+    }
+    @Test
+    public void testLazyDecodeUtf16() throws IOException {
+        testLazyDecode(false);
+    }
+    private void testLazyDecode(boolean utf8) throws IOException {
+        TableStringPool source = new TableStringPool(utf8);
+        String[] strings = new String[]{"", "app_name", "café 中文", "app_name", "res/layout/main.xml"};
+        for(String str : strings) {
+            source.createNewString(str);
+        }
+        source.refresh();
+
+        TableStringPool stringPool = new TableStringPool(utf8);
+        stringPool.readBytes(new BlockReader(source.getBytes()));
+        Assert.assertEquals(strings.length, stringPool.size());
+
+        for(int i = strings.length - 1; i >= 0; i--) {
+            Assert.assertEquals(source.get(i).get(), stringPool.get(i).get());
+        }
+        Assert.assertTrue(stringPool.contains("res/layout/main.xml"));
+        Assert.assertFalse(stringPool.contains("missing"));
+
+        TableString tableString = stringPool.getString("res/layout/main.xml");
+        Assert.assertNotNull(tableString);
+        int index = tableString.getIndex();
+        Assert.assertSame(tableString, stringPool.getOrCreate("res/layout/main.xml"));
+
+        tableString.set("res/layout/activity.xml");
+        Assert.assertFalse(stringPool.contains("res/layout/main.xml"));
+        Assert.assertSame(tableString, stringPool.getString("res/layout/activity.xml"));
+
+        stringPool.refresh();
+        TableStringPool copy = new TableStringPool(utf8);
+        copy.readBytes(new BlockReader(stringPool.getBytes()));
+        Assert.assertEquals("res/layout/activity.xml", copy.get(index).getXml());
+        Assert.assertNotNull(copy.getString("café 中文"));
+    }
+}
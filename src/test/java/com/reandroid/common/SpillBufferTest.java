@@ -0,0 +1,141 @@
+package com.reandroid.common;
+
+import com.reandroid.apk.ApkModule;
+import com.reandroid.apk.ApkModuleTest;
+import com.reandroid.archive.ByteInputSource;
+import com.reandroid.archive.writer.ApkByteWriter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+public class SpillBufferTest {
+
+    @Test
+    public void testReadWriteAndSpill() throws IOException {
+        for(long limit : new long[]{0, 10000, 1024 * 1024, Long.MAX_VALUE}){
+            SpillBuffer buffer = new SpillBuffer(limit);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Random random = new Random(limit);
+            for(int i = 0; i < 200; i++){
+                byte[] bytes = new byte[random.nextInt(20000)];
+                random.nextBytes(bytes);
+                buffer.write(bytes, 0, bytes.length);
+                expected.write(bytes);
+            }
+            buffer.write(7);
+            expected.write(7);
+            byte[] expectedBytes = expected.toByteArray();
+            Assert.assertEquals(expectedBytes.length, buffer.size());
+            Assert.assertEquals("limit = " + limit, expectedBytes.length > limit, buffer.isSpilled());
+
+            byte[] patch = new byte[9000];
+            random.nextBytes(patch);
+            int position = expectedBytes.length / 3;
+            buffer.overwrite(position, patch, 0, patch.length);
+            System.arraycopy(patch, 0, expectedBytes, position, patch.length);
+
+            Assert.assertArrayEquals(expectedBytes, buffer.toByteArray());
+            byte[] part = new byte[5000];
+            Assert.assertEquals(part.length, buffer.read(position - 100, part, 0, part.length));
+            for(int i = 0; i < part.length; i++){
+                Assert.assertEquals(expectedBytes[position - 100 + i], part[i]);
+            }
+            Assert.assertEquals(-1, buffer.read(expectedBytes.length, part, 0, 1));
+            ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            buffer.writeTo(copy);
+            Assert.assertArrayEquals(expectedBytes, copy.toByteArray());
+            InputStream inputStream = buffer.openStream();
+            copy.reset();
+            int read;
+            while ((read = inputStream.read(part)) > 0){
+                copy.write(part, 0, read);
+            }
+            Assert.assertArrayEquals(expectedBytes, copy.toByteArray());
+            buffer.dispose();
+            Assert.assertEquals(0, buffer.size());
+            Assert.assertFalse(buffer.isSpilled());
+        }
+    }
+    @Test
+    public void testWriterMemoryLimit() throws IOException {
+        byte[] expected = createApkModule().writeApkBytes();
+        ApkModule apkModule = createApkModule();
+        long defaultLimit = SpillBuffer.getDefaultMemoryLimit();
+        ApkByteWriter writer;
+        try{
+            SpillBuffer.setDefaultMemoryLimit(100000);
+            writer = apkModule.createApkByteWriter();
+            writer.write();
+        }finally {
+            SpillBuffer.setDefaultMemoryLimit(defaultLimit);
+        }
+        Assert.assertTrue(writer.getBuffer().isSpilled());
+        Assert.assertArrayEquals(expected, writer.toByteArray());
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        writer.writeTo(outputStream);
+        Assert.assertArrayEquals(expected, outputStream.toByteArray());
+        writer.getBuffer().dispose();
+    }
+    @Test
+    public void testTotalMemoryLimit() throws IOException {
+        long totalLimit = SpillBuffer.getTotalMemoryLimit();
+        long used = SpillBuffer.getTotalMemoryUsed();
+        byte[] bytes = new byte[40000];
+        new Random(bytes.length).nextBytes(bytes);
+        SpillBuffer first = new SpillBuffer(Long.MAX_VALUE);
+        SpillBuffer second = new SpillBuffer(Long.MAX_VALUE);
+        SpillBuffer third = new SpillBuffer(Long.MAX_VALUE);
+        try{
+            SpillBuffer.setTotalMemoryLimit(used + 65536);
+            first.write(bytes, 0, bytes.length);
+            Assert.assertFalse(first.isSpilled());
+            second.write(bytes, 0, bytes.length);
+            Assert.assertTrue("Shared limit exceeded", second.isSpilled());
+            Assert.assertArrayEquals(bytes, second.toByteArray());
+            Assert.assertTrue(SpillBuffer.getTotalMemoryUsed() <= used + 65536);
+            first.dispose();
+            Assert.assertEquals(used, SpillBuffer.getTotalMemoryUsed());
+            third.write(bytes, 0, bytes.length);
+            Assert.assertFalse(third.isSpilled());
+            Assert.assertArrayEquals(bytes, third.toByteArray());
+        }finally {
+            SpillBuffer.setTotalMemoryLimit(totalLimit);
+            first.dispose();
+            second.dispose();
+            third.dispose();
+        }
+        Assert.assertEquals(used, SpillBuffer.getTotalMemoryUsed());
+        createApkModule().writeApkBytes();
+        Assert.assertEquals("Byte writer buffer not disposed", used,
+                SpillBuffer.getTotalMemoryUsed());
+    }
+    @Test
+    public void testBytesOutputStreamGrowth() throws IOException {
+        byte[] bytes = new byte[100];
+        int count = 3000;
+        BytesOutputStream outputStream = new BytesOutputStream(0);
+        for(int i = 0; i < count; i++){
+            bytes[0] = (byte) i;
+            outputStream.write(bytes);
+        }
+        byte[] result = outputStream.toByteArray();
+        Assert.assertEquals(bytes.length * count, outputStream.position());
+        Assert.assertEquals(bytes.length * count, result.length);
+        for(int i = 0; i < count; i++){
+            Assert.assertEquals((byte) i, result[i * bytes.length]);
+        }
+    }
+    private static ApkModule createApkModule() throws IOException {
+        ApkModule apkModule = new ApkModuleTest().createApkModule();
+        byte[] large = new byte[500000];
+        new Random(large.length).nextBytes(large);
+        SpillBuffer buffer = new SpillBuffer(50000);
+        buffer.write(large, 0, large.length);
+        apkModule.add(new ByteInputSource(buffer, "assets/large.bin"));
+        return apkModule;
+    }
+}
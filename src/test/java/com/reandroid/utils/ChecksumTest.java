@@ -0,0 +1,73 @@
+package com.reandroid.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+public class ChecksumTest {
+
+    @Test
+    public void testCrc32() {
+        byte[] data = randomBytes(100003);
+        CRC32 expected = new CRC32();
+        expected.update(data, 0, data.length);
+
+        Crc32 crc32 = new Crc32();
+        updateChunked(crc32, data);
+        Assert.assertEquals(expected.getValue(), crc32.getValue());
+        Assert.assertEquals(data.length, crc32.getLength());
+
+        crc32.reset();
+        Assert.assertEquals(0, crc32.getValue());
+        Assert.assertEquals(0, crc32.getLength());
+        crc32.update((byte) 'a');
+        Assert.assertEquals(0xe8b7be43L, crc32.getValue());
+    }
+    @Test
+    public void testAdler32() {
+        byte[] data = randomBytes(100003);
+        Adler32 expected = new Adler32();
+        expected.update(data, 0, data.length);
+
+        ALDER32 alder32 = new ALDER32();
+        updateChunked(alder32, data);
+        Assert.assertEquals(expected.getValue(), alder32.getValue());
+
+        alder32.reset();
+        Assert.assertEquals(1, alder32.getValue());
+    }
+    @Test
+    public void testSha1() throws Exception {
+        byte[] data = randomBytes(100003);
+        byte[] expected = MessageDigest.getInstance("SHA-1").digest(data);
+
+        SHA1 platform = new SHA1();
+        SHA1 pureJava = new SHA1(null);
+        for(SHA1 sha1 : new SHA1[]{platform, pureJava}){
+            sha1.update(data);
+            Assert.assertArrayEquals(expected, sha1.digest());
+            // digest resets for next use
+            sha1.update(data, 0, data.length);
+            Assert.assertArrayEquals(expected, sha1.digest());
+        }
+    }
+    private static void updateChunked(Checksum checksum, byte[] data) {
+        int offset = 0;
+        int chunk = 1;
+        while (offset < data.length) {
+            int length = Math.min(chunk, data.length - offset);
+            checksum.update(data, offset, length);
+            offset += length;
+            chunk = chunk * 3 + 1;
+        }
+    }
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,88 @@
+package com.reandroid.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class FutureUtilTest {
+
+    @Test
+    public void testAwaitUnwrapsCause() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try{
+            Assert.assertEquals("ok", FutureUtil.await(executorService.submit(() -> "ok")));
+            IOException ioException = new IOException("io");
+            Assert.assertSame(ioException, awaitFailure(executorService.submit(() -> {
+                throw ioException;
+            })));
+            IllegalStateException runtimeException = new IllegalStateException("runtime");
+            Assert.assertSame(runtimeException, awaitFailure(executorService.submit(() -> {
+                throw runtimeException;
+            })));
+            Exception checked = new Exception("checked");
+            Throwable throwable = awaitFailure(executorService.submit(() -> {
+                throw checked;
+            }));
+            Assert.assertTrue(throwable instanceof IOException);
+            Assert.assertSame(checked, throwable.getCause());
+
+            CountDownLatch latch = new CountDownLatch(1);
+            Future<?> blocked = executorService.submit(() -> {
+                latch.await();
+                return null;
+            });
+            Thread.currentThread().interrupt();
+            Assert.assertTrue(awaitFailure(blocked) instanceof InterruptedIOException);
+            Assert.assertTrue(Thread.interrupted());
+            latch.countDown();
+        }finally {
+            executorService.shutdown();
+        }
+    }
+    @Test
+    public void testAwaitAllAndCancelAll() throws Exception {
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try{
+            CountDownLatch latch = new CountDownLatch(1);
+            Future<?>[] futures = new Future<?>[]{
+                    executorService.submit(() -> null),
+                    executorService.submit(() -> {
+                        throw new IOException("second");
+                    }),
+                    executorService.submit(() -> {
+                        latch.await();
+                        return null;
+                    }),
+                    null
+            };
+            try{
+                FutureUtil.awaitAll(futures);
+                Assert.fail("Expecting IOException");
+            }catch (IOException ex){
+                Assert.assertEquals("second", ex.getMessage());
+            }
+            Assert.assertNull(futures[0]);
+            Assert.assertNotNull(futures[1]);
+            FutureUtil.cancelAll(futures);
+            Assert.assertTrue(futures[2].isCancelled());
+            latch.countDown();
+        }finally {
+            executorService.shutdown();
+        }
+    }
+    private static Throwable awaitFailure(Future<?> future){
+        try{
+            FutureUtil.await(future);
+        }catch (IOException | RuntimeException ex){
+            return ex;
+        }
+        Assert.fail("Expecting failure");
+        return null;
+    }
+}